@@ -102,8 +102,9 @@ create table if not exists public.context
     id              varchar(36)                         not null
         primary key,
     session_id      varchar(36)                         not null,
-    active_messages text,
+    window_start    bigint    default 0                 not null,
     summary         text,
+    summary_tree    text,
     created_at      timestamp default CURRENT_TIMESTAMP not null,
     updated_at      timestamp default CURRENT_TIMESTAMP not null,
     deleted_at      timestamp
@@ -115,10 +116,12 @@ comment on column public.context.id is '上下文唯一ID';
 
 comment on column public.context.session_id is '所属会话ID';
 
-comment on column public.context.active_messages is '活跃消息ID列表，JSON数组格式';
+comment on column public.context.window_start is '上下文窗口起始序号，context_window中序号更小的行已移出';
 
 comment on column public.context.summary is '历史消息摘要';
 
+comment on column public.context.summary_tree is '分层摘要，一级摘要片段与二级摘要，JSON格式';
+
 comment on column public.context.created_at is '创建时间';
 
 comment on column public.context.updated_at is '更新时间';
@@ -131,6 +134,32 @@ alter table public.context
 create index if not exists idx_context_session_id
     on public.context (session_id);
 
+drop table if exists public.context_window;
+create table if not exists public.context_window
+(
+    session_id varchar(36)                         not null,
+    seq        bigint                              not null,
+    message_id varchar(36)                         not null,
+    tokens     integer   default 0                 not null,
+    created_at timestamp default CURRENT_TIMESTAMP not null,
+    primary key (session_id, seq)
+);
+
+comment on table public.context_window is '上下文窗口，每条活跃消息一行，只追加，移出时按序号范围删除';
+
+comment on column public.context_window.session_id is '所属会话ID';
+
+comment on column public.context_window.seq is '会话内递增的序号';
+
+comment on column public.context_window.message_id is '消息ID';
+
+comment on column public.context_window.tokens is '消息token数';
+
+comment on column public.context_window.created_at is '创建时间';
+
+alter table public.context_window
+    owner to postgres;
+
 drop table if exists public.agents;
 create table if not exists public.agents
 (
@@ -0,0 +1,79 @@
+-- 上下文窗口由context表中的JSON列迁移到只追加的context_window表
+-- 在应用停止时执行一次，可重复执行
+
+create table if not exists public.context_window
+(
+    session_id varchar(36)                         not null,
+    seq        bigint                              not null,
+    message_id varchar(36)                         not null,
+    tokens     integer   default 0                 not null,
+    created_at timestamp default CURRENT_TIMESTAMP not null,
+    primary key (session_id, seq)
+);
+
+comment on table public.context_window is '上下文窗口，每条活跃消息一行，只追加，移出时按序号范围删除';
+
+-- 分层摘要列，早于分层摘要创建的库没有该列
+alter table public.context
+    add column if not exists summary_tree text;
+
+comment on column public.context.summary_tree is '分层摘要，一级摘要片段与二级摘要，JSON格式';
+
+alter table public.context
+    add column if not exists window_start bigint default 0 not null;
+
+comment on column public.context.window_start is '上下文窗口起始序号，context_window中序号更小的行已移出';
+
+do
+$$
+    begin
+        if exists (select 1
+                   from information_schema.columns
+                   where table_schema = 'public'
+                     and table_name = 'context'
+                     and column_name = 'active_messages') then
+            if exists (select 1
+                       from information_schema.columns
+                       where table_schema = 'public'
+                         and table_name = 'context'
+                         and column_name = 'context_window') then
+                -- 有context_window列的库：token数优先取其中同一位置的记录，其次取消息表
+                insert into public.context_window (session_id, seq, message_id, tokens)
+                select c.session_id,
+                       ids.ord - 1,
+                       ids.id,
+                       coalesce(case when w.entry ->> 'id' = ids.id then (w.entry ->> 'tokens')::int end,
+                                msg.token_count, 0)
+                from public.context c
+                         cross join lateral jsonb_array_elements_text(
+                        coalesce(nullif(nullif(c.active_messages, ''), 'null'), '[]')::jsonb)
+                    with ordinality as ids(id, ord)
+                         left join lateral (select coalesce(nullif(nullif(c.context_window, ''), 'null'), '{}')::jsonb
+                                                       -> 'entries' -> (ids.ord - 1)::int as entry) w on true
+                         left join public.messages msg on msg.id = ids.id
+                where c.deleted_at is null
+                on conflict (session_id, seq) do nothing;
+            else
+                -- 只有active_messages的库：按其中的顺序从0开始编号，token数取消息表
+                insert into public.context_window (session_id, seq, message_id, tokens)
+                select c.session_id,
+                       ids.ord - 1,
+                       ids.id,
+                       coalesce(msg.token_count, 0)
+                from public.context c
+                         cross join lateral jsonb_array_elements_text(
+                        coalesce(nullif(nullif(c.active_messages, ''), 'null'), '[]')::jsonb)
+                    with ordinality as ids(id, ord)
+                         left join public.messages msg on msg.id = ids.id
+                where c.deleted_at is null
+                on conflict (session_id, seq) do nothing;
+            end if;
+
+            alter table public.context
+                drop column active_messages;
+        end if;
+    end
+$$;
+
+alter table public.context
+    drop column if exists context_window;
@@ -3,6 +3,7 @@ package com.xiaoguai.agentx.application.agent.service;
 
 import com.xiaoguai.agentx.application.conversation.assembler.SessionAssembler;
 import com.xiaoguai.agentx.application.conversation.dto.StreamChatRequest;
+import com.xiaoguai.agentx.application.conversation.service.memory.SessionChatMemoryStore;
 import com.xiaoguai.agentx.application.agent.dto.AgentDTO;
 import com.xiaoguai.agentx.domain.agent.service.AgentDomainService;
 import com.xiaoguai.agentx.domain.agent.service.AgentWorkspaceDomainService;
@@ -40,15 +41,19 @@ public class AgentSessionAppService {
 
     private final ContextDomainService contextDomainService;
 
+    private final SessionChatMemoryStore sessionChatMemoryStore;
+
     public AgentSessionAppService(AgentWorkspaceDomainService agentWorkspaceDomainService,
                                   AgentDomainService agentServiceDomainService,
                                   SessionDomainService sessionDomainService,
-                                  ConversationDomainService conversationDomainService, ContextDomainService contextDomainService) {
+                                  ConversationDomainService conversationDomainService, ContextDomainService contextDomainService,
+                                  SessionChatMemoryStore sessionChatMemoryStore) {
         this.agentWorkspaceDomainService = agentWorkspaceDomainService;
         this.agentServiceDomainService = agentServiceDomainService;
         this.sessionDomainService = sessionDomainService;
         this.conversationDomainService = conversationDomainService;
         this.contextDomainService = contextDomainService;
+        this.sessionChatMemoryStore = sessionChatMemoryStore;
     }
 
     /**
@@ -121,6 +126,7 @@ public class AgentSessionAppService {
     public void deleteSession(String id, String userId) {
         // 删除会话下的消息
         conversationDomainService.deleteConversationMessages(id);
+        sessionChatMemoryStore.evict(id);
         boolean deleteSession = sessionDomainService.deleteSession(id, userId);
         if (!deleteSession) {
             throw new BusinessException("删除会话失败");
@@ -4,6 +4,7 @@ package com.xiaoguai.agentx.application.agent.service;
 import com.xiaoguai.agentx.application.agent.assembler.AgentAssembler;
 import com.xiaoguai.agentx.application.agent.assembler.AgentWorkspaceAssembler;
 import com.xiaoguai.agentx.application.agent.dto.AgentDTO;
+import com.xiaoguai.agentx.application.conversation.service.memory.SessionChatMemoryStore;
 import com.xiaoguai.agentx.domain.agent.model.AgentEntity;
 import com.xiaoguai.agentx.domain.agent.model.AgentWorkspaceEntity;
 import com.xiaoguai.agentx.domain.agent.service.AgentDomainService;
@@ -39,16 +40,19 @@ public class AgentWorkspaceAppService {
     private final SessionDomainService sessionDomainService;
     private final ConversationDomainService conversationDomainService;
     private final LlmDomainService llmDomainService;
+    private final SessionChatMemoryStore sessionChatMemoryStore;
 
     public AgentWorkspaceAppService(AgentWorkspaceDomainService agentWorkspaceDomainService,
                                     AgentDomainService agentDomainService,
                                     SessionDomainService sessionDomainService,
-                                    ConversationDomainService conversationDomainService, LlmDomainService llmDomainService) {
+                                    ConversationDomainService conversationDomainService, LlmDomainService llmDomainService,
+                                    SessionChatMemoryStore sessionChatMemoryStore) {
         this.agentWorkspaceDomainService = agentWorkspaceDomainService;
         this.agentDomainService = agentDomainService;
         this.sessionDomainService = sessionDomainService;
         this.conversationDomainService = conversationDomainService;
         this.llmDomainService = llmDomainService;
+        this.sessionChatMemoryStore = sessionChatMemoryStore;
     }
 
     /**
@@ -99,6 +103,7 @@ public class AgentWorkspaceAppService {
 
         // 删除会话所有消息
         conversationDomainService.deleteConversationMessages(sessionIds);
+        sessionIds.forEach(sessionChatMemoryStore::evict);
 
         // 删除会话
         sessionDomainService.deleteSessions(sessionIds);
@@ -114,6 +119,16 @@ public class AgentWorkspaceAppService {
         ProviderEntity provider = llmDomainService.getProviderById(model.getProviderId());
         provider.isActive();
 
+        // 校验备用模型
+        if (request.getHedgeModelId() != null && !request.getHedgeModelId().isBlank()) {
+            if (request.getHedgeModelId().equals(request.getModelId())) {
+                throw new BusinessException("备用模型不能与主模型相同");
+            }
+            ModelEntity hedgeModel = llmDomainService.getModelById(request.getHedgeModelId());
+            hedgeModel.isActive();
+            llmDomainService.getProviderById(hedgeModel.getProviderId()).isActive();
+        }
+
         LlmModelConfig llmModelConfig = AgentWorkspaceAssembler.toLLMModelConfig(request);
         AgentWorkspaceEntity workspaceEntity = new AgentWorkspaceEntity(agentId, userId, llmModelConfig);
         agentWorkspaceDomainService.update(workspaceEntity);
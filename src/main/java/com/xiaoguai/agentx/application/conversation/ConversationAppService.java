@@ -1,19 +1,24 @@
 package com.xiaoguai.agentx.application.conversation;
 
 
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
 import com.xiaoguai.agentx.application.conversation.dto.MessageDTO;
 import com.xiaoguai.agentx.application.conversation.dto.StreamChatRequest;
+import com.xiaoguai.agentx.application.conversation.service.AbstractMessageHandler;
 import com.xiaoguai.agentx.application.conversation.service.MessageHandler;
 import com.xiaoguai.agentx.application.conversation.service.context.ChatContext;
 import com.xiaoguai.agentx.domain.agent.model.AgentEntity;
 import com.xiaoguai.agentx.domain.agent.model.AgentWorkspaceEntity;
 import com.xiaoguai.agentx.domain.agent.service.AgentDomainService;
 import com.xiaoguai.agentx.domain.agent.service.AgentWorkspaceDomainService;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
 import com.xiaoguai.agentx.domain.conversation.factory.MessageHandlerFactory;
+import com.xiaoguai.agentx.domain.conversation.model.ChatContextSnapshot;
 import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
 import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
 import com.xiaoguai.agentx.domain.conversation.model.SessionEntity;
 import com.xiaoguai.agentx.domain.conversation.service.ContextDomainService;
+import com.xiaoguai.agentx.domain.conversation.service.ContextSummaryService;
 import com.xiaoguai.agentx.domain.conversation.service.ConversationDomainService;
 import com.xiaoguai.agentx.domain.conversation.service.MessageDomainService;
 import com.xiaoguai.agentx.domain.conversation.service.SessionDomainService;
@@ -22,20 +27,52 @@ import com.xiaoguai.agentx.domain.llm.model.ProviderEntity;
 import com.xiaoguai.agentx.domain.llm.model.config.LlmModelConfig;
 import com.xiaoguai.agentx.domain.llm.model.config.ProviderConfig;
 import com.xiaoguai.agentx.domain.llm.service.LlmDomainService;
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
 import com.xiaoguai.agentx.domain.token.service.TokenDomainService;
+import com.xiaoguai.agentx.infrastrcture.admission.ChatAdmissionController;
+import com.xiaoguai.agentx.infrastrcture.admission.ChatDrainController;
+import com.xiaoguai.agentx.infrastrcture.auth.UserContext;
 import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+import com.xiaoguai.agentx.infrastrcture.trace.ChatTraceRegistry;
+import com.xiaoguai.agentx.infrastrcture.trace.ChatTurnTrace;
+import com.xiaoguai.agentx.infrastrcture.transport.ChatReplayBuffer;
+import com.xiaoguai.agentx.infrastrcture.transport.ChatReplayRegistry;
+import com.xiaoguai.agentx.infrastrcture.transport.ChatSseEmitter;
+import com.xiaoguai.agentx.infrastrcture.transport.FluxChatConnection;
 import com.xiaoguai.agentx.infrastrcture.transport.MessageTransport;
 import com.xiaoguai.agentx.infrastrcture.transport.MessageTransportFactory;
+import com.xiaoguai.agentx.infrastrcture.transport.ReleasingMessageTransport;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum.SUMMARIZE;
@@ -59,14 +96,44 @@ public class ConversationAppService {
     private final LlmDomainService llmDomainService;
     private final MessageDomainService messageDomainService;
     private final TokenDomainService tokenDomainService;
+    private final ContextSummaryService contextSummaryService;
     private final MessageHandlerFactory messageHandlerFactory;
+    private final ExecutorService chatPrepareExecutor;
+    private final ExecutorService contextExecutorService;
+    private final ChatAdmissionController chatAdmissionController;
+    private final ChatDrainController chatDrainController;
+    /**
+     * 是否使用单条SQL加载对话环境，关闭时回退为按依赖关系并行查询
+     */
+    private final boolean singleQuery;
+
+    /**
+     * 续传连接超时时间：5min
+     */
+    private static final long RESUME_TIMEOUT = 300000L;
+
+    private static final Timer PREPARE_TIMER = Timer.builder("chat.prepare")
+            .description("对话环境准备总耗时")
+            .register(Metrics.globalRegistry);
+
+    private static final DistributionSummary PROMPT_TOKENS = DistributionSummary.builder("chat.prompt.tokens")
+            .description("发起请求前本地计算的提示词token数")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+
     public ConversationAppService(ConversationDomainService conversationDomainService,
                                   SessionDomainService sessionDomainService,
                                   ContextDomainService contextDomainService,
                                   AgentDomainService agentDomainService,
                                   AgentWorkspaceDomainService agentWorkspaceDomainService,
                                   LlmDomainService llmDomainService,
-                                  MessageDomainService messageDomainService, TokenDomainService tokenDomainService, MessageHandlerFactory messageHandlerFactory) {
+                                  MessageDomainService messageDomainService, TokenDomainService tokenDomainService,
+                                  ContextSummaryService contextSummaryService, MessageHandlerFactory messageHandlerFactory,
+                                  @Qualifier("chatPrepareExecutor") ExecutorService chatPrepareExecutor,
+                                  ExecutorService contextExecutorService,
+                                  ChatAdmissionController chatAdmissionController,
+                                  ChatDrainController chatDrainController,
+                                  @Value("${chat.prepare.single-query:true}") boolean singleQuery) {
         this.conversationDomainService = conversationDomainService;
         this.sessionDomainService = sessionDomainService;
         this.contextDomainService = contextDomainService;
@@ -75,7 +142,13 @@ public class ConversationAppService {
         this.llmDomainService = llmDomainService;
         this.messageDomainService = messageDomainService;
         this.tokenDomainService = tokenDomainService;
+        this.contextSummaryService = contextSummaryService;
         this.messageHandlerFactory = messageHandlerFactory;
+        this.chatPrepareExecutor = chatPrepareExecutor;
+        this.contextExecutorService = contextExecutorService;
+        this.chatAdmissionController = chatAdmissionController;
+        this.chatDrainController = chatDrainController;
+        this.singleQuery = singleQuery;
     }
 
 
@@ -97,14 +170,144 @@ public class ConversationAppService {
      * 处理流式聊天请求
      */
     public SseEmitter chatStream(StreamChatRequest request, String userId) {
-        // 准备对话环境
-        ChatContext environment = prepareChatEnvironment(request, userId);
         // 获取传输方式
         MessageTransport<SseEmitter> transport = MessageTransportFactory.getTransport(MessageTransportFactory.TRANSPORT_TYPE_SSE);
-        // 获取消息处理器
-        MessageHandler handler = messageHandlerFactory.getMessageHandler(environment.getAgentEntity());
-        // 处理聊天
-        return handler.handleChat(environment, transport);
+        // 开启续传时，回复开始时按助理消息id登记续传缓冲区，客户端断线后可以重连续传
+        return chat(request, userId, transport);
+    }
+
+    /**
+     * 断线续传，补发lastEventId之后的帧并接收后续回复
+     *
+     * @param sessionId   会话id
+     * @param userId      用户id
+     * @param replyId     助理消息id，回复第一帧下发
+     * @param lastEventId 客户端收到的最后一帧id
+     */
+    public SseEmitter resumeStream(String sessionId, String userId, String replyId, Long lastEventId) {
+        sessionDomainService.getSession(sessionId, userId);
+        ChatReplayBuffer buffer = ChatReplayRegistry.find(sessionId, replyId);
+        if (buffer == null) {
+            throw new BusinessException("没有可恢复的回复: " + replyId);
+        }
+        ChatSseEmitter emitter = new ChatSseEmitter(RESUME_TIMEOUT);
+        // 续传连接断开、超时或结束时解除订阅，宽限期内未重连则取消生成
+        emitter.onError(ex -> buffer.detach(emitter));
+        emitter.onTimeout(() -> buffer.detach(emitter));
+        emitter.onCompletion(() -> buffer.detach(emitter));
+        if (!buffer.attach(emitter, lastEventId)) {
+            throw new BusinessException("回复已过期，请重新发送");
+        }
+        return emitter;
+    }
+
+    /**
+     * 开启或关闭会话的调试追踪
+     *
+     * @param sessionId 会话id
+     * @param userId    用户id
+     * @param enabled   是否开启
+     */
+    public void setSessionTrace(String sessionId, String userId, boolean enabled) {
+        sessionDomainService.getSession(sessionId, userId);
+        ChatTraceRegistry.setEnabled(sessionId, enabled);
+    }
+
+    /**
+     * 获取会话最近几轮对话的调试追踪
+     *
+     * @param sessionId 会话id
+     * @param userId    用户id
+     */
+    public List<ChatTurnTrace> getSessionTraces(String sessionId, String userId) {
+        sessionDomainService.getSession(sessionId, userId);
+        return ChatTraceRegistry.getTraces(sessionId);
+    }
+
+    /**
+     * 处理响应式聊天请求
+     * 上下文准备依赖阻塞的JDBC访问，放到boundedElastic调度器执行；
+     * 之后的token经sink推送，不为打开的流占用线程
+     */
+    public Flux<AgentChatResponse> chatFlux(StreamChatRequest request, String userId) {
+        MessageTransport<FluxChatConnection> transport = MessageTransportFactory.getTransport(MessageTransportFactory.TRANSPORT_TYPE_FLUX);
+        return Mono.fromCallable(() -> {
+                    UserContext.setUserId(userId);
+                    try {
+                        return chat(request, userId, transport);
+                    } finally {
+                        UserContext.clear();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(FluxChatConnection::asFlux);
+    }
+
+    /**
+     * 使用指定传输方式处理聊天请求
+     */
+    public <T> T chat(StreamChatRequest request, String userId, MessageTransport<T> transport) {
+        // 停机排空期间拒绝新对话，进行中的对话在停机时等待结束
+        MessageTransport<T> tracked = chatDrainController.track(transport);
+        try {
+            return admit(request, userId, tracked);
+        } catch (RuntimeException e) {
+            chatDrainController.untrack(tracked);
+            throw e;
+        }
+    }
+
+    /**
+     * 准入控制，超出并发限制时排队
+     */
+    private <T> T admit(StreamChatRequest request, String userId, MessageTransport<T> transport) {
+        ChatAdmissionController.Ticket ticket = chatAdmissionController.enter(userId);
+        if (ticket.isAdmitted()) {
+            return startChat(request, userId, new ReleasingMessageTransport<>(transport, null, ticket::release));
+        }
+
+        // 排队期间先建立连接推送排队位置，放行后在同一连接上开始对话
+        T connection = transport.createConnection(AbstractMessageHandler.CONNECTION_TIMEOUT);
+        ReleasingMessageTransport<T> admittedTransport = new ReleasingMessageTransport<>(transport, connection, ticket::release);
+        transport.onDisconnect(connection, reason -> ticket.release());
+        ticket.onPosition(position -> transport.sendMessage(connection,
+                AgentChatResponse.buildMessage(String.valueOf(position), MessageType.QUEUE_POSITION)));
+        ticket.admission().whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                transport.handleError(connection, cause);
+                return;
+            }
+            contextExecutorService.execute(() -> {
+                UserContext.setUserId(userId);
+                try {
+                    startChat(request, userId, admittedTransport);
+                } catch (Exception e) {
+                    logger.error("排队对话开始失败: {}", e.getMessage());
+                    transport.handleError(connection, e);
+                } finally {
+                    UserContext.clear();
+                }
+            });
+        });
+        return connection;
+    }
+
+    /**
+     * 开始对话，对话未能开始时归还准入名额
+     */
+    private <T> T startChat(StreamChatRequest request, String userId, ReleasingMessageTransport<T> transport) {
+        try {
+            // 准备对话环境
+            ChatContext environment = prepareChatEnvironment(request, userId);
+            // 获取消息处理器
+            MessageHandler handler = messageHandlerFactory.getMessageHandler(environment.getAgentEntity());
+            // 处理聊天
+            return handler.handleChat(environment, transport);
+        } catch (RuntimeException e) {
+            transport.release();
+            throw e;
+        }
     }
 
     /**
@@ -115,78 +318,248 @@ public class ConversationAppService {
      * @return 对话环境
      */
     private ChatContext prepareChatEnvironment(StreamChatRequest request, String userId) {
+        long start = System.nanoTime();
         String sessionId = request.getSessionId();
         ChatContext environment = new ChatContext();
+        environment.setStartNanos(start);
         environment.setSessionId(sessionId);
         environment.setUserMessage(request.getMessage());
         environment.setUserId(userId);
-        // 获取会话
-        SessionEntity session = sessionDomainService.getSession(sessionId, userId);
 
-        // 获取Agent实例
-        String agentId = session.getAgentId();
-        AgentEntity agent = agentDomainService.getAgentById(agentId, userId);
+        String steps = singleQuery
+                ? loadEnvironment(environment, request, userId)
+                : loadEnvironmentConcurrently(environment, request, userId);
+
+        long totalNanos = System.nanoTime() - start;
+        PREPARE_TIMER.record(totalNanos, TimeUnit.NANOSECONDS);
+        logger.debug("对话环境准备完成, 会话: {}, 总耗时: {}ms, 各步骤耗时: {}",
+                sessionId, TimeUnit.NANOSECONDS.toMillis(totalNanos), steps);
+        return environment;
+    }
+
+    /**
+     * 单条SQL加载会话、Agent、工作区、模型、服务商、上下文及活跃消息，每轮对话只占用一次数据库往返
+     *
+     * @return 各步骤耗时，用于日志
+     */
+    private String loadEnvironment(ChatContext environment, StreamChatRequest request, String userId) {
+        long start = System.nanoTime();
+        ChatContextSnapshot snapshot = contextDomainService.loadChatContext(environment.getSessionId(), userId);
+        long elapsed = System.nanoTime() - start;
+        recordStep("snapshot", elapsed);
+
+        environment.setAgentEntity(snapshot.getAgent());
+
+        LlmModelConfig llmModelConfig = snapshot.getWorkspace().getLlmModelConfig();
+        llmModelConfig.setEnableSearch(request.getEnableSearch());
+        llmModelConfig.setEnableThinking(request.getEnableThink());
+        environment.setLlmModelConfig(llmModelConfig);
+
+        ModelEntity model = snapshot.getModel();
+        model.isActive();
+        environment.setModelEntity(model);
+
+        ProviderEntity provider = snapshot.getProvider();
+        provider.isActive();
+        environment.setProviderEntity(provider);
+        loadHedgeModel(environment);
+
+        // 准备上下文，使用Token上下文策略
+        setupContext(environment, snapshot.getContext(), snapshot.getActiveMessages());
+        return "{snapshot=" + TimeUnit.NANOSECONDS.toMillis(elapsed) + "}";
+    }
+
+    /**
+     * 按依赖关系并行查询：会话与上下文同时发起；Agent、工作区依赖会话中的agentId；
+     * 模型依赖工作区，服务商依赖模型；活跃消息依赖上下文
+     *
+     * @return 各步骤耗时，用于日志
+     */
+    private String loadEnvironmentConcurrently(ChatContext environment, StreamChatRequest request, String userId) {
+        String sessionId = environment.getSessionId();
+        Map<String, Long> stepMillis = new ConcurrentHashMap<>();
+
+        // 获取会话与上下文
+        CompletableFuture<SessionEntity> sessionFuture = prepareStep("session", stepMillis,
+                () -> sessionDomainService.getSession(sessionId, userId));
+        CompletableFuture<ContextEntity> contextFuture = prepareStep("context", stepMillis,
+                () -> contextDomainService.findBySessionId(sessionId));
+        // 获取活跃消息
+        CompletableFuture<List<MessageEntity>> messagesFuture = contextFuture.thenCompose(context -> context == null
+                ? CompletableFuture.completedFuture(new ArrayList<>())
+                : prepareStep("messages", stepMillis, () -> messageDomainService.listByIds(context.getActiveMessages())));
+
+        // 获取Agent实例与工作区模型配置
+        CompletableFuture<AgentEntity> agentFuture = sessionFuture.thenCompose(session -> prepareStep("agent", stepMillis,
+                () -> agentDomainService.getAgentById(session.getAgentId(), userId)));
+        CompletableFuture<AgentWorkspaceEntity> workspaceFuture = sessionFuture.thenCompose(session -> prepareStep("workspace", stepMillis,
+                () -> agentWorkspaceDomainService.getWorkspace(session.getAgentId(), userId)));
+
+        // 获取模型与服务商
+        CompletableFuture<ModelEntity> modelFuture = workspaceFuture.thenCompose(workspace -> prepareStep("model", stepMillis,
+                () -> llmDomainService.getModelById(workspace.getLlmModelConfig().getModelId())));
+        CompletableFuture<ProviderEntity> providerFuture = modelFuture.thenCompose(model -> prepareStep("provider", stepMillis,
+                () -> llmDomainService.getProviderById(model.getProviderId())));
+
+        // 按原有顺序取结果，保证校验失败时抛出的异常与串行查询一致
+        await(sessionFuture);
+        AgentEntity agent = await(agentFuture);
         environment.setAgentEntity(agent);
 
-        // 获取工作区模型配置
-        AgentWorkspaceEntity workspace = agentWorkspaceDomainService.getWorkspace(agentId, userId);
+        AgentWorkspaceEntity workspace = await(workspaceFuture);
         LlmModelConfig llmModelConfig = workspace.getLlmModelConfig();
         llmModelConfig.setEnableSearch(request.getEnableSearch());
         llmModelConfig.setEnableThinking(request.getEnableThink());
         environment.setLlmModelConfig(llmModelConfig);
 
-
-        // 获取模型
-        ModelEntity model = llmDomainService.getModelById(llmModelConfig.getModelId());
+        ModelEntity model = await(modelFuture);
         model.isActive();
         environment.setModelEntity(model);
 
-        // 获取服务商
-        ProviderEntity provider = llmDomainService.getProviderById(model.getProviderId());
+        ProviderEntity provider = await(providerFuture);
         provider.isActive();
         environment.setProviderEntity(provider);
+        loadHedgeModel(environment);
 
         // 准备上下文，使用Token上下文策略
-        setupContext(environment);
+        setupContext(environment, await(contextFuture), await(messagesFuture));
+        return stepMillis.toString();
+    }
 
-        return environment;
+    /**
+     * 加载工作区配置的备用模型，备用模型不可用时只使用主模型
+     */
+    private void loadHedgeModel(ChatContext environment) {
+        String hedgeModelId = environment.getLlmModelConfig().getHedgeModelId();
+        if (hedgeModelId == null || hedgeModelId.isBlank()) {
+            return;
+        }
+        try {
+            ModelEntity hedgeModel = llmDomainService.getModelById(hedgeModelId);
+            hedgeModel.isActive();
+            ProviderEntity hedgeProvider = llmDomainService.getProviderById(hedgeModel.getProviderId());
+            hedgeProvider.isActive();
+            environment.setHedgeModelEntity(hedgeModel);
+            environment.setHedgeProviderEntity(hedgeProvider);
+        } catch (BusinessException e) {
+            logger.warn("备用模型不可用，仅使用主模型: {}, {}", hedgeModelId, e.getMessage());
+        }
+    }
+
+    /**
+     * 在对话环境准备线程池中执行一个查询步骤，并记录耗时
+     */
+    private <R> CompletableFuture<R> prepareStep(String step, Map<String, Long> stepMillis, Supplier<R> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                stepMillis.put(step, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                recordStep(step, elapsed);
+            }
+        }, chatPrepareExecutor);
+    }
+
+    private static void recordStep(String step, long elapsedNanos) {
+        Timer.builder("chat.prepare.step")
+                .description("对话环境准备各步骤耗时")
+                .tag("step", step)
+                .register(Metrics.globalRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 等待异步结果，还原业务异常
+     */
+    private static <R> R await(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
 
     /**
      * 准备上下文环境，根据上下文策略，使用滑动窗口or摘要算法
      * @param environment 上下文环境
+     * @param context 已有上下文，为空时新建
+     * @param activeMessages 活跃消息
      */
-    private void setupContext(ChatContext environment) {
-        // 获取上下文
-        ContextEntity context = contextDomainService.findBySessionId(environment.getSessionId());
-        List<MessageEntity> activeMessages = new ArrayList<>();
+    private void setupContext(ChatContext environment, ContextEntity context, List<MessageEntity> activeMessages) {
         if (context != null) {
-            // 获取活跃消息
-            List<String> activeMessageIds = context.getActiveMessages();
-            activeMessages = messageDomainService.listByIds(activeMessageIds);
-            applyTokenOverflowStrategy(environment, context, activeMessages);
+            activeMessages = applyTokenOverflowStrategy(environment, context, activeMessages);
         } else {
             // 创建新的上下文
             context = new ContextEntity();
             context.setSessionId(environment.getSessionId());
             context.setActiveMessages(new ArrayList<>());
+            context.setWindow(new ContextWindow());
         }
 
         environment.setHistoryMessages(activeMessages);
         environment.setContextEntity(context);
+        checkPromptBudget(environment);
+    }
+
+    /**
+     * 发起请求前检查提示词token数：系统提示词、摘要与本次消息超出上限时拒绝，
+     * 加上历史消息超出上限时从最早的历史开始裁剪本轮发送的消息，不修改上下文
+     */
+    private void checkPromptBudget(ChatContext environment) {
+        int fixedTokens = LocalTokenizer.countMessageTokens(null, environment.getAgentEntity().getSystemPrompt())
+                + LocalTokenizer.countMessageTokens(null, environment.getUserMessage());
+        String summary = environment.getContextEntity().getSummary();
+        if (summary != null && !summary.isBlank()) {
+            fixedTokens += LocalTokenizer.countMessageTokens(null, summary);
+        }
+        List<MessageEntity> history = environment.getHistoryMessages();
+        int[] historyTokens = new int[history.size()];
+        int totalTokens = fixedTokens;
+        for (int i = 0; i < history.size(); i++) {
+            MessageEntity message = history.get(i);
+            historyTokens[i] = LocalTokenizer.countMessageTokens(message.getId(), message.getContent());
+            totalTokens += historyTokens[i];
+        }
+        PROMPT_TOKENS.record(totalTokens);
+
+        Integer maxTokens = environment.getLlmModelConfig().getMaxTokens();
+        if (maxTokens == null || maxTokens <= 0 || totalTokens <= maxTokens) {
+            return;
+        }
+        if (fixedTokens > maxTokens) {
+            throw new BusinessException("消息过长，超出模型上下文限制: " + fixedTokens + "/" + maxTokens + " tokens");
+        }
+        int skip = 0;
+        while (totalTokens > maxTokens) {
+            totalTokens -= historyTokens[skip++];
+        }
+        logger.info("提示词超出上下文限制，裁剪最早的{}条历史消息, 会话: {}", skip, environment.getSessionId());
+        environment.setHistoryMessages(new ArrayList<>(history.subList(skip, history.size())));
     }
 
     /**
      * 应用Token溢出策略
+     * 策略按上下文窗口的累计token数判断，裁剪时从窗口头部移出，只有生成摘要时才转换消息内容
      * @param environment 对话环境
      * @param context 上下文
      * @param activeMessages 活跃消息列表
+     * @return 移出后剩余的活跃消息
      */
-    public void applyTokenOverflowStrategy(ChatContext environment, ContextEntity context, List<MessageEntity> activeMessages) {
+    public List<MessageEntity> applyTokenOverflowStrategy(ChatContext environment, ContextEntity context,
+                                                          List<MessageEntity> activeMessages) {
         LlmModelConfig llmModelConfig = environment.getLlmModelConfig();
-        // 转换成Token消息
-        List<TokenMessage> tokenMessages = tokenizeMessages(activeMessages);
+        // 窗口缺失或与活跃消息不一致（旧数据）时按已加载的消息重建
+        Map<String, MessageEntity> messagesById = new HashMap<>(activeMessages.size() * 2);
+        for (MessageEntity message : activeMessages) {
+            messagesById.put(message.getId(), message);
+        }
+        ContextWindow window = context.ensureWindow(id -> messageTokens(messagesById.get(id)));
 
         // 组装Token配置项
         TokenOverflowConfig tokenOverflowConfig = new TokenOverflowConfig();
@@ -194,6 +567,8 @@ public class ConversationAppService {
         tokenOverflowConfig.setMaxTokens(llmModelConfig.getMaxTokens());
         tokenOverflowConfig.setReserveRatio(llmModelConfig.getReserveRatio());
         tokenOverflowConfig.setSummaryThreshold(llmModelConfig.getSummaryThreshold());
+        tokenOverflowConfig.setRecentMessages(llmModelConfig.getRecentMessages());
+        tokenOverflowConfig.setQuery(environment.getUserMessage());
 
         // 服务商配置：apikey, baseurl, protocol, modelId
         ProviderConfig providerConfig = new ProviderConfig();
@@ -206,26 +581,43 @@ public class ConversationAppService {
         // 设置对话环境配置
         provider.setConfig(providerConfig);
 
-        // 使用策略处理消息
-        TokenProcessResult result = tokenDomainService.processMessages(tokenMessages, tokenOverflowConfig);
+        environment.setTokenOverflowConfig(tokenOverflowConfig);
 
-        // 更新上下文
-        if (result.isProcessed()) {
-            List<String> retainedMessageIds = result.getRetainedMessages()
-                    .stream()
-                    .map(TokenMessage::getId)
+        // 摘要由后台生成时只应用最近完成的摘要，不在请求路径上调用模型
+        if (contextSummaryService.isAsync(tokenOverflowConfig)) {
+            if (!contextSummaryService.applyLatest(context)) {
+                return activeMessages;
+            }
+            Set<String> retained = new HashSet<>(context.getActiveMessages());
+            return activeMessages.stream()
+                    .filter(message -> retained.contains(message.getId()))
                     .collect(Collectors.toList());
+        }
 
-            // 摘要策略
-            if (llmModelConfig.getStrategyType() == SUMMARIZE) {
-                String oldSummary = context.getSummary();
-                String newSummary = result.getSummary();
-                context.setSummary(oldSummary + "\n\n"+ newSummary);
-            }
+        // 使用策略处理消息
+        TokenProcessResult result = tokenDomainService.processMessages(window,
+                ids -> tokenizeMessages(ids.stream().map(messagesById::get).filter(Objects::nonNull).toList()),
+                tokenOverflowConfig);
 
-            context.setActiveMessages(retainedMessageIds);
+        if (!result.isProcessed()
+                || (result.getEvictedMessageIds().isEmpty() && result.getExcludedMessageIds().isEmpty())) {
+            return activeMessages;
         }
 
+        if (llmModelConfig.getStrategyType() == SUMMARIZE) {
+            // 摘要策略：新摘要作为一级片段加入分层摘要，同时移出被摘要的消息
+            SummaryTree tree = contextSummaryService.rollForward(context, result.getSummary(), tokenOverflowConfig);
+            contextSummaryService.applySummary(context, tree, result.getEvictedMessageIds());
+        } else if (!result.getEvictedMessageIds().isEmpty()) {
+            // 更新上下文，从窗口头部移出
+            context.evictOldest(result.getEvictedMessageIds().size());
+        }
+        // 相关性策略未选中的消息只是本轮不发送
+        Set<String> retained = new HashSet<>(context.getActiveMessages());
+        result.getExcludedMessageIds().forEach(retained::remove);
+        return activeMessages.stream()
+                .filter(message -> retained.contains(message.getId()))
+                .collect(Collectors.toList());
     }
 
     public List<TokenMessage> tokenizeMessages(List<MessageEntity> activeMessages) {
@@ -235,9 +627,21 @@ public class ConversationAppService {
                     tokenMessage.setId(message.getId());
                     tokenMessage.setContent(message.getContent());
                     tokenMessage.setRole(message.getRole().name());
-                    tokenMessage.setTokenCount(message.getTokenCount());
+                    tokenMessage.setTokenCount(messageTokens(message));
                     tokenMessage.setCreatedAt(message.getCreatedAt());
                     return tokenMessage;
                 }).collect(Collectors.toList());
     }
+
+    /**
+     * 消息token数，历史消息缺少token数时用本地分词器补算
+     */
+    private static int messageTokens(MessageEntity message) {
+        if (message == null) {
+            return 0;
+        }
+        Integer tokenCount = message.getTokenCount();
+        return tokenCount == null || tokenCount == 0
+                ? LocalTokenizer.countMessageTokens(message.getId(), message.getContent()) : tokenCount;
+    }
 }
@@ -0,0 +1,24 @@
+package com.xiaoguai.agentx.application.conversation.dto;
+
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:45
+ * @Description: WebSocket聊天请求，同一socket上的多轮对话通过streamId区分
+ */
+public class WebsocketChatRequest extends StreamChatRequest {
+
+    /**
+     * 消息流id，由客户端生成，服务端在每一帧中原样返回
+     */
+    private Integer streamId;
+
+    public Integer getStreamId() {
+        return streamId;
+    }
+
+    public void setStreamId(Integer streamId) {
+        this.streamId = streamId;
+    }
+}
@@ -1,24 +1,31 @@
 package com.xiaoguai.agentx.application.conversation.service;
 
 
-import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
 import com.xiaoguai.agentx.application.conversation.service.context.AgentPromptTemplates;
 import com.xiaoguai.agentx.application.conversation.service.context.ChatContext;
+import com.xiaoguai.agentx.application.conversation.service.memory.SessionChatMemoryStore;
+import com.xiaoguai.agentx.application.conversation.service.message.agent.ParallelToolCalls;
 import com.xiaoguai.agentx.application.conversation.service.message.agent.ToolCallManager;
 import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
 import com.xiaoguai.agentx.domain.conversation.constants.Role;
 import com.xiaoguai.agentx.domain.conversation.factory.MessageFactory;
 import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
 import com.xiaoguai.agentx.domain.conversation.service.ContextDomainService;
+import com.xiaoguai.agentx.domain.conversation.service.ContextSummaryService;
 import com.xiaoguai.agentx.domain.conversation.service.ConversationDomainService;
-import com.xiaoguai.agentx.domain.conversation.service.MessageDomainService;
+import com.xiaoguai.agentx.domain.llm.model.ProviderEntity;
+import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
+import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
 import com.xiaoguai.agentx.infrastrcture.llm.LlmProviderService;
+import com.xiaoguai.agentx.infrastrcture.llm.cache.PromptCache;
+import com.xiaoguai.agentx.infrastrcture.llm.embedding.MessageEmbeddings;
+import com.xiaoguai.agentx.infrastrcture.llm.hedge.HedgedStreamingChatModel;
+import com.xiaoguai.agentx.infrastrcture.trace.ChatTurnRecorder;
 import com.xiaoguai.agentx.infrastrcture.transport.MessageTransport;
-import dev.langchain4j.data.message.AiMessage;
-import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.SystemMessage;
-import dev.langchain4j.data.message.UserMessage;
+import com.xiaoguai.agentx.infrastrcture.utils.JsonUtils;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.StreamingChatModel;
@@ -27,12 +34,16 @@ import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolProvider;
-import dev.langchain4j.store.memory.chat.ChatMemoryStore;
-import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
-import reactor.core.publisher.Flux;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @Author: the-way
@@ -45,7 +56,7 @@ public abstract class AbstractMessageHandler implements MessageHandler {
     /**
      * 默认连接超时时间：5min
      */
-    protected static final long CONNECTION_TIMEOUT = 300000L;
+    public static final long CONNECTION_TIMEOUT = 300000L;
 
     /**
      * 摘要前缀信息
@@ -53,12 +64,20 @@ public abstract class AbstractMessageHandler implements MessageHandler {
     private static final String SUMMARY_PREFIX = "以下是用户历史消息的摘要，请仅作为参考，用户没有提起则不要回答摘要中的内容：\\n";
 
 
-    private final MessageDomainService messageDomainService;
+    private static final Logger logger = LoggerFactory.getLogger(AbstractMessageHandler.class);
+
     private final ConversationDomainService conversationDomainService;
+    private final ContextSummaryService contextSummaryService;
+    private final ExecutorService persistenceExecutor;
+    private final SessionChatMemoryStore memoryStore;
 
-    protected AbstractMessageHandler(MessageDomainService messageDomainService, ConversationDomainService conversationDomainService) {
-        this.messageDomainService = messageDomainService;
+    protected AbstractMessageHandler(ConversationDomainService conversationDomainService,
+                                     ContextSummaryService contextSummaryService,
+                                     ExecutorService persistenceExecutor, SessionChatMemoryStore memoryStore) {
         this.conversationDomainService = conversationDomainService;
+        this.contextSummaryService = contextSummaryService;
+        this.persistenceExecutor = persistenceExecutor;
+        this.memoryStore = memoryStore;
     }
 
 
@@ -73,37 +92,78 @@ public abstract class AbstractMessageHandler implements MessageHandler {
         // 创建连接
         T connection = transport.createConnection(CONNECTION_TIMEOUT);
 
-        // 创建model
-        StreamingChatModel streamModel = LlmProviderService.getStreamModel(environment.getProviderEntity().getProtocol(), environment.getProviderEntity().getConfig());
+        // 客户端断开、超时时取消生成
+        StreamCancellation cancellation = new StreamCancellation();
+        transport.onDisconnect(connection, cancellation::cancel);
+
+        // 创建model，请求服务商前按服务商配额限流，配置了备用模型时对冲请求
+        StreamingChatModel streamModel = createStreamModel(environment);
 
         // 创建对话消息
         MessageEntity userMessage = createUserMessage(environment);
         MessageEntity assistMessage = createAssistMessage(environment, MessageType.TEXT);
+        if (assistMessage.getId() == null) {
+            assistMessage.setId(IdWorker.get32UUID());
+        }
+        // 回复第一帧下发助理消息id，断线后按该id续传
+        transport.startReply(connection, environment.getSessionId(), assistMessage.getId());
 
         conversationDomainService.saveMessagesToContext(List.of(userMessage), environment.getContextEntity());
+        embedMessages(environment, List.of(userMessage));
 
-        // 获取服务提供商
-        ToolProvider toolProvider = provideTools();
+        // 记录本轮对话的流式延迟
+        ChatTurnRecorder recorder = createRecorder(environment);
 
-        // 创建内存记忆上下文
-        ChatMemory memory = initMemory();
+        // 创建记忆上下文，会话历史取自缓存，只转换新增的消息
+        SessionChatMemoryStore.TurnKey memoryId = memoryStore.openTurn(environment);
+        ChatMemory memory = initMemory(memoryId);
 
-        // 构建历史消息
-        buildHistory(environment, memory);
+        // 获取服务提供商，同一步的多个工具调用并行执行
+        ToolProvider toolProvider = instrument(provideTools(), cancellation, recorder);
+        ParallelToolCalls toolCalls = toolProvider == null ? null : parallelToolCalls(memoryId, cancellation);
+        if (toolCalls != null) {
+            toolProvider = toolCalls.wrap(toolProvider);
+            streamModel = toolCalls.wrap(streamModel);
+        }
 
-        // 创建Agent service
+        // 创建Agent service，固定工具顺序并按Agent携带缓存路由键，提高服务商提示词缓存命中
         Agent agent = AiServices.builder(Agent.class)
                 .streamingChatModel(streamModel)
                 .toolProvider(toolProvider)
                 .chatMemory(memory)
+                .chatRequestTransformer(PromptCache.requestTransformer("agent-" + environment.getAgentEntity().getId()))
                 .build();
 
         // 处理聊天请求
-        processChat(agent, connection, transport, environment, userMessage, assistMessage);
+        try {
+            processChat(agent, memory, connection, transport, environment, userMessage, assistMessage, cancellation, recorder);
+        } catch (RuntimeException e) {
+            memory.clear();
+            throw e;
+        }
 
         return connection;
     }
 
+    private static StreamingChatModel createStreamModel(ChatContext environment) {
+        StreamingChatModel streamModel = LlmProviderService.getStreamModel(environment.getProviderEntity());
+        if (environment.getHedgeModelEntity() == null) {
+            return streamModel;
+        }
+        ProviderEntity hedgeProvider = environment.getHedgeProviderEntity();
+        String hedgeModelId = environment.getHedgeModelEntity().getModelId();
+        return HedgedStreamingChatModel.of(
+                streamModel, environment.getProviderEntity().getId() + "/" + environment.getModelEntity().getModelId(),
+                LlmProviderService.getStreamModel(hedgeProvider, hedgeModelId), hedgeProvider.getId() + "/" + hedgeModelId);
+    }
+
+    private static ChatTurnRecorder createRecorder(ChatContext environment) {
+        String agentType = environment.getAgentEntity().getAgentType() == null
+                ? null : environment.getAgentEntity().getAgentType().name();
+        return new ChatTurnRecorder(environment.getSessionId(), environment.getProviderEntity().getName(),
+                environment.getModelEntity().getModelId(), agentType, environment.getStartNanos());
+    }
+
     /**
      * 提供工具调用，默认null
      * 具体可由子类实现
@@ -113,6 +173,18 @@ public abstract class AbstractMessageHandler implements MessageHandler {
     }
 
 
+    /**
+     * 同一步多个工具调用的并行执行，默认null，按顺序执行
+     * 具体可由子类实现
+     *
+     * @param memoryId     本轮记忆id
+     * @param cancellation 本轮取消令牌
+     */
+    protected ParallelToolCalls parallelToolCalls(Object memoryId, StreamCancellation cancellation) {
+        return null;
+    }
+
+
     /**
      * 创建用户消息
      */
@@ -129,78 +201,200 @@ public abstract class AbstractMessageHandler implements MessageHandler {
 
 
 
+    /**
+     * 工具执行前检查对话是否已取消，并记录工具调用耗时
+     */
+    private static ToolProvider instrument(ToolProvider toolProvider, StreamCancellation cancellation,
+                                           ChatTurnRecorder recorder) {
+        if (toolProvider == null) {
+            return null;
+        }
+        return request -> {
+            ToolProviderResult result = toolProvider.provideTools(request);
+            if (result == null) {
+                return null;
+            }
+            ToolProviderResult.Builder builder = ToolProviderResult.builder();
+            result.tools().forEach((specification, executor) -> builder.add(specification, (toolRequest, memoryId) -> {
+                cancellation.throwIfCancelled();
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    String output = executor.execute(toolRequest, memoryId);
+                    success = true;
+                    return output;
+                } finally {
+                    recorder.toolExecuted(toolRequest.name(), System.nanoTime() - start, success);
+                }
+            }));
+            return builder.build();
+        };
+    }
+
+    /**
+     * 本轮的用户消息与保存的消息写穿到会话记忆缓存；用户消息在开始时已保存，但本轮历史不含它，结束时一起追加
+     */
+    private void writeThrough(ChatContext environment, MessageEntity userMessage, List<MessageEntity> messages) {
+        List<MessageEntity> saved = new ArrayList<>(messages.size() + 1);
+        saved.add(userMessage);
+        saved.addAll(messages);
+        memoryStore.append(environment.getSessionId(), saved);
+    }
+
     /**
      * 处理聊天请求
      */
-    protected <T> void processChat(Agent agent, T connect,
+    protected <T> void processChat(Agent agent, ChatMemory memory, T connect,
                                    MessageTransport<T> transport, ChatContext environment,
-                                   MessageEntity userMessage, MessageEntity assistMessage) {
+                                   MessageEntity userMessage, MessageEntity assistMessage,
+                                   StreamCancellation cancellation, ChatTurnRecorder recorder) {
 
         TokenStream tokenStream = agent.chat(userMessage.getContent());
-        tokenStream.ignoreErrors();
+        // 已生成的内容，取消或出错时作为截断回复保存
+        StringBuilder partialAnswer = new StringBuilder();
         tokenStream.onPartialResponse(token -> {
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            recorder.onToken();
+            partialAnswer.append(token);
             transport.sendMessage(connect, AgentChatResponse.buildMessage(token, MessageType.TEXT));
         });
 
+        // 数据库写入交给线程池按顺序执行，不阻塞LLM回调线程
+        PersistenceQueue persistence = new PersistenceQueue(persistenceExecutor);
+        // 本轮的工具调用消息，结束时按执行顺序批量写入
+        ToolMessageBuffer toolMessages = new ToolMessageBuffer();
+
         tokenStream.onCompleteResponse(response -> {
+            cancellation.finish();
+            memory.clear();
             TokenUsage tokenUsage = response.tokenUsage();
-            assistMessage.setTokenCount(tokenUsage.outputTokenCount());
+            recorder.promptUsage(tokenUsage.inputTokenCount(), PromptCache.cachedTokens(tokenUsage));
+            recorder.completed(tokenUsage.outputTokenCount());
+            // 消息token数在保存时由本地分词器按内容计算，inputTokenCount是整个提示词的用量，不记到用户消息上
             assistMessage.setContent(response.aiMessage().text());
 
-            userMessage.setTokenCount(tokenUsage.inputTokenCount());
-            // 更新用户的token
-            messageDomainService.updateMessage(userMessage);
             // 发送sse消息
             transport.sendEndMessage(connect, AgentChatResponse.buildEndMessage(MessageType.TEXT));
 
-            // 保存信息
-            conversationDomainService.saveMessagesToContext(List.of(assistMessage), environment.getContextEntity());
+            // 保存信息，工具调用消息与回复一次批量写入，写入后按需在后台生成摘要
+            List<MessageEntity> messages = toolMessages.drain();
+            messages.add(assistMessage);
+            persistence.submit(() -> {
+                conversationDomainService.saveMessagesToContext(messages, environment.getContextEntity());
+                writeThrough(environment, userMessage, messages);
+                embedMessages(environment, messages);
+                contextSummaryService.scheduleIfNeeded(environment.getContextEntity(), environment.getTokenOverflowConfig());
+            });
         });
 
-        StringBuilder toolMessageBuilder = new StringBuilder();
         tokenStream.onToolExecuted(tool -> {
-            String toolName = tool.request().name();
-            toolMessageBuilder.append("执行工具: ").append(toolName).append("\n")
-                    .append("结果: ").append(tool.result());
+            String content = "执行工具: " + tool.request().name() + "\n" + "结果: " + tool.result();
             MessageEntity toolMessage = createAssistMessage(environment, MessageType.TOOL_CALL);
-            toolMessage.setContent(toolMessageBuilder.toString());
-            transport.sendMessage(connect, AgentChatResponse.buildMessage(toolMessageBuilder.toString(), MessageType.TOOL_CALL));
-            conversationDomainService.saveMessagesToContext(List.of(toolMessage), environment.getContextEntity());
+            toolMessage.setContent(content);
+            transport.sendMessage(connect, AgentChatResponse.buildMessage(content, MessageType.TOOL_CALL));
+            toolMessages.add(toolMessage);
         });
 
-        tokenStream.start();
+        tokenStream.onError(error -> {
+            String reason = cancellation.isCancelled() ? cancellation.getReason() : StreamCancellation.REASON_ERROR;
+            cancellation.finish();
+            memory.clear();
+            recorder.failed(reason);
+            if (!cancellation.isCancelled()) {
+                logger.error("对话生成失败: {}", error.getMessage(), error);
+                transport.handleError(connect, error);
+            }
+            // 保存已执行的工具调用与已生成的部分回复，回复标记为截断
+            List<MessageEntity> messages = toolMessages.drain();
+            if (!partialAnswer.isEmpty()) {
+                assistMessage.setContent(partialAnswer.toString());
+                assistMessage.setMetadata(JsonUtils.toJsonString(Map.of("truncated", true, "reason", reason)));
+                messages.add(assistMessage);
+            }
+            if (messages.isEmpty()) {
+                return;
+            }
+            persistence.submit(() -> {
+                conversationDomainService.saveMessagesToContext(messages, environment.getContextEntity());
+                writeThrough(environment, userMessage, messages);
+                embedMessages(environment, messages);
+            });
+        });
+
+        // 绑定取消令牌，流式请求在取消时被中断
+        recorder.requestStarted();
+        StreamCancellation.runWith(cancellation, tokenStream::start);
     }
 
 
     /**
-     * 初始化内存记忆
+     * 相关性策略的会话在消息保存后于后台计算消息向量并缓存
      */
-    private ChatMemory initMemory() {
-        return MessageWindowChatMemory.builder()
-                .maxMessages(100)
-                .chatMemoryStore(new InMemoryChatMemoryStore())
-                .build();
+    private static void embedMessages(ChatContext environment, List<MessageEntity> messages) {
+        TokenOverflowConfig config = environment.getTokenOverflowConfig();
+        if (config == null || config.getStrategyType() != TokenOverflowStrategyEnum.RELEVANCE) {
+            return;
+        }
+        Map<String, String> contents = new LinkedHashMap<>();
+        messages.forEach(message -> contents.put(message.getId(), message.getContent()));
+        MessageEmbeddings.embedAsync(contents);
     }
 
     /**
-     * 构建历史消息
+     * 单轮对话的持久化队列，保证写入顺序与回调顺序一致
      */
-    private void buildHistory(ChatContext context, ChatMemory memory) {
-        String summary = context.getContextEntity().getSummary();
-        if (StringUtils.isNotBlank(summary)) {
-            memory.add(new AiMessage(summary));
+    private static class PersistenceQueue {
+
+        private final ExecutorService executor;
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        PersistenceQueue(ExecutorService executor) {
+            this.executor = executor;
         }
-        memory.add(new SystemMessage(context.getAgentEntity().getSystemPrompt()));
-        for (MessageEntity message : context.getHistoryMessages()) {
-            if (message.isUserMessage()) {
-                memory.add(new UserMessage(message.getContent()));
-            } else if (message.isAssistMessage()) {
-                memory.add(new AiMessage(message.getContent()));
-            } else if (message.isSystemMessage()) {
-                memory.add(new SystemMessage(message.getContent()));
-            }
+
+        synchronized void submit(Runnable task) {
+            tail = tail.thenRunAsync(task, executor)
+                    .exceptionally(ex -> {
+                        logger.error("消息持久化失败: {}", ex.getMessage(), ex);
+                        return null;
+                    });
+        }
+    }
+
+    /**
+     * 本轮对话的工具调用消息，工具结果回调与结束回调可能在不同线程
+     */
+    private static class ToolMessageBuffer {
+
+        private final List<MessageEntity> messages = new ArrayList<>();
+
+        synchronized void add(MessageEntity message) {
+            messages.add(message);
+        }
+
+        /**
+         * 取出已缓存的消息，返回可继续追加的列表
+         */
+        synchronized List<MessageEntity> drain() {
+            List<MessageEntity> drained = new ArrayList<>(messages);
+            messages.clear();
+            return drained;
         }
     }
 
+    /**
+     * 初始化记忆，本轮对话的消息写入会话记忆存储的工作区
+     */
+    private ChatMemory initMemory(Object memoryId) {
+        return MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(100)
+                .chatMemoryStore(memoryStore)
+                .build();
+    }
+
 
 }
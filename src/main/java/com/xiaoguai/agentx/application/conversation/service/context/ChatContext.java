@@ -9,6 +9,7 @@ import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
 import com.xiaoguai.agentx.domain.llm.model.ModelEntity;
 import com.xiaoguai.agentx.domain.llm.model.ProviderEntity;
 import com.xiaoguai.agentx.domain.llm.model.config.LlmModelConfig;
+import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
@@ -73,6 +74,26 @@ public class ChatContext {
      */
     private List<MessageEntity> historyMessages;
 
+    /**
+     * 备用模型，未配置时为空
+     */
+    private ModelEntity hedgeModelEntity;
+
+    /**
+     * 备用模型的服务商
+     */
+    private ProviderEntity hedgeProviderEntity;
+
+    /**
+     * Token溢出配置，新会话为空，对话结束后据此调度后台摘要
+     */
+    private TokenOverflowConfig tokenOverflowConfig;
+
+    /**
+     * 对话开始时间（环境准备前），System.nanoTime()
+     */
+    private long startNanos = System.nanoTime();
+
 
     /**
      * 构建聊天请求
@@ -187,4 +208,36 @@ public class ChatContext {
     public void setLlmModelConfig(LlmModelConfig llmModelConfig) {
         this.llmModelConfig = llmModelConfig;
     }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public void setStartNanos(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public ModelEntity getHedgeModelEntity() {
+        return hedgeModelEntity;
+    }
+
+    public void setHedgeModelEntity(ModelEntity hedgeModelEntity) {
+        this.hedgeModelEntity = hedgeModelEntity;
+    }
+
+    public ProviderEntity getHedgeProviderEntity() {
+        return hedgeProviderEntity;
+    }
+
+    public void setHedgeProviderEntity(ProviderEntity hedgeProviderEntity) {
+        this.hedgeProviderEntity = hedgeProviderEntity;
+    }
+
+    public TokenOverflowConfig getTokenOverflowConfig() {
+        return tokenOverflowConfig;
+    }
+
+    public void setTokenOverflowConfig(TokenOverflowConfig tokenOverflowConfig) {
+        this.tokenOverflowConfig = tokenOverflowConfig;
+    }
 }
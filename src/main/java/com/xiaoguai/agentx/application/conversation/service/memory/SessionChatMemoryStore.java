@@ -0,0 +1,299 @@
+package com.xiaoguai.agentx.application.conversation.service.memory;
+
+
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.xiaoguai.agentx.application.conversation.service.context.ChatContext;
+import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
+import com.xiaoguai.agentx.infrastrcture.config.ChatMemoryCacheProperties;
+import com.xiaoguai.agentx.infrastrcture.llm.cache.PromptCache;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:25
+ * @Description: 按会话缓存的对话记忆
+ * 会话的历史消息以消息表与上下文表为准，这里缓存已转换为LangChain4j消息的结果，
+ * 按LRU淘汰并限制总消息数。每轮对话对比上下文中的活跃消息id：
+ * 只是追加了新消息时只转换新增部分，摘要、系统提示词变化或窗口被裁剪时整体重建。
+ * 本轮保存的消息写穿到缓存，消息表与上下文表仍由持久化流程写入。
+ * 对话过程中工具调用等产生的中间消息只写入本轮的工作区，不影响缓存
+ */
+@Component
+public class SessionChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryCacheProperties properties;
+
+    private final Object lock = new Object();
+
+    /**
+     * key: 会话id，按访问顺序排列
+     */
+    private final LinkedHashMap<String, SessionMemory> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int cachedMessages;
+
+    /**
+     * 进行中对话的工作区，key: 本轮记忆id
+     */
+    private final Map<Object, List<ChatMessage>> turns = new ConcurrentHashMap<>();
+
+    public SessionChatMemoryStore(ChatMemoryCacheProperties properties) {
+        this.properties = properties;
+        Gauge.builder("chat.memory.cache.sessions", this, store -> store.sessions.size())
+                .description("缓存记忆的会话数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("chat.memory.cache.messages", this, store -> store.cachedMessages)
+                .description("缓存的记忆消息数")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 开始一轮对话，同步会话历史并返回本轮记忆id
+     * 对话结束后需要调用deleteMessages释放工作区
+     */
+    public TurnKey openTurn(ChatContext environment) {
+        TurnKey key = new TurnKey(environment.getSessionId());
+        turns.put(key, new ArrayList<>(history(environment)));
+        return key;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        List<ChatMessage> messages = turns.get(memoryId);
+        return messages == null ? List.of() : messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        turns.computeIfPresent(memoryId, (key, current) -> new ArrayList<>(messages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        turns.remove(memoryId);
+    }
+
+    /**
+     * 写穿：本轮消息保存后追加到会话缓存，下一轮对话直接命中，不再转换本轮的消息
+     * 缓存与下一轮的历史不一致（摘要、裁剪）时按前缀校验整体重建，这里不做判断
+     *
+     * @param sessionId 会话id
+     * @param messages  本轮保存的消息，按写入上下文的顺序
+     */
+    public void append(String sessionId, List<MessageEntity> messages) {
+        if (!properties.isEnabled() || messages.isEmpty()) {
+            return;
+        }
+        SessionMemory cached;
+        synchronized (lock) {
+            cached = sessions.get(sessionId);
+        }
+        if (cached != null) {
+            put(sessionId, cached, cached.append(messages));
+        }
+    }
+
+    /**
+     * 会话消息被删除时移除缓存
+     */
+    public void evict(String sessionId) {
+        synchronized (lock) {
+            SessionMemory removed = sessions.remove(sessionId);
+            if (removed != null) {
+                cachedMessages -= removed.messages.size();
+            }
+        }
+    }
+
+    /**
+     * 获取会话历史，优先使用缓存并只转换新增消息
+     */
+    private List<ChatMessage> history(ChatContext environment) {
+        String summary = environment.getContextEntity().getSummary();
+        String systemPrompt = environment.getAgentEntity().getSystemPrompt();
+        List<MessageEntity> historyMessages = environment.getHistoryMessages();
+        if (!properties.isEnabled()) {
+            return build(summary, systemPrompt, historyMessages).messages;
+        }
+
+        String sessionId = environment.getSessionId();
+        SessionMemory cached;
+        synchronized (lock) {
+            cached = sessions.get(sessionId);
+        }
+
+        SessionMemory memory;
+        String result;
+        if (cached != null && cached.matches(summary, systemPrompt, historyMessages)) {
+            if (cached.messageIds.size() == historyMessages.size()) {
+                memory = cached;
+                result = "hit";
+            } else {
+                memory = cached.append(historyMessages.subList(cached.messageIds.size(), historyMessages.size()));
+                result = "append";
+            }
+        } else {
+            memory = build(summary, systemPrompt, historyMessages);
+            result = cached == null ? "miss" : "rebuild";
+        }
+        Counter.builder("chat.memory.cache")
+                .description("会话记忆缓存命中情况")
+                .tag("result", result)
+                .register(Metrics.globalRegistry)
+                .increment();
+
+        if (memory != cached) {
+            put(sessionId, cached, memory);
+        }
+        return memory.messages;
+    }
+
+    private void put(String sessionId, SessionMemory expected, SessionMemory memory) {
+        synchronized (lock) {
+            SessionMemory current = sessions.get(sessionId);
+            // 并发对话已更新为更长的历史时保留较新的
+            if (current != expected && current != null && current.messageIds.size() >= memory.messageIds.size()) {
+                return;
+            }
+            if (current != null) {
+                cachedMessages -= current.messages.size();
+            }
+            sessions.put(sessionId, memory);
+            cachedMessages += memory.messages.size();
+            Iterator<Map.Entry<String, SessionMemory>> iterator = sessions.entrySet().iterator();
+            while (iterator.hasNext() && (sessions.size() > properties.getMaxSessions()
+                    || cachedMessages > properties.getMaxMessages())) {
+                Map.Entry<String, SessionMemory> eldest = iterator.next();
+                if (eldest.getValue() == memory) {
+                    break;
+                }
+                cachedMessages -= eldest.getValue().messages.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 前缀稳定时系统提示词在最前，摘要在其后：摘要更新只影响之后的内容，系统提示词与工具定义仍可命中服务商缓存
+     */
+    private static SessionMemory build(String summary, String systemPrompt, List<MessageEntity> historyMessages) {
+        List<ChatMessage> messages = new ArrayList<>(historyMessages.size() + 2);
+        boolean prefixStable = PromptCache.isPrefixStable();
+        if (prefixStable) {
+            messages.add(new SystemMessage(systemPrompt));
+        }
+        if (StringUtils.isNotBlank(summary)) {
+            messages.add(new AiMessage(summary));
+        }
+        if (!prefixStable) {
+            messages.add(new SystemMessage(systemPrompt));
+        }
+        List<String> messageIds = new ArrayList<>(historyMessages.size());
+        for (MessageEntity message : historyMessages) {
+            messageIds.add(message.getId());
+            ChatMessage chatMessage = toChatMessage(message);
+            if (chatMessage != null) {
+                messages.add(chatMessage);
+            }
+        }
+        return new SessionMemory(summary, systemPrompt, messageIds, messages);
+    }
+
+    private static ChatMessage toChatMessage(MessageEntity message) {
+        if (message.isUserMessage()) {
+            return new UserMessage(message.getContent());
+        } else if (message.isAssistMessage()) {
+            return new AiMessage(message.getContent());
+        } else if (message.isSystemMessage()) {
+            return new SystemMessage(message.getContent());
+        }
+        return null;
+    }
+
+    /**
+     * 单轮对话的记忆id，同一会话的并发对话互不影响
+     */
+    public static final class TurnKey {
+
+        private final String sessionId;
+
+        TurnKey(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public String toString() {
+            return sessionId;
+        }
+    }
+
+    /**
+     * 已转换的会话历史，不可变
+     */
+    private static final class SessionMemory {
+
+        private final String summary;
+
+        private final String systemPrompt;
+
+        private final List<String> messageIds;
+
+        private final List<ChatMessage> messages;
+
+        SessionMemory(String summary, String systemPrompt, List<String> messageIds, List<ChatMessage> messages) {
+            this.summary = summary;
+            this.systemPrompt = systemPrompt;
+            this.messageIds = Collections.unmodifiableList(messageIds);
+            this.messages = Collections.unmodifiableList(messages);
+        }
+
+        /**
+         * 摘要与提示词未变，且缓存的消息是当前历史的前缀
+         */
+        boolean matches(String summary, String systemPrompt, List<MessageEntity> historyMessages) {
+            if (!Objects.equals(this.summary, summary) || !Objects.equals(this.systemPrompt, systemPrompt)
+                    || messageIds.size() > historyMessages.size()) {
+                return false;
+            }
+            for (int i = 0; i < messageIds.size(); i++) {
+                if (!Objects.equals(messageIds.get(i), historyMessages.get(i).getId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        SessionMemory append(List<MessageEntity> newMessages) {
+            List<String> ids = new ArrayList<>(messageIds.size() + newMessages.size());
+            ids.addAll(messageIds);
+            List<ChatMessage> appended = new ArrayList<>(messages.size() + newMessages.size());
+            appended.addAll(messages);
+            for (MessageEntity message : newMessages) {
+                ids.add(message.getId());
+                ChatMessage chatMessage = toChatMessage(message);
+                if (chatMessage != null) {
+                    appended.add(chatMessage);
+                }
+            }
+            return new SessionMemory(summary, systemPrompt, ids, appended);
+        }
+    }
+}
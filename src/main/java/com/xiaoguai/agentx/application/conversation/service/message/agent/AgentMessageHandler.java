@@ -2,12 +2,18 @@ package com.xiaoguai.agentx.application.conversation.service.message.agent;
 
 
 import com.xiaoguai.agentx.application.conversation.service.AbstractMessageHandler;
+import com.xiaoguai.agentx.application.conversation.service.memory.SessionChatMemoryStore;
 import com.xiaoguai.agentx.domain.conversation.service.ContextDomainService;
+import com.xiaoguai.agentx.domain.conversation.service.ContextSummaryService;
 import com.xiaoguai.agentx.domain.conversation.service.ConversationDomainService;
-import com.xiaoguai.agentx.domain.conversation.service.MessageDomainService;
+import com.xiaoguai.agentx.infrastrcture.config.ToolCallProperties;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
 import dev.langchain4j.service.tool.ToolProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * @Author: the-way
  * @Verson: v1.0
@@ -18,10 +24,19 @@ import org.springframework.stereotype.Component;
 public class AgentMessageHandler extends AbstractMessageHandler {
 
     private final ToolCallManager toolCallManager;
+    private final ExecutorService toolCallExecutor;
+    private final ToolCallProperties toolCallProperties;
 
-    protected AgentMessageHandler(MessageDomainService messageDomainService, ConversationDomainService conversationDomainService, ToolCallManager toolCallManager) {
-        super(messageDomainService, conversationDomainService);
+    protected AgentMessageHandler(ConversationDomainService conversationDomainService,
+                                  ContextSummaryService contextSummaryService,
+                                  ExecutorService contextExecutorService, SessionChatMemoryStore memoryStore,
+                                  ToolCallManager toolCallManager,
+                                  @Qualifier("toolCallExecutor") ExecutorService toolCallExecutor,
+                                  ToolCallProperties toolCallProperties) {
+        super(conversationDomainService, contextSummaryService, contextExecutorService, memoryStore);
         this.toolCallManager = toolCallManager;
+        this.toolCallExecutor = toolCallExecutor;
+        this.toolCallProperties = toolCallProperties;
     }
 
 
@@ -29,4 +44,12 @@ public class AgentMessageHandler extends AbstractMessageHandler {
     protected ToolProvider provideTools() {
         return toolCallManager.createToolProvider(toolCallManager.getAvailableTools());
     }
+
+    @Override
+    protected ParallelToolCalls parallelToolCalls(Object memoryId, StreamCancellation cancellation) {
+        if (!toolCallProperties.isParallel()) {
+            return null;
+        }
+        return new ParallelToolCalls(toolCallExecutor, toolCallProperties.getStepTimeout(), memoryId, cancellation);
+    }
 }
@@ -0,0 +1,294 @@
+package com.xiaoguai.agentx.application.conversation.service.message.agent;
+
+
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:50
+ * @Description: 单轮对话内同一步的多个工具调用并行执行
+ * LangChain4j按顺序逐个执行模型返回的工具调用。这里在模型响应回调中先把本步的工具调用全部提交到线程池，
+ * LangChain4j随后按原顺序取结果，结果顺序与写入记忆的顺序不变；整步共享一个截止时间，超时的工具被中断并返回超时结果。
+ * 线程池饱和时不在模型响应回调线程中执行，直接返回繁忙结果；对话取消时中断本步未取走的工具调用
+ */
+public class ParallelToolCalls {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelToolCalls.class);
+
+    private static final DistributionSummary STEP_SIZE = DistributionSummary.builder("chat.tool.step.size")
+            .description("同一步并行执行的工具调用数")
+            .register(Metrics.globalRegistry);
+
+    private static final Counter REJECTED = Counter.builder("chat.tool.rejected")
+            .description("工具线程池饱和被拒绝的工具调用数")
+            .register(Metrics.globalRegistry);
+
+    private final ExecutorService executor;
+
+    private final Duration stepTimeout;
+
+    private final Object memoryId;
+
+    private final StreamCancellation cancellation;
+
+    /**
+     * key: 工具名称
+     */
+    private final Map<String, ToolExecutor> executors = new ConcurrentHashMap<>();
+
+    /**
+     * 已提交的工具调用，取结果后移除
+     */
+    private final Map<ToolExecutionRequest, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 本步在取消令牌上的登记，本步结果全部取走后关闭
+     */
+    private StreamCancellation.Registration registration;
+
+    /**
+     * @param executor     工具执行线程池
+     * @param stepTimeout  同一步所有工具调用的截止时间
+     * @param memoryId     本轮记忆id
+     * @param cancellation 本轮取消令牌，工具在线程池中执行时绑定
+     */
+    public ParallelToolCalls(ExecutorService executor, Duration stepTimeout, Object memoryId,
+                             StreamCancellation cancellation) {
+        this.executor = executor;
+        this.stepTimeout = stepTimeout;
+        this.memoryId = memoryId;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * 包装工具提供者，执行工具时优先取已提交的结果
+     */
+    public ToolProvider wrap(ToolProvider toolProvider) {
+        return request -> {
+            ToolProviderResult result = toolProvider.provideTools(request);
+            if (result == null) {
+                return null;
+            }
+            ToolProviderResult.Builder builder = ToolProviderResult.builder();
+            for (Map.Entry<ToolSpecification, ToolExecutor> entry : result.tools().entrySet()) {
+                executors.put(entry.getKey().name(), entry.getValue());
+                builder.add(entry.getKey(), (toolRequest, id) -> execute(toolRequest, id, entry.getValue()));
+            }
+            return builder.build();
+        };
+    }
+
+    /**
+     * 包装模型，响应包含工具调用时先提交本步的全部工具调用
+     */
+    public StreamingChatModel wrap(StreamingChatModel model) {
+        return new StreamingChatModel() {
+
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                model.chat(chatRequest, new StreamingChatResponseHandler() {
+
+                    @Override
+                    public void onPartialResponse(String partialResponse) {
+                        handler.onPartialResponse(partialResponse);
+                    }
+
+                    @Override
+                    public void onPartialThinking(PartialThinking partialThinking) {
+                        handler.onPartialThinking(partialThinking);
+                    }
+
+                    @Override
+                    public void onPartialToolCall(PartialToolCall partialToolCall) {
+                        handler.onPartialToolCall(partialToolCall);
+                    }
+
+                    @Override
+                    public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+                        handler.onCompleteToolCall(completeToolCall);
+                    }
+
+                    @Override
+                    public void onCompleteResponse(ChatResponse completeResponse) {
+                        if (completeResponse.aiMessage() != null && completeResponse.aiMessage().hasToolExecutionRequests()) {
+                            submit(completeResponse.aiMessage().toolExecutionRequests());
+                        }
+                        handler.onCompleteResponse(completeResponse);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        handler.onError(error);
+                    }
+                });
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public List<ChatModelListener> listeners() {
+                return model.listeners();
+            }
+
+            @Override
+            public ModelProvider provider() {
+                return model.provider();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    /**
+     * 提交同一步的工具调用，单个调用同样提交到线程池，以便超过截止时间时中断
+     */
+    private void submit(List<ToolExecutionRequest> requests) {
+        STEP_SIZE.record(requests.size());
+        // 上一步LangChain4j未取走的调用不会再被取走，提交新一步前中断
+        cancelPending();
+        if (cancellation.isCancelled()) {
+            return;
+        }
+        long deadline = System.nanoTime() + stepTimeout.toNanos();
+        for (ToolExecutionRequest request : requests) {
+            ToolExecutor toolExecutor = executors.get(request.name());
+            if (toolExecutor == null || pending.containsKey(request)) {
+                // 未知工具交给LangChain4j处理
+                continue;
+            }
+            // 通过submit得到FutureTask，超时取消时才会中断执行线程
+            Future<String> future;
+            try {
+                future = executor.submit(() -> {
+                    String[] output = new String[1];
+                    StreamCancellation.runWith(cancellation, () -> output[0] = toolExecutor.execute(request, memoryId));
+                    return output[0];
+                });
+            } catch (RejectedExecutionException e) {
+                // 当前线程是模型响应回调线程，不能在这里执行工具，取结果时返回繁忙结果
+                REJECTED.increment();
+                logger.warn("工具线程池已满，拒绝工具调用: {}", request.name());
+                future = null;
+            }
+            pending.put(request, new Pending(future, deadline));
+        }
+        if (!pending.isEmpty()) {
+            register();
+        }
+    }
+
+    /**
+     * 在取消令牌上登记中断本步全部调用，避免对话中止后线程池中的调用与pending中的记录残留
+     */
+    private synchronized void register() {
+        if (registration == null) {
+            registration = cancellation.register(this::cancelPending);
+        }
+    }
+
+    /**
+     * 登记在锁外关闭，避免与取消线程执行登记时互相等待
+     */
+    private void closeRegistration() {
+        StreamCancellation.Registration current;
+        synchronized (this) {
+            current = registration;
+            registration = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void cancelPending() {
+        pending.values().forEach(submitted -> {
+            if (submitted.future != null) {
+                submitted.future.cancel(true);
+            }
+        });
+        pending.clear();
+        closeRegistration();
+    }
+
+    private String execute(ToolExecutionRequest request, Object id, ToolExecutor toolExecutor) {
+        Pending submitted = pending.remove(request);
+        if (submitted == null) {
+            return toolExecutor.execute(request, id);
+        }
+        if (pending.isEmpty()) {
+            closeRegistration();
+        }
+        if (submitted.future == null) {
+            return "工具执行繁忙，请稍后重试: " + request.name();
+        }
+        try {
+            long remaining = submitted.deadline - System.nanoTime();
+            return submitted.future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            submitted.future.cancel(true);
+            Counter.builder("chat.tool.timeout")
+                    .description("超过单步截止时间的工具调用数")
+                    .tag("tool", request.name())
+                    .register(Metrics.globalRegistry)
+                    .increment();
+            logger.warn("工具调用超时: {}, 截止时间: {}", request.name(), stepTimeout);
+            return "工具执行超时: " + request.name();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            submitted.future.cancel(true);
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * 已提交的工具调用，线程池拒绝时future为空
+     */
+    private record Pending(Future<String> future, long deadline) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.xiaoguai.agentx.application.conversation.service.message.agent;
 
 
+import com.xiaoguai.agentx.infrastrcture.http.OutboundHttpPool;
 import dev.langchain4j.mcp.McpToolProvider;
 import dev.langchain4j.mcp.client.DefaultMcpClient;
 import dev.langchain4j.mcp.client.McpClient;
@@ -9,6 +10,7 @@ import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
 import dev.langchain4j.service.tool.ToolProvider;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,8 +29,11 @@ public class ToolCallManager {
      */
     public ToolProvider createToolProvider(List<String> tools) {
         List<McpClient> clients = new ArrayList<>();
+        // MCP传输层自建OkHttp客户端，无法注入共享连接池，仅统一超时配置
+        Duration timeout = OutboundHttpPool.getInstance().getProperties().getReadTimeout();
         for (String url : tools) {
             McpTransport transport = new HttpMcpTransport.Builder()
+                    .timeout(timeout)
                     .logRequests(true)
                     .logResponses(true)
                     .sseUrl(url)
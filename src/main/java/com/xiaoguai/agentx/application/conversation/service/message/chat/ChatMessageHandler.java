@@ -2,12 +2,15 @@ package com.xiaoguai.agentx.application.conversation.service.message.chat;
 
 
 import com.xiaoguai.agentx.application.conversation.service.AbstractMessageHandler;
+import com.xiaoguai.agentx.application.conversation.service.memory.SessionChatMemoryStore;
 import com.xiaoguai.agentx.application.conversation.service.message.agent.ToolCallManager;
 import com.xiaoguai.agentx.domain.conversation.service.ContextDomainService;
+import com.xiaoguai.agentx.domain.conversation.service.ContextSummaryService;
 import com.xiaoguai.agentx.domain.conversation.service.ConversationDomainService;
-import com.xiaoguai.agentx.domain.conversation.service.MessageDomainService;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * @Author: the-way
  * @Verson: v1.0
@@ -18,7 +21,9 @@ import org.springframework.stereotype.Component;
 public class ChatMessageHandler extends AbstractMessageHandler {
 
 
-    protected ChatMessageHandler(MessageDomainService messageDomainService, ConversationDomainService conversationDomainService) {
-        super(messageDomainService, conversationDomainService);
+    protected ChatMessageHandler(ConversationDomainService conversationDomainService,
+                                 ContextSummaryService contextSummaryService,
+                                 ExecutorService contextExecutorService, SessionChatMemoryStore memoryStore) {
+        super(conversationDomainService, contextSummaryService, contextExecutorService, memoryStore);
     }
 }
@@ -35,5 +35,20 @@ public enum MessageType {
     /**
      * 任务拆分结束消息
      */
-    TASK_SPLIT_FINISH
+    TASK_SPLIT_FINISH,
+
+    /**
+     * 排队位置消息，content为当前排队位置
+     */
+    QUEUE_POSITION,
+
+    /**
+     * 服务停机提示，客户端应重新发起对话，content为建议的重连等待毫秒数
+     */
+    RECONNECT,
+
+    /**
+     * 回复开始，本轮回复的第一帧，content为助理消息id，断线后按该id续传
+     */
+    REPLY_START
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.xiaoguai.agentx.domain.conversation.model;
+
+
+import com.xiaoguai.agentx.domain.agent.model.AgentEntity;
+import com.xiaoguai.agentx.domain.agent.model.AgentWorkspaceEntity;
+import com.xiaoguai.agentx.domain.llm.model.ModelEntity;
+import com.xiaoguai.agentx.domain.llm.model.ProviderEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 19:05
+ * @Description: 对话上下文快照，一次查询加载会话、Agent、工作区、模型、服务商、上下文及活跃消息
+ */
+public class ChatContextSnapshot {
+
+    private String sessionId;
+
+    private SessionEntity session;
+
+    private AgentEntity agent;
+
+    private AgentWorkspaceEntity workspace;
+
+    private ModelEntity model;
+
+    private ProviderEntity provider;
+
+    /**
+     * 上下文，会话首轮对话时为空
+     */
+    private ContextEntity context;
+
+    /**
+     * 活跃消息，按上下文中的id顺序排列
+     */
+    private List<MessageEntity> activeMessages = new ArrayList<>();
+
+    /**
+     * 上下文窗口行，按序号排列
+     */
+    private List<ContextWindowEntity> windowRows = new ArrayList<>();
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public SessionEntity getSession() {
+        return session;
+    }
+
+    public void setSession(SessionEntity session) {
+        this.session = session;
+    }
+
+    public AgentEntity getAgent() {
+        return agent;
+    }
+
+    public void setAgent(AgentEntity agent) {
+        this.agent = agent;
+    }
+
+    public AgentWorkspaceEntity getWorkspace() {
+        return workspace;
+    }
+
+    public void setWorkspace(AgentWorkspaceEntity workspace) {
+        this.workspace = workspace;
+    }
+
+    public ModelEntity getModel() {
+        return model;
+    }
+
+    public void setModel(ModelEntity model) {
+        this.model = model;
+    }
+
+    public ProviderEntity getProvider() {
+        return provider;
+    }
+
+    public void setProvider(ProviderEntity provider) {
+        this.provider = provider;
+    }
+
+    public ContextEntity getContext() {
+        return context;
+    }
+
+    public void setContext(ContextEntity context) {
+        this.context = context;
+    }
+
+    public List<MessageEntity> getActiveMessages() {
+        return activeMessages;
+    }
+
+    public void setActiveMessages(List<MessageEntity> activeMessages) {
+        this.activeMessages = activeMessages;
+    }
+
+    public List<ContextWindowEntity> getWindowRows() {
+        return windowRows;
+    }
+
+    public void setWindowRows(List<ContextWindowEntity> windowRows) {
+        this.windowRows = windowRows;
+    }
+}
@@ -1,18 +1,19 @@
 package com.xiaoguai.agentx.domain.conversation.model;
 
-import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
-import com.baomidou.mybatisplus.extension.activerecord.Model;
-import com.xiaoguai.agentx.infrastrcture.converter.ListConverter;
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
+import com.xiaoguai.agentx.infrastrcture.converter.SummaryTreeConverter;
 import com.xiaoguai.agentx.infrastrcture.entity.BaseEntity;
-import com.xiaoguai.agentx.infrastrcture.typehandler.JsonTypeHandler;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
 
 /**
  * 上下文实体类，管理会话的上下文窗口
@@ -33,17 +34,205 @@ public class ContextEntity extends BaseEntity {
     private String sessionId;
 
     /**
-     * 活跃消息ID列表，JSON数组
+     * 上下文窗口起始序号，context_window中序号更小的行已移出
      */
-    @TableField(value = "active_messages", typeHandler = ListConverter.class)
+    @TableField("window_start")
+    private Long windowStart = 0L;
+
+    /**
+     * 活跃消息ID列表，由context_window中的行恢复
+     */
+    @TableField(exist = false)
     private List<String> activeMessages = new ArrayList<>();
 
     /**
-     * 历史消息摘要
+     * 上下文窗口，与活跃消息顺序一致，记录每条消息的序号与token数
+     */
+    @TableField(exist = false)
+    private ContextWindow window = new ContextWindow();
+
+    /**
+     * 上下文行（摘要、窗口起始序号）自上次写入后是否变化，只追加消息时不需要重写上下文行
+     */
+    @TableField(exist = false)
+    private boolean rowChanged = true;
+
+    /**
+     * 历史消息摘要，注入提示词的文本，由分层摘要按token上限生成
      */
     @TableField("summary")
     private String summary;
 
+    /**
+     * 分层摘要
+     */
+    @TableField(value = "summary_tree", typeHandler = SummaryTreeConverter.class)
+    private SummaryTree summaryTree;
+
+    /**
+     * 由存储的窗口行恢复活跃消息与上下文窗口，恢复后上下文行视为未变化
+     *
+     * @param rows 序号不小于窗口起始序号的行，按序号排列
+     */
+    public void restoreWindow(List<ContextWindowEntity> rows) {
+        window = ContextWindow.restore(rows.stream().map(ContextWindowEntity::toEntry).toList(),
+                windowStart == null ? 0 : windowStart);
+        window.setSummaryTokens(summaryTokens(summary));
+        activeMessages = new ArrayList<>(window.messageIds());
+        rowChanged = false;
+    }
+
+    /**
+     * 追加活跃消息，同时更新上下文窗口
+     *
+     * @param messageId 消息id
+     * @param tokens    消息token数
+     * @return 需要追加存储的窗口行
+     */
+    public ContextWindow.Entry appendMessage(String messageId, Integer tokens) {
+        activeMessages.add(messageId);
+        if (window == null) {
+            window = ContextWindow.restore(List.of(), windowStart == null ? 0 : windowStart);
+        }
+        return window.append(messageId, tokens == null ? 0 : tokens);
+    }
+
+    /**
+     * 下一条消息的序号
+     */
+    public long nextSeq() {
+        return window == null ? (windowStart == null ? 0 : windowStart) : window.nextSeq();
+    }
+
+    /**
+     * 以会话最新的上下文为基础，重新应用本轮对上下文行的修改（移出消息、摘要），
+     * 其他对话期间追加的消息保留，之后追加的消息接在最新的序号之后
+     *
+     * @param latest 会话最新的上下文，不修改
+     */
+    public void rebase(ContextEntity latest) {
+        long turnStart = windowStart == null ? 0 : windowStart;
+        boolean turnChanged = rowChanged;
+        String turnSummary = summary;
+        SummaryTree turnSummaryTree = summaryTree;
+
+        if (id == null) {
+            id = latest.id;
+        }
+        windowStart = latest.windowStart;
+        summary = latest.summary;
+        summaryTree = latest.summaryTree == null ? null : latest.summaryTree.copy();
+        window = latest.window == null
+                ? ContextWindow.restore(List.of(), windowStart == null ? 0 : windowStart) : latest.window.copy();
+        activeMessages = new ArrayList<>(window.messageIds());
+        rowChanged = false;
+
+        if (turnChanged && !Objects.equals(turnSummary, summary)) {
+            summary = turnSummary;
+            summaryTree = turnSummaryTree;
+            rowChanged = true;
+        }
+        window.setSummaryTokens(summaryTokens(summary));
+        int evict = 0;
+        for (ContextWindow.Entry entry : window.getEntries()) {
+            if (entry.getSeq() >= turnStart) {
+                break;
+            }
+            evict++;
+        }
+        evictOldest(evict);
+    }
+
+    /**
+     * 获取与活跃消息一致的上下文窗口，窗口缺失或不一致（旧数据）时重建
+     *
+     * @param tokens 重建时获取消息token数
+     */
+    public ContextWindow ensureWindow(ToIntFunction<String> tokens) {
+        if (window == null || !window.matches(activeMessages)) {
+            window = ContextWindow.rebuild(activeMessages, tokens, windowStart == null ? 0 : windowStart);
+            window.setSummaryTokens(summaryTokens(summary));
+        }
+        return window;
+    }
+
+    /**
+     * 从头部移出最早的消息，活跃消息同步移除，窗口起始序号随之后移
+     *
+     * @param count 移出条数
+     * @return 被移出的消息id
+     */
+    public List<String> evictOldest(int count) {
+        int evict = Math.min(count, activeMessages.size());
+        List<String> evicted = new ArrayList<>(activeMessages.subList(0, evict));
+        activeMessages.subList(0, evict).clear();
+        for (int i = 0; i < evict && window != null; i++) {
+            window.pollFirst();
+        }
+        if (evict > 0 && window != null) {
+            windowStart = window.startSeq();
+            rowChanged = true;
+        }
+        return evicted;
+    }
+
+    /**
+     * 应用摘要：最早的活跃消息与被摘要的消息一致时移出并替换摘要，
+     * 已应用过或上下文已变化时不做处理，重复应用是安全的
+     *
+     * @param tree          合并后的分层摘要
+     * @param maxTokens     注入提示词的摘要token上限
+     * @param summarizedIds 被摘要的消息id，按时间顺序
+     * @return 是否应用
+     */
+    public boolean applySummary(SummaryTree tree, int maxTokens, List<String> summarizedIds) {
+        int count = summarizedIds.size();
+        if (count == 0 || activeMessages.size() < count
+                || !activeMessages.subList(0, count).equals(summarizedIds)) {
+            return false;
+        }
+        evictOldest(count);
+        updateSummary(tree, maxTokens);
+        return true;
+    }
+
+    /**
+     * 替换分层摘要，并按token上限重新生成注入提示词的摘要，摘要token数计入上下文窗口
+     */
+    public void updateSummary(SummaryTree tree, int maxTokens) {
+        this.summaryTree = tree;
+        this.summary = tree.render(maxTokens);
+        this.rowChanged = true;
+        if (window != null) {
+            window.setSummaryTokens(summaryTokens(summary));
+        }
+    }
+
+    /**
+     * 当前分层摘要的副本，旧数据只有摘要文本时整段作为二级摘要
+     */
+    public SummaryTree currentSummaryTree() {
+        return summaryTree != null ? summaryTree.copy() : SummaryTree.of(summary);
+    }
+
+    /**
+     * 上下文行是否需要写入
+     */
+    public boolean rowChanged() {
+        return rowChanged;
+    }
+
+    /**
+     * 上下文行已入队写入
+     */
+    public void clearRowChanged() {
+        this.rowChanged = false;
+    }
+
+    private static int summaryTokens(String summary) {
+        return summary == null || summary.isBlank() ? 0 : LocalTokenizer.countMessageTokens(null, summary);
+    }
+
 
     public String getId() {
         return id;
@@ -61,6 +250,14 @@ public class ContextEntity extends BaseEntity {
         this.sessionId = sessionId;
     }
 
+    public Long getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(Long windowStart) {
+        this.windowStart = windowStart;
+    }
+
     public List<String> getActiveMessages() {
         return activeMessages;
     }
@@ -69,6 +266,14 @@ public class ContextEntity extends BaseEntity {
         this.activeMessages = activeMessages;
     }
 
+    public ContextWindow getWindow() {
+        return window;
+    }
+
+    public void setWindow(ContextWindow window) {
+        this.window = window;
+    }
+
     public String getSummary() {
         return summary;
     }
@@ -76,4 +281,12 @@ public class ContextEntity extends BaseEntity {
     public void setSummary(String summary) {
         this.summary = summary;
     }
+
+    public SummaryTree getSummaryTree() {
+        return summaryTree;
+    }
+
+    public void setSummaryTree(SummaryTree summaryTree) {
+        this.summaryTree = summaryTree;
+    }
 }
\ No newline at end of file
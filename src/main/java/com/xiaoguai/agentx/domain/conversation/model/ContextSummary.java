@@ -0,0 +1,78 @@
+package com.xiaoguai.agentx.domain.conversation.model;
+
+
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
+
+import java.util.List;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:10
+ * @Description: 后台生成完成的会话摘要
+ * 摘要与被摘要的消息一起替换到上下文，请求路径只读取已完成的摘要
+ */
+public class ContextSummary {
+
+    /**
+     * 会话id
+     */
+    private final String sessionId;
+
+    /**
+     * 合并后的分层摘要
+     */
+    private final SummaryTree tree;
+
+    /**
+     * 注入提示词的摘要token上限
+     */
+    private final int maxTokens;
+
+    /**
+     * 被摘要的消息id，按时间顺序
+     */
+    private final List<String> summarizedIds;
+
+    /**
+     * 完成时间
+     */
+    private final long finishedAt;
+
+    public ContextSummary(String sessionId, SummaryTree tree, int maxTokens, List<String> summarizedIds) {
+        this.sessionId = sessionId;
+        this.tree = tree;
+        this.maxTokens = maxTokens;
+        this.summarizedIds = List.copyOf(summarizedIds);
+        this.finishedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 应用到上下文
+     *
+     * @return 是否应用，已应用过或上下文已变化时返回false
+     */
+    public boolean applyTo(ContextEntity context) {
+        return context.applySummary(tree.copy(), maxTokens, summarizedIds);
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public SummaryTree getTree() {
+        return tree;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public List<String> getSummarizedIds() {
+        return summarizedIds;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
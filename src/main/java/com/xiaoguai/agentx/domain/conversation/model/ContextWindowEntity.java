@@ -0,0 +1,83 @@
+package com.xiaoguai.agentx.domain.conversation.model;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+
+/**
+ * 上下文窗口行，每条活跃消息一行，按会话内递增的序号追加；
+ * 序号小于上下文窗口起始序号的行已移出，按范围删除
+ */
+@TableName("context_window")
+public class ContextWindowEntity {
+
+    /**
+     * 所属会话ID
+     */
+    @TableField("session_id")
+    private String sessionId;
+
+    /**
+     * 会话内的序号
+     */
+    @TableField("seq")
+    private Long seq;
+
+    /**
+     * 消息ID
+     */
+    @TableField("message_id")
+    private String messageId;
+
+    /**
+     * 消息token数
+     */
+    @TableField("tokens")
+    private Integer tokens;
+
+    public static ContextWindowEntity of(String sessionId, ContextWindow.Entry entry) {
+        ContextWindowEntity row = new ContextWindowEntity();
+        row.setSessionId(sessionId);
+        row.setSeq(entry.getSeq());
+        row.setMessageId(entry.getId());
+        row.setTokens(entry.getTokens());
+        return row;
+    }
+
+    public ContextWindow.Entry toEntry() {
+        return new ContextWindow.Entry(seq, messageId, tokens == null ? 0 : tokens);
+    }
+
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public Integer getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(Integer tokens) {
+        this.tokens = tokens;
+    }
+}
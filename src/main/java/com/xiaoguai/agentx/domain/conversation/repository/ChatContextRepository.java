@@ -0,0 +1,24 @@
+package com.xiaoguai.agentx.domain.conversation.repository;
+
+
+import com.xiaoguai.agentx.domain.conversation.model.ChatContextSnapshot;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 19:10
+ * @Description: 对话上下文加载，SQL见 mapper/conversation/ChatContextRepository.xml
+ */
+@Mapper
+public interface ChatContextRepository {
+
+    /**
+     * 一次查询加载对话所需的全部数据
+     * @param sessionId 会话id
+     * @param userId 用户id
+     * @return 快照，会话不存在时返回null
+     */
+    ChatContextSnapshot loadChatContext(@Param("sessionId") String sessionId, @Param("userId") String userId);
+}
@@ -0,0 +1,35 @@
+package com.xiaoguai.agentx.domain.conversation.repository;
+
+
+import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ContextWindowEntity;
+import com.xiaoguai.agentx.infrastrcture.domain.ExtraMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 03:40
+ * @Description: 上下文窗口行，SQL见 mapper/conversation/ContextWindowRepository.xml
+ */
+@Mapper
+public interface ContextWindowRepository extends ExtraMapper<ContextWindowEntity> {
+
+    /**
+     * 批量追加窗口行，序号由延迟写入在同一把锁内分配，序号已存在说明分配出错，直接报错而不是跳过
+     */
+    int append(@Param("rows") Collection<ContextWindowEntity> rows);
+
+    /**
+     * 会话已提交的最大序号，没有窗口行时返回null
+     */
+    Long maxSeq(@Param("sessionId") String sessionId);
+
+    /**
+     * 按上下文的窗口起始序号删除已移出的行
+     */
+    int evict(@Param("contexts") Collection<ContextEntity> contexts);
+}
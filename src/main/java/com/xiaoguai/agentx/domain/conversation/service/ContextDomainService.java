@@ -4,8 +4,14 @@ package com.xiaoguai.agentx.domain.conversation.service;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.xiaoguai.agentx.domain.agent.model.AgentEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ChatContextSnapshot;
 import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ContextWindowEntity;
+import com.xiaoguai.agentx.domain.conversation.repository.ChatContextRepository;
 import com.xiaoguai.agentx.domain.conversation.repository.ContextRepository;
+import com.xiaoguai.agentx.domain.conversation.repository.ContextWindowRepository;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -22,9 +28,19 @@ public class ContextDomainService {
     private static final Logger logger = LoggerFactory.getLogger(ContextDomainService.class);
 
     private final ContextRepository contextRepository;
+    private final ContextWindowRepository contextWindowRepository;
+    private final ChatContextRepository chatContextRepository;
+    private final MessageDomainService messageDomainService;
+    private final MessageWriteBehindService messageWriteBehindService;
 
-    public ContextDomainService(ContextRepository contextRepository) {
+    public ContextDomainService(ContextRepository contextRepository, ContextWindowRepository contextWindowRepository,
+                                ChatContextRepository chatContextRepository, MessageDomainService messageDomainService,
+                                MessageWriteBehindService messageWriteBehindService) {
         this.contextRepository = contextRepository;
+        this.contextWindowRepository = contextWindowRepository;
+        this.chatContextRepository = chatContextRepository;
+        this.messageDomainService = messageDomainService;
+        this.messageWriteBehindService = messageWriteBehindService;
     }
 
     public void insertOrUpdate(ContextEntity context) {
@@ -41,8 +57,73 @@ public class ContextDomainService {
      * @return 上下文
      */
     public ContextEntity findBySessionId(String sessionId) {
+        ContextEntity unflushed = messageWriteBehindService.getUnflushedContext(sessionId);
+        if (unflushed != null) {
+            return unflushed;
+        }
+        return findCommitted(sessionId);
+    }
+
+    /**
+     * 根据会话id获取已提交的上下文，活跃消息由窗口起始序号之后的窗口行恢复
+     * @param sessionId 会话id
+     * @return 上下文，不存在时返回null
+     */
+    public ContextEntity findCommitted(String sessionId) {
         LambdaQueryWrapper<ContextEntity> wrapper = Wrappers.<ContextEntity>lambdaQuery()
                 .eq(ContextEntity::getSessionId, sessionId);
-        return contextRepository.selectOne(wrapper);
+        ContextEntity context = contextRepository.selectOne(wrapper);
+        if (context == null) {
+            return null;
+        }
+        context.restoreWindow(contextWindowRepository.selectList(Wrappers.<ContextWindowEntity>lambdaQuery()
+                .eq(ContextWindowEntity::getSessionId, sessionId)
+                .ge(ContextWindowEntity::getSeq, context.getWindowStart() == null ? 0 : context.getWindowStart())
+                .orderByAsc(ContextWindowEntity::getSeq)));
+        return context;
+    }
+
+    /**
+     * 一次查询加载对话上下文，校验规则与逐个查询时保持一致
+     * @param sessionId 会话id
+     * @param userId 用户id
+     * @return 对话上下文快照
+     */
+    public ChatContextSnapshot loadChatContext(String sessionId, String userId) {
+        ChatContextSnapshot snapshot = chatContextRepository.loadChatContext(sessionId, userId);
+        if (snapshot == null || snapshot.getSession() == null) {
+            throw new BusinessException("会话不存在: " + sessionId);
+        }
+        String agentId = snapshot.getSession().getAgentId();
+        AgentEntity agent = snapshot.getAgent();
+        if (agent == null) {
+            throw new BusinessException("Agent不存在: " + agentId);
+        }
+        if (!agent.getEnabled() && !userId.equals(agent.getUserId())) {
+            throw new BusinessException("该Agent已被禁用");
+        }
+        if (snapshot.getWorkspace() == null) {
+            throw new BusinessException("助理不存在");
+        }
+        if (snapshot.getModel() == null) {
+            String modelId = snapshot.getWorkspace().getLlmModelConfig() == null
+                    ? null : snapshot.getWorkspace().getLlmModelConfig().getModelId();
+            throw new BusinessException("模型不存在: " + modelId);
+        }
+        if (snapshot.getProvider() == null) {
+            throw new BusinessException("供应商不存在: " + snapshot.getModel().getProviderId());
+        }
+
+        // 合并尚未提交的上下文与消息
+        ContextEntity unflushed = messageWriteBehindService.getUnflushedContext(sessionId);
+        if (unflushed != null) {
+            snapshot.setContext(unflushed);
+        } else if (snapshot.getContext() != null) {
+            snapshot.getContext().restoreWindow(snapshot.getWindowRows());
+        }
+        if (snapshot.getContext() != null) {
+            snapshot.setActiveMessages(messageDomainService.listByIds(snapshot.getContext().getActiveMessages(), snapshot.getActiveMessages()));
+        }
+        return snapshot;
     }
 }
@@ -0,0 +1,267 @@
+package com.xiaoguai.agentx.domain.conversation.service;
+
+
+import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ContextSummary;
+import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
+import com.xiaoguai.agentx.domain.token.model.TokenMessage;
+import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
+import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
+import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
+import com.xiaoguai.agentx.domain.token.service.TokenDomainService;
+import com.xiaoguai.agentx.infrastrcture.config.ContextSummaryProperties;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:10
+ * @Description: 会话摘要服务
+ * 对话结束后活跃消息数接近摘要阈值时，在后台调用模型生成摘要，同一会话同时只有一个摘要任务。
+ * 摘要完成后与被摘要消息的移出一起原子地写入最新的上下文；进行中的对话持有旧的上下文副本，
+ * 准备对话环境与保存消息时读取最近完成的摘要并应用，请求路径不再等待摘要生成
+ */
+@Service
+public class ContextSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextSummaryService.class);
+
+    private final ContextDomainService contextDomainService;
+    private final MessageDomainService messageDomainService;
+    private final MessageWriteBehindService messageWriteBehindService;
+    private final TokenDomainService tokenDomainService;
+    private final ExecutorService contextSummaryExecutor;
+    private final ContextSummaryProperties properties;
+
+    /**
+     * 正在生成摘要的会话
+     */
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 最近完成的摘要，key: 会话id
+     */
+    private final Map<String, ContextSummary> finished = new ConcurrentHashMap<>();
+
+    private final Timer summaryTimer = Timer.builder("chat.summary.duration")
+            .description("后台生成会话摘要耗时")
+            .register(Metrics.globalRegistry);
+
+    public ContextSummaryService(ContextDomainService contextDomainService, MessageDomainService messageDomainService,
+                                 MessageWriteBehindService messageWriteBehindService, TokenDomainService tokenDomainService,
+                                 @Qualifier("contextSummaryExecutor") ExecutorService contextSummaryExecutor,
+                                 ContextSummaryProperties properties) {
+        this.contextDomainService = contextDomainService;
+        this.messageDomainService = messageDomainService;
+        this.messageWriteBehindService = messageWriteBehindService;
+        this.tokenDomainService = tokenDomainService;
+        this.contextSummaryExecutor = contextSummaryExecutor;
+        this.properties = properties;
+    }
+
+    /**
+     * 是否由后台生成摘要
+     */
+    public boolean isAsync(TokenOverflowConfig config) {
+        return properties.isAsync() && config != null
+                && config.getStrategyType() == TokenOverflowStrategyEnum.SUMMARIZE
+                && config.getSummaryThreshold() != null && config.getSummaryThreshold() > 0;
+    }
+
+    /**
+     * 应用会话最近完成的摘要
+     *
+     * @param context 上下文，可能是进行中对话持有的旧副本
+     * @return 是否应用
+     */
+    public boolean applyLatest(ContextEntity context) {
+        if (context == null || context.getSessionId() == null || finished.isEmpty()) {
+            return false;
+        }
+        ContextSummary summary = finished.get(context.getSessionId());
+        return summary != null && summary.applyTo(context);
+    }
+
+    /**
+     * 对话结束后按需调度后台摘要，不阻塞调用线程
+     *
+     * @param context 本轮对话的上下文
+     * @param config  Token溢出配置
+     */
+    public void scheduleIfNeeded(ContextEntity context, TokenOverflowConfig config) {
+        if (context == null || !isAsync(config)
+                || context.getActiveMessages().size() < triggerSize(config.getSummaryThreshold())) {
+            return;
+        }
+        String sessionId = context.getSessionId();
+        if (!running.add(sessionId)) {
+            return;
+        }
+        try {
+            contextSummaryExecutor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    summarize(sessionId, config);
+                } catch (Exception e) {
+                    Counter.builder("chat.summary.failed")
+                            .description("后台生成会话摘要失败次数")
+                            .register(Metrics.globalRegistry)
+                            .increment();
+                    logger.error("生成会话摘要失败, 会话: {}, {}", sessionId, e.getMessage(), e);
+                } finally {
+                    running.remove(sessionId);
+                    summaryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(sessionId);
+            logger.warn("会话摘要线程池已满，等待下一轮对话后重新调度, 会话: {}", sessionId);
+        }
+    }
+
+    /**
+     * 在会话最新的上下文上生成摘要，最早的消息生成摘要，最新的消息保留
+     */
+    private void summarize(String sessionId, TokenOverflowConfig config) {
+        ContextEntity context = messageWriteBehindService.getUnflushedContext(sessionId);
+        if (context == null) {
+            context = loadCommitted(sessionId);
+        }
+        if (context == null) {
+            return;
+        }
+        // 先应用上一次完成的摘要，避免重复摘要同一批消息
+        applyLatest(context);
+        if (context.getActiveMessages().size() < triggerSize(config.getSummaryThreshold())) {
+            return;
+        }
+
+        ContextWindow window = ensureWindow(context);
+        TokenOverflowConfig summaryConfig = TokenOverflowConfig.createSummaryConfig(
+                config.getMaxTokens() == null ? 0 : config.getMaxTokens(), retainSize(config.getSummaryThreshold()));
+        summaryConfig.setProviderConfig(config.getProviderConfig());
+        TokenProcessResult result = tokenDomainService.processMessages(window,
+                ids -> toTokenMessages(messageDomainService.listByIds(ids)), summaryConfig);
+        if (!result.isProcessed() || result.getEvictedMessageIds().isEmpty()) {
+            return;
+        }
+
+        SummaryTree tree = rollForward(context, result.getSummary(), config);
+        ContextSummary contextSummary = new ContextSummary(sessionId, tree, properties.getMaxPromptTokens(),
+                result.getEvictedMessageIds());
+        long expiredBefore = System.currentTimeMillis() - properties.getRetention().toMillis();
+        finished.values().removeIf(finishedSummary -> finishedSummary.getFinishedAt() < expiredBefore);
+        finished.put(sessionId, contextSummary);
+
+        // 摘要与被摘要消息的移出一起写入最新的上下文
+        boolean applied = messageWriteBehindService.updateContext(sessionId, () -> loadCommitted(sessionId),
+                contextSummary::applyTo);
+        logger.info("会话摘要完成, 会话: {}, 摘要消息数: {}, 已写入: {}", sessionId,
+                result.getEvictedMessageIds().size(), applied);
+    }
+
+    /**
+     * 把新的摘要片段加入上下文的分层摘要，一级片段超过预算时与二级摘要合并，不修改上下文
+     *
+     * @param context 上下文
+     * @param chunk   新的摘要片段
+     * @param config  Token溢出配置，提供摘要使用的模型
+     * @return 合并后的分层摘要
+     */
+    public SummaryTree rollForward(ContextEntity context, String chunk, TokenOverflowConfig config) {
+        SummaryTree tree = context.currentSummaryTree();
+        tree.addChunk(chunk);
+        if (tree.chunkTokens() > properties.getRollupTokens()) {
+            int targetTokens = properties.getMaxPromptTokens() - properties.getRollupTokens();
+            if (targetTokens <= 0) {
+                targetTokens = properties.getMaxPromptTokens() / 2;
+            }
+            tree.rollup(tokenDomainService.rollupSummaries(tree.rollupInput(), targetTokens, config));
+            Counter.builder("chat.summary.rollup")
+                    .description("一级摘要片段合并为二级摘要的次数")
+                    .register(Metrics.globalRegistry)
+                    .increment();
+        }
+        return tree;
+    }
+
+    /**
+     * 应用摘要到上下文：移出被摘要的消息并替换分层摘要
+     *
+     * @return 是否应用
+     */
+    public boolean applySummary(ContextEntity context, SummaryTree tree, List<String> summarizedIds) {
+        return context.applySummary(tree, properties.getMaxPromptTokens(), summarizedIds);
+    }
+
+    /**
+     * 开始后台摘要的活跃消息数
+     */
+    private int triggerSize(int summaryThreshold) {
+        return Math.max(1, (int) Math.ceil(summaryThreshold * properties.getTriggerRatio()));
+    }
+
+    /**
+     * 摘要后保留的最新消息数，小于开始摘要的消息数
+     */
+    private int retainSize(int summaryThreshold) {
+        int retain = (int) Math.floor(summaryThreshold * properties.getRetainRatio());
+        return Math.max(0, Math.min(retain, triggerSize(summaryThreshold) - 1));
+    }
+
+    /**
+     * 获取上下文窗口，旧数据按消息重建
+     */
+    private ContextWindow ensureWindow(ContextEntity context) {
+        ContextWindow window = context.getWindow();
+        if (window != null && window.matches(context.getActiveMessages())) {
+            return window;
+        }
+        Map<String, MessageEntity> messages = new HashMap<>();
+        messageDomainService.listByIds(context.getActiveMessages()).forEach(message -> messages.put(message.getId(), message));
+        return context.ensureWindow(id -> {
+            MessageEntity message = messages.get(id);
+            if (message == null) {
+                return 0;
+            }
+            Integer tokenCount = message.getTokenCount();
+            return tokenCount == null || tokenCount == 0
+                    ? LocalTokenizer.countMessageTokens(message.getId(), message.getContent()) : tokenCount;
+        });
+    }
+
+    private ContextEntity loadCommitted(String sessionId) {
+        return contextDomainService.findCommitted(sessionId);
+    }
+
+    private static List<TokenMessage> toTokenMessages(List<MessageEntity> messages) {
+        return messages.stream()
+                .map(message -> {
+                    TokenMessage tokenMessage = new TokenMessage();
+                    tokenMessage.setId(message.getId());
+                    tokenMessage.setContent(message.getContent());
+                    tokenMessage.setRole(message.getRole().name());
+                    tokenMessage.setTokenCount(message.getTokenCount());
+                    tokenMessage.setCreatedAt(message.getCreatedAt());
+                    return tokenMessage;
+                }).toList();
+    }
+}
@@ -7,14 +7,23 @@ import com.xiaoguai.agentx.application.conversation.assembler.MessageAssembler;
 import com.xiaoguai.agentx.application.conversation.dto.MessageDTO;
 import com.xiaoguai.agentx.domain.conversation.constants.Role;
 import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ContextWindowEntity;
 import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
 import com.xiaoguai.agentx.domain.conversation.repository.ContextRepository;
+import com.xiaoguai.agentx.domain.conversation.repository.ContextWindowRepository;
 import com.xiaoguai.agentx.domain.conversation.repository.MessageRepository;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @Author: the-way
@@ -28,12 +37,20 @@ public class ConversationDomainService {
     private final Logger logger = LoggerFactory.getLogger(ConversationDomainService.class);
     private final MessageRepository messageRepository;
     private final ContextRepository contextRepository;
+    private final ContextWindowRepository contextWindowRepository;
     private final SessionDomainService sessionDomainService;
+    private final MessageWriteBehindService messageWriteBehindService;
+    private final ContextSummaryService contextSummaryService;
 
-    public ConversationDomainService(MessageRepository messageRepository, ContextRepository contextRepository, SessionDomainService sessionDomainService) {
+    public ConversationDomainService(MessageRepository messageRepository, ContextRepository contextRepository,
+                                     ContextWindowRepository contextWindowRepository, SessionDomainService sessionDomainService,
+                                     MessageWriteBehindService messageWriteBehindService, ContextSummaryService contextSummaryService) {
         this.messageRepository = messageRepository;
         this.contextRepository = contextRepository;
+        this.contextWindowRepository = contextWindowRepository;
         this.sessionDomainService = sessionDomainService;
+        this.messageWriteBehindService = messageWriteBehindService;
+        this.contextSummaryService = contextSummaryService;
     }
 
     /**
@@ -43,6 +60,7 @@ public class ConversationDomainService {
         List<MessageEntity> messageEntities = messageRepository.selectList(Wrappers.<MessageEntity>lambdaQuery()
                 .eq(MessageEntity::getSessionId, sessionId)
                 .orderByAsc(MessageEntity::getCreatedAt));
+        messageEntities = mergeUnflushed(sessionId, messageEntities);
         return messageEntities.stream()
                 .filter(f -> !f.getRole().equals(Role.SYSTEM))
                 .map(MessageAssembler::toDTO).toList();
@@ -50,21 +68,30 @@ public class ConversationDomainService {
 
     /**
      * 保存上下文消息
+     * 对话期间后台摘要已完成时，先应用到本轮持有的上下文，避免旧副本覆盖摘要
      */
     public void saveMessagesToContext(List<MessageEntity> messages, ContextEntity contextEntity) {
-        messageRepository.insert(messages);
+        countTokens(messages);
+        contextSummaryService.applyLatest(contextEntity);
+        messageWriteBehindService.saveMessagesToContext(messages, contextEntity);
+    }
 
-        List<String> activeMessages = contextEntity.getActiveMessages();
+    /**
+     * 保存前用本地分词器计算每条消息的token数
+     */
+    private static void countTokens(List<MessageEntity> messages) {
         for (MessageEntity message : messages) {
-            activeMessages.add(message.getId());
+            if (message.getTokenCount() == null || message.getTokenCount() == 0) {
+                message.setTokenCount(LocalTokenizer.countMessageTokens(message.getId(), message.getContent()));
+            }
         }
-        contextRepository.insertOrUpdate(contextEntity);
     }
 
     /**
      * 保存消息
      */
     public void saveMessage(MessageEntity message) {
+        countTokens(List.of(message));
         messageRepository.insert(message);
     }
 
@@ -72,6 +99,7 @@ public class ConversationDomainService {
      * 删除上下文消息
      */
     public void deleteConversationMessages(String sessionId) {
+        messageWriteBehindService.discard(List.of(sessionId));
         LambdaQueryWrapper<MessageEntity> wrapper = Wrappers.<MessageEntity>lambdaQuery()
                 .eq(MessageEntity::getSessionId, sessionId);
         messageRepository.checkDelete(wrapper);
@@ -79,14 +107,32 @@ public class ConversationDomainService {
         LambdaQueryWrapper<ContextEntity> contextWrapper = Wrappers.<ContextEntity>lambdaQuery()
                 .eq(ContextEntity::getSessionId, sessionId);
         contextRepository.checkDelete(contextWrapper);
+        contextWindowRepository.delete(Wrappers.<ContextWindowEntity>lambdaQuery()
+                .eq(ContextWindowEntity::getSessionId, sessionId));
     }
 
     public void deleteConversationMessages(List<String> sessionIds) {
+        messageWriteBehindService.discard(sessionIds);
         LambdaQueryWrapper<MessageEntity> wrapper = Wrappers.<MessageEntity>lambdaQuery()
                 .in(MessageEntity::getSessionId, sessionIds);
         messageRepository.checkDelete(wrapper);
+        contextWindowRepository.delete(Wrappers.<ContextWindowEntity>lambdaQuery()
+                .in(ContextWindowEntity::getSessionId, sessionIds));
     }
 
+    /**
+     * 合并尚未提交的消息，保证刚写入的消息可以立即读到
+     */
+    private List<MessageEntity> mergeUnflushed(String sessionId, List<MessageEntity> messages) {
+        List<MessageEntity> unflushed = messageWriteBehindService.getUnflushedMessages(sessionId);
+        if (unflushed.isEmpty()) {
+            return messages;
+        }
+        Map<String, MessageEntity> merged = messages.stream()
+                .collect(Collectors.toMap(MessageEntity::getId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+        unflushed.forEach(message -> merged.put(message.getId(), message));
+        List<MessageEntity> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(MessageEntity::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
 }
-
-
@@ -5,8 +5,13 @@ import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
 import com.xiaoguai.agentx.domain.conversation.repository.MessageRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * @Author: the-way
@@ -18,9 +23,11 @@ import java.util.List;
 public class MessageDomainService {
 
     private final MessageRepository messageRepository;
+    private final MessageWriteBehindService messageWriteBehindService;
 
-    public MessageDomainService(MessageRepository messageRepository) {
+    public MessageDomainService(MessageRepository messageRepository, MessageWriteBehindService messageWriteBehindService) {
         this.messageRepository = messageRepository;
+        this.messageWriteBehindService = messageWriteBehindService;
     }
 
     /**
@@ -29,13 +36,36 @@ public class MessageDomainService {
      * @return 消息列表
      */
     public List<MessageEntity> listByIds(List<String> ids) {
+        return listByIds(ids, Collections.emptyList());
+    }
+
+    /**
+     * 根据ids获取消息列表，按ids顺序返回
+     * 优先使用尚未提交的消息与已加载的消息，其余再查库
+     * @param ids ids
+     * @param loaded 已加载的消息
+     * @return 消息列表
+     */
+    public List<MessageEntity> listByIds(List<String> ids, Collection<MessageEntity> loaded) {
         if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-        return messageRepository.selectBatchIds(ids);
+        Map<String, MessageEntity> messages = new HashMap<>();
+        loaded.forEach(message -> messages.put(message.getId(), message));
+        for (String id : ids) {
+            MessageEntity unflushed = messageWriteBehindService.getUnflushedMessage(id);
+            if (unflushed != null) {
+                messages.put(id, unflushed);
+            }
+        }
+        List<String> missing = ids.stream().filter(id -> !messages.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            messageRepository.selectBatchIds(missing).forEach(message -> messages.put(message.getId(), message));
+        }
+        return ids.stream().map(messages::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     public void updateMessage(MessageEntity messageEntity) {
-        messageRepository.checkUpdateById(messageEntity);
+        messageWriteBehindService.updateMessage(messageEntity);
     }
 }
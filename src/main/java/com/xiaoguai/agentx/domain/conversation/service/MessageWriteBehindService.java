@@ -0,0 +1,610 @@
+package com.xiaoguai.agentx.domain.conversation.service;
+
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.xiaoguai.agentx.domain.conversation.model.ContextEntity;
+import com.xiaoguai.agentx.domain.conversation.model.ContextWindowEntity;
+import com.xiaoguai.agentx.domain.conversation.model.MessageEntity;
+import com.xiaoguai.agentx.domain.conversation.repository.ContextRepository;
+import com.xiaoguai.agentx.domain.conversation.repository.ContextWindowRepository;
+import com.xiaoguai.agentx.domain.conversation.repository.MessageRepository;
+import com.xiaoguai.agentx.infrastrcture.config.MessageWriteBehindProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 19:45
+ * @Description: 消息延迟写入服务
+ * 对话中的消息插入、消息更新与上下文更新先进入内存批次，由单线程定时刷盘，
+ * 一次事务内批量提交多个会话的写入；单线程按入队顺序提交，保证同一会话的写入顺序。
+ * 新消息只追加上下文窗口行，上下文行只在摘要或窗口起始序号变化时写入，移出的窗口行按序号范围删除。
+ * 窗口行序号在锁内按会话最新的上下文分配，同一会话的并发对话不会分到相同的序号；
+ * 批次提交后在内存中记录各会话已提交的下一个序号，保存时只在未记录或本轮落后时查库。
+ * 未提交的数据保留在内存中供读取合并，应用关闭后的写入仍经批次合并，由调用线程同步刷盘
+ */
+@Service
+public class MessageWriteBehindService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindService.class);
+
+    private final MessageRepository messageRepository;
+    private final ContextRepository contextRepository;
+    private final ContextWindowRepository contextWindowRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageWriteBehindProperties properties;
+
+    private final ScheduledExecutorService flusher;
+
+    private final Object lock = new Object();
+
+    /**
+     * 待提交批次，受lock保护
+     */
+    private Batch pending = new Batch();
+
+    /**
+     * 尚未提交的消息，key: 消息id
+     */
+    private final Map<String, MessageEntity> unflushedMessages = new ConcurrentHashMap<>();
+
+    /**
+     * 尚未提交的上下文，key: 会话id
+     */
+    private final Map<String, ContextEntity> unflushedContexts = new ConcurrentHashMap<>();
+
+    /**
+     * 已提交的批次数，受lock保护；锁外查库前后不变时，查到的已提交状态之后没有新的提交
+     */
+    private long flushGeneration;
+
+    /**
+     * 已提交的上下文的下一个窗口序号，key: 会话id，受lock保护，按访问顺序淘汰
+     */
+    private final Map<String, Long> committedSeqs;
+
+    /**
+     * 串行提交批次，保证先取出的批次先提交
+     */
+    private final Object flushLock = new Object();
+
+    private volatile boolean closed;
+
+    private final Timer flushTimer = Timer.builder("chat.persistence.flush")
+            .description("消息批量提交耗时")
+            .register(Metrics.globalRegistry);
+
+    private final DistributionSummary batchSize = DistributionSummary.builder("chat.persistence.batch.size")
+            .description("每次批量提交的写入条数")
+            .register(Metrics.globalRegistry);
+
+    public MessageWriteBehindService(MessageRepository messageRepository, ContextRepository contextRepository,
+                                     ContextWindowRepository contextWindowRepository,
+                                     TransactionTemplate transactionTemplate, MessageWriteBehindProperties properties) {
+        this.messageRepository = messageRepository;
+        this.contextRepository = contextRepository;
+        this.contextWindowRepository = contextWindowRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        int trackedSessions = properties.getTrackedSessions();
+        this.committedSeqs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > trackedSessions;
+            }
+        };
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "message-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.isEnabled()) {
+            long interval = properties.getFlushIntervalMillis();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        Gauge.builder("chat.persistence.pending", unflushedMessages, Map::size)
+                .description("尚未提交的消息数")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 保存消息并追加到上下文
+     * 消息id在入队时分配，调用方可以立即使用。
+     * 窗口行的序号在锁内按会话最新的上下文分配：本轮持有的上下文是对话开始时的副本，
+     * 同一会话的并发对话可能已追加消息，追加前先以最新的上下文为基础重放本轮的修改
+     */
+    public void saveMessagesToContext(List<MessageEntity> messages, ContextEntity context) {
+        if (!properties.isEnabled()) {
+            ContextEntity committed = loadIfBehind(context);
+            if (committed != null) {
+                context.rebase(committed);
+            }
+            messageRepository.insert(messages);
+            List<ContextWindowEntity> rows = new ArrayList<>(messages.size());
+            for (MessageEntity message : messages) {
+                rows.add(ContextWindowEntity.of(context.getSessionId(),
+                        context.appendMessage(message.getId(), message.getTokenCount())));
+            }
+            writeContext(context, rows);
+            return;
+        }
+
+        String sessionId = context.getSessionId();
+        ContextEntity committed = null;
+        long generation = -1;
+        boolean full;
+        while (true) {
+            synchronized (lock) {
+                ContextEntity unflushed = unflushedContexts.get(sessionId);
+                // 尚未提交的上下文最新；否则查库期间没有批次提交时，查到的已提交状态仍是最新的
+                if (unflushed != null || generation == flushGeneration) {
+                    ContextEntity latest = unflushed != null ? unflushed : committed;
+                    if (latest != null) {
+                        context.rebase(latest);
+                    }
+                    full = enqueue(messages, context);
+                    break;
+                }
+                Long committedSeq = committedSeqs.get(sessionId);
+                if (committedSeq != null && committedSeq <= context.nextSeq()) {
+                    // 已提交的序号都在本轮之前，本轮副本未落后，无需查库
+                    full = enqueue(messages, context);
+                    break;
+                }
+                generation = flushGeneration;
+            }
+            // 未记录或已落后时查库，查库不持有锁
+            committed = loadIfBehind(context);
+        }
+        afterEnqueue(full);
+    }
+
+    /**
+     * 入队后触发刷盘：批次已满时交给刷盘线程；已关闭时刷盘线程不再运行，由调用线程同步提交
+     */
+    private void afterEnqueue(boolean full) {
+        if (closed) {
+            flushRemaining();
+            return;
+        }
+        if (full) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // 检查之后刚好关闭
+                flushRemaining();
+            }
+        }
+    }
+
+    /**
+     * 入队消息与窗口行，调用方持有lock
+     *
+     * @return 批次是否已满
+     */
+    private boolean enqueue(List<MessageEntity> messages, ContextEntity context) {
+        LocalDateTime now = LocalDateTime.now();
+        for (MessageEntity message : messages) {
+            if (message.getId() == null) {
+                message.setId(IdWorker.get32UUID());
+            }
+            if (message.getCreatedAt() == null) {
+                message.setCreatedAt(now);
+            }
+            pending.inserts.put(message.getId(), message);
+            unflushedMessages.put(message.getId(), message);
+            pending.windowRows.add(ContextWindowEntity.of(context.getSessionId(),
+                    context.appendMessage(message.getId(), message.getTokenCount())));
+        }
+        if (context.getId() == null) {
+            context.setId(IdWorker.get32UUID());
+        }
+        // 上下文会被后续对话继续修改，入队时保存副本；上下文行未变化时只追加窗口行
+        boolean rowChanged = context.rowChanged();
+        context.clearRowChanged();
+        ContextEntity snapshot = copyOf(context);
+        if (rowChanged) {
+            pending.contexts.put(context.getSessionId(), snapshot);
+        }
+        pending.snapshots.put(context.getSessionId(), snapshot);
+        unflushedContexts.put(context.getSessionId(), snapshot);
+        return pending.inserts.size() >= properties.getMaxBatchSize();
+    }
+
+    /**
+     * 已提交的窗口行序号不小于本轮的下一个序号时，说明其他对话已追加消息，加载已提交的上下文
+     *
+     * @return 已提交的上下文，本轮副本未落后时返回null
+     */
+    private ContextEntity loadIfBehind(ContextEntity context) {
+        if (context.getSessionId() == null) {
+            return null;
+        }
+        Long maxSeq = contextWindowRepository.maxSeq(context.getSessionId());
+        if (maxSeq == null || maxSeq < context.nextSeq()) {
+            return null;
+        }
+        ContextEntity committed = contextRepository.selectOne(Wrappers.<ContextEntity>lambdaQuery()
+                .eq(ContextEntity::getSessionId, context.getSessionId()));
+        if (committed == null) {
+            return null;
+        }
+        committed.restoreWindow(contextWindowRepository.selectList(Wrappers.<ContextWindowEntity>lambdaQuery()
+                .eq(ContextWindowEntity::getSessionId, context.getSessionId())
+                .ge(ContextWindowEntity::getSeq, committed.getWindowStart() == null ? 0 : committed.getWindowStart())
+                .orderByAsc(ContextWindowEntity::getSeq)));
+        return committed;
+    }
+
+    /**
+     * 在会话最新的上下文上原子地执行更新
+     * 存在尚未提交的上下文时在其副本上更新，否则按loader加载已提交的上下文；
+     * 更新与其他写入在同一把锁内入队，不会覆盖期间追加的消息
+     *
+     * @param sessionId 会话id
+     * @param loader    加载已提交的上下文
+     * @param update    更新上下文，返回false时不写入
+     * @return 是否写入
+     */
+    public boolean updateContext(String sessionId, Supplier<ContextEntity> loader, Predicate<ContextEntity> update) {
+        if (!properties.isEnabled()) {
+            ContextEntity context = loader.get();
+            if (context == null || !update.test(context)) {
+                return false;
+            }
+            writeContext(context, List.of());
+            return true;
+        }
+
+        ContextEntity committed = null;
+        long generation = -1;
+        while (true) {
+            synchronized (lock) {
+                ContextEntity unflushed = unflushedContexts.get(sessionId);
+                if (unflushed != null || committed != null && generation == flushGeneration) {
+                    // 尚未提交的上下文比已提交的新
+                    ContextEntity context = copyOf(unflushed != null ? unflushed : committed);
+                    if (!update.test(context)) {
+                        return false;
+                    }
+                    context.clearRowChanged();
+                    pending.contexts.put(sessionId, context);
+                    pending.snapshots.put(sessionId, context);
+                    unflushedContexts.put(sessionId, context);
+                    break;
+                }
+                generation = flushGeneration;
+            }
+            // 查库不持有锁，加载后重新检查是否有新入队或新提交的上下文
+            committed = loader.get();
+            if (committed == null) {
+                return false;
+            }
+        }
+        afterEnqueue(false);
+        return true;
+    }
+
+    /**
+     * 更新消息
+     */
+    public void updateMessage(MessageEntity message) {
+        if (!properties.isEnabled()) {
+            messageRepository.checkUpdateById(message);
+            return;
+        }
+
+        synchronized (lock) {
+            if (pending.inserts.containsKey(message.getId())) {
+                // 插入尚未提交，直接以最新内容插入
+                pending.inserts.put(message.getId(), message);
+            } else {
+                pending.updates.put(message.getId(), message);
+            }
+            unflushedMessages.put(message.getId(), message);
+        }
+        afterEnqueue(false);
+    }
+
+    /**
+     * 获取尚未提交的消息
+     */
+    public MessageEntity getUnflushedMessage(String messageId) {
+        return unflushedMessages.get(messageId);
+    }
+
+    /**
+     * 获取会话中尚未提交的消息，按创建时间排序
+     */
+    public List<MessageEntity> getUnflushedMessages(String sessionId) {
+        if (unflushedMessages.isEmpty()) {
+            return List.of();
+        }
+        return unflushedMessages.values().stream()
+                .filter(message -> sessionId.equals(message.getSessionId()))
+                .sorted(Comparator.comparing(MessageEntity::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    /**
+     * 获取会话尚未提交的上下文
+     * @return 上下文副本，没有待提交的上下文时返回null
+     */
+    public ContextEntity getUnflushedContext(String sessionId) {
+        ContextEntity context = unflushedContexts.get(sessionId);
+        return context == null ? null : copyOf(context);
+    }
+
+    /**
+     * 丢弃会话尚未提交的写入，会话消息被删除时调用
+     */
+    public void discard(List<String> sessionIds) {
+        synchronized (lock) {
+            pending.inserts.values().removeIf(message -> sessionIds.contains(message.getSessionId()));
+            pending.updates.values().removeIf(message -> sessionIds.contains(message.getSessionId()));
+            pending.windowRows.removeIf(row -> sessionIds.contains(row.getSessionId()));
+            sessionIds.forEach(pending.contexts::remove);
+            sessionIds.forEach(pending.snapshots::remove);
+            unflushedMessages.values().removeIf(message -> sessionIds.contains(message.getSessionId()));
+            sessionIds.forEach(unflushedContexts::remove);
+            sessionIds.forEach(committedSeqs::remove);
+        }
+    }
+
+    /**
+     * 提交当前批次
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushBatch();
+        }
+    }
+
+    private void flushBatch() {
+        Batch batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new Batch();
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!batch.inserts.isEmpty()) {
+                    messageRepository.insert(batch.inserts.values());
+                }
+                if (!batch.updates.isEmpty()) {
+                    messageRepository.updateById(batch.updates.values());
+                }
+                if (!batch.contexts.isEmpty()) {
+                    contextRepository.insertOrUpdate(batch.contexts.values());
+                }
+                if (!batch.windowRows.isEmpty()) {
+                    contextWindowRepository.append(batch.windowRows);
+                }
+                List<ContextEntity> evicted = evicted(batch.contexts.values());
+                if (!evicted.isEmpty()) {
+                    contextWindowRepository.evict(evicted);
+                }
+            });
+            release(batch);
+        } catch (Exception e) {
+            batch.attempts++;
+            if (batch.attempts < properties.getMaxRetries()) {
+                logger.warn("消息批量提交失败，等待重试, 条数: {}, 第{}次: {}", batch.size(), batch.attempts, e.getMessage());
+                synchronized (lock) {
+                    pending = batch.merge(pending);
+                }
+            } else {
+                logger.error("消息批量提交多次失败，改为逐条写入, 条数: {}", batch.size(), e);
+                writeOneByOne(batch);
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSize.record(batch.size());
+        }
+    }
+
+    /**
+     * 应用关闭时停止定时刷盘，并同步提交剩余写入
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("消息刷盘线程未能按时结束");
+        }
+        flushRemaining();
+        logger.info("消息延迟写入已关闭，剩余未提交消息: {}", unflushedMessages.size());
+    }
+
+    /**
+     * 同步提交剩余写入，重试中的批次也需要写入，最多再尝试maxRetries次
+     */
+    private void flushRemaining() {
+        for (int i = 0; i <= properties.getMaxRetries() && hasPending(); i++) {
+            flush();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("消息刷盘失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean hasPending() {
+        synchronized (lock) {
+            return !pending.isEmpty();
+        }
+    }
+
+    /**
+     * 逐条写入，跳过无法写入的数据，避免一条坏数据阻塞整批
+     */
+    private void writeOneByOne(Batch batch) {
+        batch.inserts.values().forEach(message -> writeQuietly(() -> messageRepository.insert(message), message.getId()));
+        batch.updates.values().forEach(message -> writeQuietly(() -> messageRepository.updateById(message), message.getId()));
+        batch.contexts.values().forEach(context -> writeQuietly(() -> contextRepository.insertOrUpdate(context), context.getId()));
+        batch.windowRows.forEach(row -> writeQuietly(() -> contextWindowRepository.append(List.of(row)), row.getMessageId()));
+        evicted(batch.contexts.values()).forEach(context ->
+                writeQuietly(() -> contextWindowRepository.evict(List.of(context)), context.getId()));
+        release(batch);
+    }
+
+    /**
+     * 直接写入上下文：上下文行变化时更新并删除已移出的窗口行，新消息追加窗口行
+     */
+    private void writeContext(ContextEntity context, List<ContextWindowEntity> rows) {
+        if (context.rowChanged()) {
+            contextRepository.insertOrUpdate(context);
+            context.clearRowChanged();
+            List<ContextEntity> evicted = evicted(List.of(context));
+            if (!evicted.isEmpty()) {
+                contextWindowRepository.evict(evicted);
+            }
+        }
+        if (!rows.isEmpty()) {
+            contextWindowRepository.append(rows);
+        }
+    }
+
+    /**
+     * 移出过消息、需要删除窗口行的上下文
+     */
+    private static List<ContextEntity> evicted(Collection<ContextEntity> contexts) {
+        return contexts.stream()
+                .filter(context -> context.getWindowStart() != null && context.getWindowStart() > 0)
+                .toList();
+    }
+
+    private void writeQuietly(Runnable write, String id) {
+        try {
+            write.run();
+        } catch (Exception e) {
+            logger.error("写入失败，已丢弃: {}, {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 移除已提交的数据，之后入队的新版本保留；记录各会话已提交的下一个序号
+     */
+    private void release(Batch batch) {
+        synchronized (lock) {
+            batch.inserts.forEach(unflushedMessages::remove);
+            batch.updates.forEach(unflushedMessages::remove);
+            batch.snapshots.forEach(unflushedContexts::remove);
+            batch.snapshots.forEach((sessionId, snapshot) -> committedSeqs.merge(sessionId, snapshot.nextSeq(), Math::max));
+            flushGeneration++;
+        }
+    }
+
+    private static ContextEntity copyOf(ContextEntity context) {
+        ContextEntity copy = new ContextEntity();
+        copy.setId(context.getId());
+        copy.setSessionId(context.getSessionId());
+        copy.setWindowStart(context.getWindowStart());
+        copy.setActiveMessages(new ArrayList<>(context.getActiveMessages()));
+        copy.setWindow(context.getWindow() == null ? null : context.getWindow().copy());
+        copy.setSummary(context.getSummary());
+        copy.setSummaryTree(context.getSummaryTree() == null ? null : context.getSummaryTree().copy());
+        copy.setCreatedAt(context.getCreatedAt());
+        copy.setUpdatedAt(context.getUpdatedAt());
+        if (!context.rowChanged()) {
+            copy.clearRowChanged();
+        }
+        return copy;
+    }
+
+    /**
+     * 一次提交的写入
+     */
+    private static class Batch {
+
+        private final Map<String, MessageEntity> inserts = new LinkedHashMap<>();
+
+        private final Map<String, MessageEntity> updates = new LinkedHashMap<>();
+
+        /**
+         * 需要写入的上下文行，key: 会话id，同一会话只保留最新的上下文
+         */
+        private final Map<String, ContextEntity> contexts = new LinkedHashMap<>();
+
+        /**
+         * 追加的上下文窗口行，按入队顺序
+         */
+        private final List<ContextWindowEntity> windowRows = new ArrayList<>();
+
+        /**
+         * 入队的上下文副本，key: 会话id，提交后据此移除尚未提交的上下文
+         */
+        private final Map<String, ContextEntity> snapshots = new LinkedHashMap<>();
+
+        private int attempts;
+
+        boolean isEmpty() {
+            return inserts.isEmpty() && updates.isEmpty() && contexts.isEmpty()
+                    && windowRows.isEmpty() && snapshots.isEmpty();
+        }
+
+        int size() {
+            return inserts.size() + updates.size() + contexts.size() + windowRows.size();
+        }
+
+        /**
+         * 合并失败批次与之后入队的写入，失败批次在前
+         */
+        Batch merge(Batch later) {
+            Batch merged = new Batch();
+            merged.attempts = attempts;
+            merged.inserts.putAll(inserts);
+            merged.updates.putAll(updates);
+            merged.contexts.putAll(contexts);
+            merged.windowRows.addAll(windowRows);
+            merged.snapshots.putAll(snapshots);
+            merged.inserts.putAll(later.inserts);
+            later.updates.forEach((id, message) -> {
+                // 插入尚未成功时，之后的更新并入插入
+                if (merged.inserts.containsKey(id)) {
+                    merged.inserts.put(id, message);
+                } else {
+                    merged.updates.put(id, message);
+                }
+            });
+            merged.contexts.putAll(later.contexts);
+            merged.windowRows.addAll(later.windowRows);
+            merged.snapshots.putAll(later.snapshots);
+            return merged;
+        }
+    }
+}
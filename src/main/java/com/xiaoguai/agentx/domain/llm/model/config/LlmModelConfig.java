@@ -18,6 +18,11 @@ public class LlmModelConfig {
      */
     private String modelId;
 
+    /**
+     * 备用模型id，主模型首token过慢或失败时对冲请求该模型
+     */
+    private String hedgeModelId;
+
 
     /**
      * 温度参数，范围0-2，值越大创造性越强，越小则越保守
@@ -51,6 +56,11 @@ public class LlmModelConfig {
      */
     private Integer summaryThreshold;
 
+    /**
+     * 始终保留的最新消息数，适用于相关性策略
+     */
+    private Integer recentMessages;
+
     /**
      * 是否允许联网搜索
      */
@@ -140,4 +150,20 @@ public class LlmModelConfig {
     public void setEnableThinking(Boolean enableThinking) {
         this.enableThinking = enableThinking;
     }
+
+    public String getHedgeModelId() {
+        return hedgeModelId;
+    }
+
+    public void setHedgeModelId(String hedgeModelId) {
+        this.hedgeModelId = hedgeModelId;
+    }
+
+    public Integer getRecentMessages() {
+        return recentMessages;
+    }
+
+    public void setRecentMessages(Integer recentMessages) {
+        this.recentMessages = recentMessages;
+    }
 }
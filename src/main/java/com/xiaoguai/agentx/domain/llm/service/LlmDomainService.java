@@ -13,6 +13,7 @@ import com.xiaoguai.agentx.domain.llm.repository.ModelRepository;
 import com.xiaoguai.agentx.domain.llm.repository.ProviderRepository;
 import com.xiaoguai.agentx.infrastrcture.entity.Operator;
 import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.llm.LlmProviderService;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -52,7 +53,9 @@ public class LlmDomainService {
         LambdaUpdateWrapper<ProviderEntity> wrapper = Wrappers.<ProviderEntity>lambdaUpdate()
                 .eq(ProviderEntity::getId, provider.getId())
                 .eq(provider.needCheckUserId(), ProviderEntity::getUserId, provider.getUserId());
+        ProviderEntity old = providerRepository.selectById(provider.getId());
         providerRepository.checkUpdate(provider, wrapper);
+        invalidateModels(old);
     }
 
     /**
@@ -63,7 +66,9 @@ public class LlmDomainService {
         LambdaQueryWrapper<ProviderEntity> wrapper = Wrappers.<ProviderEntity>lambdaQuery()
                 .eq(ProviderEntity::getId, providerId)
                 .eq(operator.needCheckUserId(), ProviderEntity::getUserId, userId);
+        ProviderEntity old = providerRepository.selectById(providerId);
         providerRepository.checkDelete(wrapper);
+        invalidateModels(old);
 
         // 删除provider下的模型
         LambdaQueryWrapper<ModelEntity> modelWrapper = Wrappers.<ModelEntity>lambdaQuery()
@@ -141,6 +146,7 @@ public class LlmDomainService {
                 .eq(ProviderEntity::getUserId, userId)
                 .setSql("status = not status");
         providerRepository.checkUpdate(wrapper);
+        invalidateModels(providerRepository.selectById(providerId));
     }
 
 
@@ -253,6 +259,15 @@ public class LlmDomainService {
     }
 
 
+    /**
+     * 失效服务商下已缓存的模型
+     */
+    private void invalidateModels(ProviderEntity provider) {
+        if (provider != null) {
+            LlmProviderService.invalidate(provider.getProtocol(), provider.getConfig());
+        }
+    }
+
     /**
      * 判断服务商是否存在
      */
@@ -0,0 +1,226 @@
+package com.xiaoguai.agentx.domain.token.model;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 01:40
+ * @Description: 上下文窗口
+ * 按加入顺序保存活跃消息的id与token数，并维护累计token数；
+ * 新消息从尾部追加，裁剪时从头部移出，判断是否超限与裁剪都不需要重新排序或加载消息内容。
+ * 注入提示词的摘要同样占用窗口预算，单独记录其token数。
+ * 每条消息分配递增的序号，按序号逐行追加存储，移出时按序号范围删除
+ */
+public class ContextWindow {
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * 下一条消息的序号
+     */
+    private long nextSeq;
+
+    private long totalTokens;
+
+    private int summaryTokens;
+
+    /**
+     * 按活跃消息id重建窗口，用于窗口缺失或与活跃消息不一致的旧数据
+     *
+     * @param messageIds 活跃消息id，按时间顺序
+     * @param tokens     消息token数
+     * @param startSeq   第一条消息的序号
+     */
+    public static ContextWindow rebuild(List<String> messageIds, ToIntFunction<String> tokens, long startSeq) {
+        ContextWindow window = new ContextWindow();
+        window.nextSeq = startSeq;
+        for (String messageId : messageIds) {
+            window.append(messageId, tokens.applyAsInt(messageId));
+        }
+        return window;
+    }
+
+    /**
+     * 由存储的窗口行恢复
+     *
+     * @param entries  序号不小于startSeq的消息，按序号排列
+     * @param startSeq 窗口起始序号，之前的消息已移出
+     */
+    public static ContextWindow restore(List<Entry> entries, long startSeq) {
+        ContextWindow window = new ContextWindow();
+        window.nextSeq = startSeq;
+        for (Entry entry : entries) {
+            window.entries.addLast(entry);
+            window.totalTokens += entry.tokens;
+            window.nextSeq = Math.max(window.nextSeq, entry.seq + 1);
+        }
+        return window;
+    }
+
+    /**
+     * 追加消息，分配下一个序号
+     *
+     * @return 新加入的消息
+     */
+    public Entry append(String messageId, int tokens) {
+        Entry entry = new Entry(nextSeq++, messageId, tokens);
+        entries.addLast(entry);
+        totalTokens += tokens;
+        return entry;
+    }
+
+    /**
+     * 移出最早的消息，窗口为空时返回null
+     */
+    public Entry pollFirst() {
+        Entry entry = entries.pollFirst();
+        if (entry != null) {
+            totalTokens -= entry.tokens;
+        }
+        return entry;
+    }
+
+    /**
+     * 最早的count条消息，不移出
+     */
+    public List<Entry> firstEntries(int count) {
+        List<Entry> first = new ArrayList<>(Math.min(count, entries.size()));
+        Iterator<Entry> iterator = entries.iterator();
+        while (first.size() < count && iterator.hasNext()) {
+            first.add(iterator.next());
+        }
+        return first;
+    }
+
+    /**
+     * 最早的count条消息id，不移出
+     */
+    public List<String> firstIds(int count) {
+        return firstEntries(count).stream().map(Entry::getId).toList();
+    }
+
+    /**
+     * 从头部移出多少条消息后，消息与摘要的token数小于limit
+     * 只遍历需要移出的消息
+     */
+    public int evictionsToFit(long limit) {
+        long total = budgetTokens();
+        int count = 0;
+        Iterator<Entry> iterator = entries.iterator();
+        while (total >= limit && iterator.hasNext()) {
+            total -= iterator.next().tokens;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 窗口中的消息id，按加入顺序
+     */
+    public List<String> messageIds() {
+        return firstIds(entries.size());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 窗口起始序号，窗口为空时为下一条消息的序号，序号更小的消息都已移出
+     */
+    public long startSeq() {
+        Entry first = entries.peekFirst();
+        return first == null ? nextSeq : first.seq;
+    }
+
+    /**
+     * 下一条消息的序号
+     */
+    public long nextSeq() {
+        return nextSeq;
+    }
+
+    public long totalTokens() {
+        return totalTokens;
+    }
+
+    /**
+     * 消息与摘要占用的token数
+     */
+    public long budgetTokens() {
+        return totalTokens + summaryTokens;
+    }
+
+    /**
+     * 窗口与活跃消息id是否一致
+     */
+    public boolean matches(List<String> messageIds) {
+        if (messageIds.size() != entries.size()) {
+            return false;
+        }
+        Iterator<String> ids = messageIds.iterator();
+        for (Entry entry : entries) {
+            if (!entry.id.equals(ids.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public ContextWindow copy() {
+        ContextWindow copy = new ContextWindow();
+        copy.entries.addAll(entries);
+        copy.nextSeq = nextSeq;
+        copy.totalTokens = totalTokens;
+        copy.summaryTokens = summaryTokens;
+        return copy;
+    }
+
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public int getSummaryTokens() {
+        return summaryTokens;
+    }
+
+    public void setSummaryTokens(int summaryTokens) {
+        this.summaryTokens = summaryTokens;
+    }
+
+    /**
+     * 窗口中的一条消息
+     */
+    public static class Entry {
+
+        private final long seq;
+
+        private final String id;
+
+        private final int tokens;
+
+        public Entry(long seq, String id, int tokens) {
+            this.seq = seq;
+            this.id = id;
+            this.tokens = tokens;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.xiaoguai.agentx.domain.token.model;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:40
+ * @Description: 分层摘要
+ * 每次摘要生成一个一级片段（level-0），一级片段的token数超过预算时与二级摘要（level-1）合并为新的二级摘要。
+ * 注入提示词的摘要由二级摘要与最新的一级片段组成，不超过固定的token上限
+ */
+public class SummaryTree {
+
+    /**
+     * 二级摘要，尚未合并过时为null
+     */
+    private Node rollup;
+
+    /**
+     * 一级摘要片段，按时间顺序
+     */
+    private List<Node> chunks = new ArrayList<>();
+
+    /**
+     * 由旧数据的摘要文本创建，整段作为二级摘要
+     */
+    public static SummaryTree of(String summary) {
+        SummaryTree tree = new SummaryTree();
+        if (summary != null && !summary.isBlank() && !"null".equals(summary)) {
+            tree.rollup = new Node(summary);
+        }
+        return tree;
+    }
+
+    /**
+     * 追加一级片段
+     */
+    public void addChunk(String text) {
+        if (text != null && !text.isBlank()) {
+            chunks.add(new Node(text));
+        }
+    }
+
+    /**
+     * 一级片段的token数
+     */
+    public int chunkTokens() {
+        return chunks.stream().mapToInt(Node::getTokens).sum();
+    }
+
+    /**
+     * 参与合并的摘要文本：二级摘要在前，一级片段按时间顺序
+     */
+    public List<String> rollupInput() {
+        List<String> texts = new ArrayList<>(chunks.size() + 1);
+        if (rollup != null) {
+            texts.add(rollup.text);
+        }
+        chunks.forEach(chunk -> texts.add(chunk.text));
+        return texts;
+    }
+
+    /**
+     * 用合并结果替换二级摘要并清空一级片段
+     */
+    public void rollup(String text) {
+        this.rollup = text == null || text.isBlank() ? null : new Node(text);
+        this.chunks = new ArrayList<>();
+    }
+
+    /**
+     * 注入提示词的摘要，不超过maxTokens
+     * 二级摘要优先，其余预算从最新的一级片段开始填充；二级摘要本身超限时截断
+     *
+     * @param maxTokens token上限，不大于0时不限制
+     */
+    public String render(int maxTokens) {
+        if (maxTokens <= 0) {
+            return String.join("\n\n", rollupInput());
+        }
+        String separator = "\n\n";
+        int separatorTokens = LocalTokenizer.countTokens(separator);
+        int remaining = maxTokens;
+        String head = null;
+        if (rollup != null) {
+            head = rollup.tokens > remaining ? LocalTokenizer.truncate(rollup.text, remaining) : rollup.text;
+            remaining -= Math.min(rollup.tokens, remaining);
+        }
+        List<String> recent = new ArrayList<>();
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            Node chunk = chunks.get(i);
+            int cost = chunk.tokens + (head != null || !recent.isEmpty() ? separatorTokens : 0);
+            if (cost > remaining) {
+                break;
+            }
+            recent.add(0, chunk.text);
+            remaining -= cost;
+        }
+        if (head != null) {
+            recent.add(0, head);
+        }
+        return String.join(separator, recent);
+    }
+
+    public boolean hasContent() {
+        return rollup != null || !chunks.isEmpty();
+    }
+
+    public SummaryTree copy() {
+        SummaryTree copy = new SummaryTree();
+        copy.rollup = rollup;
+        copy.chunks = new ArrayList<>(chunks);
+        return copy;
+    }
+
+    public Node getRollup() {
+        return rollup;
+    }
+
+    public void setRollup(Node rollup) {
+        this.rollup = rollup;
+    }
+
+    public List<Node> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<Node> chunks) {
+        this.chunks = chunks == null ? new ArrayList<>() : new ArrayList<>(chunks);
+    }
+
+    /**
+     * 一段摘要及其token数，setter仅用于反序列化
+     */
+    public static class Node {
+
+        private String text;
+
+        private int tokens;
+
+        public Node() {
+        }
+
+        public Node(String text) {
+            this.text = text;
+            this.tokens = LocalTokenizer.countTokens(text);
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        public void setTokens(int tokens) {
+            this.tokens = tokens;
+        }
+    }
+}
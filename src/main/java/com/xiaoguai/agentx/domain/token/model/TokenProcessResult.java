@@ -12,9 +12,14 @@ import java.util.List;
 public class TokenProcessResult {
 
     /**
-     * 保留的消息列表
+     * 需要从上下文窗口头部移出的消息id，按时间顺序
      */
-    private List<TokenMessage> retainedMessages;
+    private List<String> evictedMessageIds = List.of();
+
+    /**
+     * 本轮不发送但仍保留在上下文中的消息id
+     */
+    private List<String> excludedMessageIds = List.of();
 
     /**
      * 消息摘要（）
@@ -38,12 +43,20 @@ public class TokenProcessResult {
      */
     private boolean processed;
 
-    public List<TokenMessage> getRetainedMessages() {
-        return retainedMessages;
+    public List<String> getEvictedMessageIds() {
+        return evictedMessageIds;
+    }
+
+    public void setEvictedMessageIds(List<String> evictedMessageIds) {
+        this.evictedMessageIds = evictedMessageIds;
+    }
+
+    public List<String> getExcludedMessageIds() {
+        return excludedMessageIds;
     }
 
-    public void setRetainedMessages(List<TokenMessage> retainedMessages) {
-        this.retainedMessages = retainedMessages;
+    public void setExcludedMessageIds(List<String> excludedMessageIds) {
+        this.excludedMessageIds = excludedMessageIds;
     }
 
     public String getSummary() {
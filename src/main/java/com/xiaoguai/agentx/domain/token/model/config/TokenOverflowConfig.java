@@ -34,6 +34,16 @@ public class TokenOverflowConfig {
      */
     private Integer summaryThreshold;
 
+    /**
+     * 始终保留的最新消息数，适用于相关性策略
+     */
+    private Integer recentMessages;
+
+    /**
+     * 本轮用户消息，相关性策略据此选择早期消息
+     */
+    private String query;
+
     /**
      * 供应商配置，获取protocol
      */
@@ -78,6 +88,21 @@ public class TokenOverflowConfig {
         return config;
     }
 
+    /**
+     * 创建相关性策略配置
+     * @param maxTokens 上下文最大Token数量
+     * @param recentMessages 始终保留的最新消息数
+     * @param query 本轮用户消息
+     */
+    public static TokenOverflowConfig createRelevanceConfig(int maxTokens, Integer recentMessages, String query) {
+        TokenOverflowConfig config = new TokenOverflowConfig(TokenOverflowStrategyEnum.RELEVANCE);
+        config.setMaxTokens(maxTokens);
+        config.setReserveRatio(0.1);
+        config.setRecentMessages(recentMessages);
+        config.setQuery(query);
+        return config;
+    }
+
     public TokenOverflowStrategyEnum getStrategyType() {
         return strategyType;
     }
@@ -110,6 +135,22 @@ public class TokenOverflowConfig {
         this.summaryThreshold = summaryThreshold;
     }
 
+    public Integer getRecentMessages() {
+        return recentMessages;
+    }
+
+    public void setRecentMessages(Integer recentMessages) {
+        this.recentMessages = recentMessages;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
     public ProviderConfig getProviderConfig() {
         return providerConfig;
     }
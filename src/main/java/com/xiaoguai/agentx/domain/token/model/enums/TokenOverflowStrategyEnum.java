@@ -22,7 +22,12 @@ public enum TokenOverflowStrategyEnum {
     /**
      * 摘要 - 总结，保留关键信息
      */
-    SUMMARIZE;
+    SUMMARIZE,
+
+    /**
+     * 相关性 - 保留最新的K条消息，以及与当前问题最相关的早期消息
+     */
+    RELEVANCE;
 
     /**
      * 判断给定字符串是否为有效的枚举值
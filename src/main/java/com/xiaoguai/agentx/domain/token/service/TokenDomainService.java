@@ -1,12 +1,15 @@
 package com.xiaoguai.agentx.domain.token.service;
 
 
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
+import com.xiaoguai.agentx.domain.token.service.impl.SummerizeTokenOverflowStrategy;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @Author: the-way
@@ -20,13 +23,25 @@ public class TokenDomainService {
 
     /**
      * 处理消息
-     * @param messages 消息列表
+     * @param window 上下文窗口
+     * @param loader 按消息id加载消息内容
      * @param config 配置
      */
-    public TokenProcessResult processMessages(List<TokenMessage> messages, TokenOverflowConfig config) {
+    public TokenProcessResult processMessages(ContextWindow window, Function<List<String>, List<TokenMessage>> loader,
+                                              TokenOverflowConfig config) {
         // 获取策略实例
         TokenOverflowStrategy strategy = TokenOverflowStrategyFactory.createStrategy(config);
         // 执行处理
-        return strategy.process(messages);
+        return strategy.process(window, loader);
+    }
+
+    /**
+     * 合并分层摘要
+     * @param summaries 按时间顺序排列的摘要
+     * @param targetTokens 合并结果的目标token数
+     * @param config 配置，提供摘要使用的模型
+     */
+    public String rollupSummaries(List<String> summaries, int targetTokens, TokenOverflowConfig config) {
+        return new SummerizeTokenOverflowStrategy(config).rollup(summaries, targetTokens);
     }
 }
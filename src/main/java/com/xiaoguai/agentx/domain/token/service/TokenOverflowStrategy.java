@@ -1,12 +1,12 @@
 package com.xiaoguai.agentx.domain.token.service;
 
 
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
-import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
-import org.apache.catalina.LifecycleState;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @Author: the-way
@@ -17,15 +17,18 @@ import java.util.List;
 public interface TokenOverflowStrategy {
 
     /**
-     * 处理Token上下文
+     * 处理Token上下文，只计算需要移出的消息，不修改窗口
+     *
+     * @param window 上下文窗口
+     * @param loader 按消息id加载消息内容，只在需要内容时调用（如生成摘要）
      */
-    TokenProcessResult process(List<TokenMessage> messages);
+    TokenProcessResult process(ContextWindow window, Function<List<String>, List<TokenMessage>> loader);
 
 
     /**
-     * 是否需要处理
+     * 是否需要处理，按窗口的累计token数或消息数判断
      */
-    boolean needProcessing(List<TokenMessage> messages);
+    boolean needProcessing(ContextWindow window);
 
     /**
      * 获取策略名称
@@ -4,6 +4,7 @@ package com.xiaoguai.agentx.domain.token.service;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
 import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
 import com.xiaoguai.agentx.domain.token.service.impl.NoTokenOverflowStrategy;
+import com.xiaoguai.agentx.domain.token.service.impl.RelevanceTokenOverflowStrategy;
 import com.xiaoguai.agentx.domain.token.service.impl.SlidingWindowOverflowStrategy;
 import com.xiaoguai.agentx.domain.token.service.impl.SummerizeTokenOverflowStrategy;
 
@@ -33,6 +34,9 @@ public class TokenOverflowStrategyFactory {
             case SUMMARIZE -> {
                 return new SummerizeTokenOverflowStrategy(config);
             }
+            case RELEVANCE -> {
+                return new RelevanceTokenOverflowStrategy(config);
+            }
             default -> {
                 return new NoTokenOverflowStrategy();
             }
@@ -1,6 +1,7 @@
 package com.xiaoguai.agentx.domain.token.service.impl;
 
 
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
@@ -8,6 +9,7 @@ import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
 import com.xiaoguai.agentx.domain.token.service.TokenOverflowStrategy;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @Author: the-way
@@ -35,17 +37,16 @@ public class NoTokenOverflowStrategy implements TokenOverflowStrategy {
 
 
     @Override
-    public TokenProcessResult process(List<TokenMessage> messages) {
+    public TokenProcessResult process(ContextWindow window, Function<List<String>, List<TokenMessage>> loader) {
         TokenProcessResult result = new TokenProcessResult();
-        result.setRetainedMessages(messages);
         result.setStrategyName(getName());
-        result.setTotalTokes(calculateTotalTokens(messages));
+        result.setTotalTokes((int) window.totalTokens());
         result.setProcessed(false);
         return result;
     }
 
     @Override
-    public boolean needProcessing(List<TokenMessage> messages) {
+    public boolean needProcessing(ContextWindow window) {
         // 无策略不需要处理
         return false;
     }
@@ -54,13 +55,4 @@ public class NoTokenOverflowStrategy implements TokenOverflowStrategy {
     public String getName() {
         return TokenOverflowStrategyEnum.NONE.name();
     }
-
-    /**
-     * 计算token数量
-     */
-    private Integer calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream()
-                .mapToInt(e -> e == null ? 0 : e.getTokenCount())
-                .sum();
-    }
 }
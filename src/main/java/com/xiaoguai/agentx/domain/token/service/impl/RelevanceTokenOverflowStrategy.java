@@ -0,0 +1,162 @@
+package com.xiaoguai.agentx.domain.token.service.impl;
+
+
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+import com.xiaoguai.agentx.domain.token.model.TokenMessage;
+import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
+import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
+import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
+import com.xiaoguai.agentx.domain.token.service.TokenOverflowStrategy;
+import com.xiaoguai.agentx.infrastrcture.llm.embedding.MessageEmbeddings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 03:10
+ * @Description: 相关性Token策略
+ * 始终保留最新的K条消息，剩余预算按与本轮用户消息的向量相似度选择早期消息；
+ * 未被选中的消息只是本轮不发送，仍保留在上下文中，后续对话可能再次被选中。
+ * 消息向量在保存时计算并缓存，相似度在进程内计算；向量不可用时按时间从新到旧选择
+ */
+public class RelevanceTokenOverflowStrategy implements TokenOverflowStrategy {
+
+    /**
+     * 默认始终保留的最新消息数
+     */
+    private static final int DEFAULT_RECENT_MESSAGES = 6;
+
+    /**
+     * 默认缓冲比例
+     */
+    private static final double DEFAULT_RESERVE_RATIO = 0.1;
+
+    private final TokenOverflowConfig config;
+
+    public RelevanceTokenOverflowStrategy(TokenOverflowConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public TokenProcessResult process(ContextWindow window, Function<List<String>, List<TokenMessage>> loader) {
+        TokenProcessResult result = new TokenProcessResult();
+        result.setStrategyName(getName());
+        if (!needProcessing(window)) {
+            result.setProcessed(false);
+            result.setTotalTokes((int) window.budgetTokens());
+            return result;
+        }
+
+        List<ContextWindow.Entry> entries = window.getEntries();
+        // 候选消息超过上限时，最早的消息移出上下文
+        int overflow = Math.max(0, entries.size() - MessageEmbeddings.maxCandidates());
+        List<ContextWindow.Entry> pool = entries.subList(overflow, entries.size());
+
+        double reserveRatio = config.getReserveRatio() == null ? DEFAULT_RESERVE_RATIO : config.getReserveRatio();
+        long available = maxTokens() - (long) (maxTokens() * reserveRatio) - window.getSummaryTokens();
+        int recentCount = Math.min(pool.size(), config.getRecentMessages() == null || config.getRecentMessages() < 0
+                ? DEFAULT_RECENT_MESSAGES : config.getRecentMessages());
+
+        // 最新的K条消息优先，从新到旧放入预算
+        Set<String> selected = new HashSet<>();
+        long used = 0;
+        for (int i = pool.size() - 1; i >= pool.size() - recentCount; i--) {
+            ContextWindow.Entry entry = pool.get(i);
+            if (used + entry.getTokens() > available) {
+                break;
+            }
+            selected.add(entry.getId());
+            used += entry.getTokens();
+        }
+
+        // 剩余预算按相关性选择早期消息
+        for (ContextWindow.Entry entry : rank(pool.subList(0, pool.size() - recentCount), loader)) {
+            if (used + entry.getTokens() <= available) {
+                selected.add(entry.getId());
+                used += entry.getTokens();
+            }
+        }
+
+        List<String> excluded = new ArrayList<>();
+        for (ContextWindow.Entry entry : pool) {
+            if (!selected.contains(entry.getId())) {
+                excluded.add(entry.getId());
+            }
+        }
+
+        result.setProcessed(true);
+        result.setEvictedMessageIds(entries.subList(0, overflow).stream().map(ContextWindow.Entry::getId).toList());
+        result.setExcludedMessageIds(excluded);
+        result.setTotalTokes((int) (used + window.getSummaryTokens()));
+        return result;
+    }
+
+    @Override
+    public boolean needProcessing(ContextWindow window) {
+        if (window == null || window.size() == 0) {
+            return false;
+        }
+        return window.budgetTokens() > maxTokens() || window.size() > MessageEmbeddings.maxCandidates();
+    }
+
+    /**
+     * 未配置最大Token数时只限制候选消息数
+     */
+    private long maxTokens() {
+        Integer maxTokens = config.getMaxTokens();
+        return maxTokens == null || maxTokens <= 0 ? Integer.MAX_VALUE : maxTokens;
+    }
+
+    @Override
+    public String getName() {
+        return TokenOverflowStrategyEnum.RELEVANCE.name();
+    }
+
+    /**
+     * 早期消息按与本轮用户消息的相似度从高到低排序，相似度相同或没有向量时较新的在前
+     */
+    private List<ContextWindow.Entry> rank(List<ContextWindow.Entry> candidates,
+                                           Function<List<String>, List<TokenMessage>> loader) {
+        List<ContextWindow.Entry> newestFirst = new ArrayList<>(candidates);
+        Collections.reverse(newestFirst);
+        if (newestFirst.isEmpty()) {
+            return newestFirst;
+        }
+        float[] query = MessageEmbeddings.embedQuery(config.getQuery());
+        if (query == null) {
+            return newestFirst;
+        }
+
+        // 较新的消息优先同步补算缺失的向量
+        Map<String, String> contents = new LinkedHashMap<>();
+        Map<String, TokenMessage> messages = new HashMap<>();
+        loader.apply(newestFirst.stream().map(ContextWindow.Entry::getId).toList())
+                .forEach(message -> messages.put(message.getId(), message));
+        for (ContextWindow.Entry entry : newestFirst) {
+            TokenMessage message = messages.get(entry.getId());
+            if (message != null) {
+                contents.put(entry.getId(), message.getContent());
+            }
+        }
+        Map<String, float[]> vectors = MessageEmbeddings.lookup(contents);
+
+        Map<String, Double> scores = new HashMap<>(newestFirst.size() * 2);
+        for (ContextWindow.Entry entry : newestFirst) {
+            float[] vector = vectors.get(entry.getId());
+            scores.put(entry.getId(), vector == null ? -1.0 : MessageEmbeddings.similarity(query, vector));
+        }
+        // 稳定排序，相似度相同时保持从新到旧
+        newestFirst.sort(Comparator.comparingDouble((ContextWindow.Entry entry) -> scores.get(entry.getId())).reversed());
+        return newestFirst;
+    }
+}
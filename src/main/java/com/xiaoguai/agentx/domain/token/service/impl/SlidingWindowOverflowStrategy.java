@@ -1,16 +1,15 @@
 package com.xiaoguai.agentx.domain.token.service.impl;
 
 
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
 import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
 import com.xiaoguai.agentx.domain.token.service.TokenOverflowStrategy;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @Author: the-way
@@ -40,19 +39,15 @@ public class SlidingWindowOverflowStrategy implements TokenOverflowStrategy {
     }
 
     @Override
-    public TokenProcessResult process(List<TokenMessage> messages) {
-        if (!needProcessing(messages)) {
+    public TokenProcessResult process(ContextWindow window, Function<List<String>, List<TokenMessage>> loader) {
+        if (!needProcessing(window)) {
             TokenProcessResult result = new TokenProcessResult();
             result.setStrategyName(TokenOverflowStrategyEnum.SLIDING_WINDOW.name());
             result.setProcessed(false);
-            result.setTotalTokes(calculateTotalTokens(messages));
-            result.setRetainedMessages(messages);
+            result.setTotalTokes((int) window.budgetTokens());
             return result;
         }
 
-        // 按照时间排序，保留最新的消息
-        Collections.sort(messages, Comparator.comparing(TokenMessage::getCreatedAt).reversed());
-
         // 最大Token数量
         int maxTokens = config.getMaxTokens();
         // 预留Token数量
@@ -60,45 +55,32 @@ public class SlidingWindowOverflowStrategy implements TokenOverflowStrategy {
         // 可用Token数量
         int availableTokens = maxTokens - reservedTokens;
 
-        List<TokenMessage> retainedMessages = new ArrayList<>();
-        int totalTokens = 0;
-        for (TokenMessage message : messages) {
-            int messageToken = message.getTokenCount() == null ? 0 : message.getTokenCount();
-            if (totalTokens + messageToken< availableTokens) {
-                totalTokens += messageToken;
-                retainedMessages.add(message);
-            } else {
-                break;
-            }
+        // 窗口按时间顺序排列，从最早的消息开始移出，直到剩余消息与摘要小于可用Token数量
+        List<ContextWindow.Entry> evicted = window.firstEntries(window.evictionsToFit(availableTokens));
+        long totalTokens = window.budgetTokens();
+        for (ContextWindow.Entry entry : evicted) {
+            totalTokens -= entry.getTokens();
         }
 
         // 返回Result
         TokenProcessResult result = new TokenProcessResult();
         result.setProcessed(true);
         result.setStrategyName(getName());
-        result.setTotalTokes(totalTokens);
-        result.setRetainedMessages(retainedMessages);
+        result.setTotalTokes((int) totalTokens);
+        result.setEvictedMessageIds(evicted.stream().map(ContextWindow.Entry::getId).toList());
         return result;
     }
 
     @Override
-    public boolean needProcessing(List<TokenMessage> messages) {
-        if (messages == null || messages.isEmpty()) {
+    public boolean needProcessing(ContextWindow window) {
+        if (window == null || window.size() == 0) {
             return false;
         }
-        Integer totalTokens = calculateTotalTokens(messages);
-        Integer maxTokens = config.getMaxTokens();
-        return totalTokens > maxTokens;
+        return window.budgetTokens() > config.getMaxTokens();
     }
 
     @Override
     public String getName() {
         return TokenOverflowStrategyEnum.SLIDING_WINDOW.name();
     }
-
-    private Integer calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream()
-                .mapToInt(e -> e == null ? 0 : e.getTokenCount())
-                .sum();
-    }
 }
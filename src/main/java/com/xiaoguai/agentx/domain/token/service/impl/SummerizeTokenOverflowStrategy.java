@@ -1,12 +1,14 @@
 package com.xiaoguai.agentx.domain.token.service.impl;
 
 
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
 import com.xiaoguai.agentx.domain.token.model.TokenMessage;
 import com.xiaoguai.agentx.domain.token.model.TokenProcessResult;
 import com.xiaoguai.agentx.domain.token.model.config.TokenOverflowConfig;
 import com.xiaoguai.agentx.domain.token.model.enums.TokenOverflowStrategyEnum;
 import com.xiaoguai.agentx.domain.token.service.TokenOverflowStrategy;
 import com.xiaoguai.agentx.infrastrcture.llm.LlmProviderService;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
 import dev.langchain4j.data.message.Content;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.TextContent;
@@ -15,10 +17,9 @@ import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
 
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -58,50 +59,54 @@ public class SummerizeTokenOverflowStrategy implements TokenOverflowStrategy {
             "6. 示例格式：[用户]问... [AI]回答...\n" +
             "禁止使用任何表情符号或拟人化表达";
 
+    private static final String ROLLUP_PROMPT = "你是一个专业的对话摘要合并器，请严格按照以下要求工作：\n" +
+            "1. 输入是同一段对话按时间顺序排列的多段摘要，第一段可能是更早对话的合并摘要\n" +
+            "2. 合并为一段连贯的摘要，保留用户问题、关键结论与重要事实，去除重复内容\n" +
+            "3. 不得添加任何原摘要中没有的信息，保持时间顺序\n" +
+            "4. 使用简洁的第三人称陈述句，篇幅不超过%d个token";
+
     public SummerizeTokenOverflowStrategy(TokenOverflowConfig config) {
         this.config = config;
     }
 
 
     @Override
-    public TokenProcessResult process(List<TokenMessage> messages) {
-        if (!needProcessing(messages)) {
+    public TokenProcessResult process(ContextWindow window, Function<List<String>, List<TokenMessage>> loader) {
+        if (!needProcessing(window)) {
             TokenProcessResult result = new TokenProcessResult();
             result.setProcessed(false);
-            result.setTotalTokes(calculateTotalTokens(messages));
+            result.setTotalTokes((int) window.budgetTokens());
             result.setStrategyName(TokenOverflowStrategyEnum.SUMMARIZE.name());
-            result.setRetainedMessages(messages);
             return result;
         }
 
-        // 按照时间排序
-        Collections.sort(messages, Comparator.comparing(TokenMessage::getCreatedAt));
-
-        // 需要summary的消息列表
-        List<TokenMessage> summaryMessages = messages.subList(0, messages.size() - config.getSummaryThreshold());
-
-        // 需要保留的消息
-        List<TokenMessage> retainedMessages = messages.subList(messages.size() - config.getSummaryThreshold(), messages.size());
+        // 窗口按时间顺序排列，最早的消息生成摘要，最新的summaryThreshold条保留
+        List<ContextWindow.Entry> summaryEntries = window.firstEntries(window.size() - config.getSummaryThreshold());
+        List<String> summaryIds = summaryEntries.stream().map(ContextWindow.Entry::getId).toList();
+        long totalTokens = window.budgetTokens();
+        for (ContextWindow.Entry entry : summaryEntries) {
+            totalTokens -= entry.getTokens();
+        }
 
-        // 生成摘要消息
-        String summary = generateSummary(summaryMessages);
+        // 生成摘要消息，只加载需要摘要的消息内容
+        String summary = generateSummary(loader.apply(summaryIds));
 
         // 组装Result
         TokenProcessResult result = new TokenProcessResult();
         result.setSummary(summary);
         result.setProcessed(true);
         result.setStrategyName(getName());
-        result.setRetainedMessages(retainedMessages);
-        result.setTotalTokes(calculateTotalTokens(retainedMessages));
+        result.setEvictedMessageIds(summaryIds);
+        result.setTotalTokes((int) totalTokens);
         return result;
     }
 
     @Override
-    public boolean needProcessing(List<TokenMessage> messages) {
-        if (messages == null || messages.isEmpty()) {
+    public boolean needProcessing(ContextWindow window) {
+        if (window == null || window.size() == 0) {
             return false;
         }
-        return messages.size() > config.getSummaryThreshold();
+        return window.size() > config.getSummaryThreshold();
     }
 
     @Override
@@ -109,12 +114,6 @@ public class SummerizeTokenOverflowStrategy implements TokenOverflowStrategy {
         return TokenOverflowStrategyEnum.SUMMARIZE.name();
     }
 
-    private Integer calculateTotalTokens(List<TokenMessage> messages) {
-        return messages.stream()
-                .mapToInt(e -> e == null ? 0 : e.getTokenCount())
-                .sum();
-    }
-
     /**
      * 生成摘要消息
      */
@@ -133,13 +132,29 @@ public class SummerizeTokenOverflowStrategy implements TokenOverflowStrategy {
         return response.aiMessage().text();
     }
 
+    /**
+     * 合并多段摘要为一段二级摘要
+     *
+     * @param summaries    按时间顺序排列的摘要
+     * @param targetTokens 合并结果的目标token数
+     */
+    public String rollup(List<String> summaries, int targetTokens) {
+        ChatModel chatModel = LlmProviderService.getChatModel(config.getProviderConfig().getProtocol(), config.getProviderConfig());
+        SystemMessage systemMessage = new SystemMessage(String.format(ROLLUP_PROMPT, targetTokens));
+        List<Content> contents = summaries.stream()
+                .map(summary -> (Content) new TextContent(summary))
+                .collect(Collectors.toList());
+        ChatResponse response = chatModel.chat(List.of(systemMessage, new UserMessage(contents)));
+        return response.aiMessage().text();
+    }
+
     /**
      * 生成Token消息
      */
     private TokenMessage createTokenMessage(String summary) {
         TokenMessage tokenMessage = new TokenMessage();
         tokenMessage.setId(UUID.randomUUID().toString());
-        tokenMessage.setTokenCount(100); // TODO 这里需要计算
+        tokenMessage.setTokenCount(LocalTokenizer.countMessageTokens(null, summary));
         tokenMessage.setContent(summary);
         tokenMessage.setRole(SUMMARY_ROLE);
         tokenMessage.setCreatedAt(LocalDateTime.now());
@@ -0,0 +1,314 @@
+package com.xiaoguai.agentx.infrastrcture.admission;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.ChatAdmissionProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 21:25
+ * @Description: 对话准入控制
+ * 限制单用户与单节点同时进行的对话数；超出时进入排队，按用户轮转放行，
+ * 避免单个用户的大量请求占满节点，排队位置变化时通知等待方
+ */
+public class ChatAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatAdmissionController.class);
+
+    private final ChatAdmissionProperties properties;
+
+    private final Object lock = new Object();
+
+    private int active;
+
+    private final Map<String, Integer> activeByUser = new HashMap<>();
+
+    /**
+     * 按用户分组的等待队列，遍历顺序即轮转顺序
+     */
+    private final LinkedHashMap<String, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+
+    private int queued;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-admission-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer waitTimer = Timer.builder("chat.admission.wait")
+            .description("对话排队等待时间")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+
+    public ChatAdmissionController(ChatAdmissionProperties properties) {
+        this.properties = properties;
+        Gauge.builder("chat.admission.active", this, controller -> controller.active)
+                .description("正在进行的对话数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("chat.admission.queue.depth", this, controller -> controller.queued)
+                .description("排队中的对话数")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 申请开始对话
+     *
+     * @param userId 用户id
+     * @return 准入凭证，可能已放行或在排队中
+     */
+    public Ticket enter(String userId) {
+        Ticket ticket = new Ticket(userId);
+        if (!properties.isEnabled()) {
+            ticket.admitted.complete(null);
+            return ticket;
+        }
+
+        synchronized (lock) {
+            // 同一用户已有排队的请求时不插队
+            if (!waiting.containsKey(userId) && canAdmit(userId)) {
+                admitLocked(ticket);
+                ticket.admitted.complete(null);
+                return ticket;
+            }
+            ArrayDeque<Ticket> userQueue = waiting.get(userId);
+            if (queued >= properties.getMaxQueueSize()) {
+                reject("queue_full");
+                throw new BusinessException("当前对话人数过多，请稍后重试");
+            }
+            if (userQueue != null && userQueue.size() >= properties.getMaxQueuePerUser()) {
+                reject("user_queue_full");
+                throw new BusinessException("同时进行的对话过多，请稍后重试");
+            }
+            waiting.computeIfAbsent(userId, key -> new ArrayDeque<>()).addLast(ticket);
+            queued++;
+        }
+
+        timer.schedule(() -> expire(ticket), properties.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        notifyPositions();
+        return ticket;
+    }
+
+    private boolean canAdmit(String userId) {
+        return active < properties.getMaxConcurrent()
+                && activeByUser.getOrDefault(userId, 0) < properties.getMaxConcurrentPerUser();
+    }
+
+    private void admitLocked(Ticket ticket) {
+        active++;
+        activeByUser.merge(ticket.userId, 1, Integer::sum);
+        ticket.state = Ticket.ADMITTED;
+        waitTimer.record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 对话结束，释放名额并放行排队中的请求
+     */
+    private void release(Ticket ticket) {
+        List<Ticket> admitted;
+        synchronized (lock) {
+            if (ticket.state == Ticket.ADMITTED) {
+                active--;
+                activeByUser.computeIfPresent(ticket.userId, (key, count) -> count > 1 ? count - 1 : null);
+            } else if (ticket.state == Ticket.WAITING) {
+                removeLocked(ticket);
+            }
+            ticket.state = Ticket.RELEASED;
+            admitted = dispatchLocked();
+        }
+        admitted.forEach(next -> next.admitted.complete(null));
+        if (!ticket.admitted.isDone()) {
+            ticket.admitted.completeExceptionally(new CancellationException("已取消排队"));
+        }
+        notifyPositions();
+    }
+
+    /**
+     * 按用户轮转放行，每轮每个用户最多放行一个
+     */
+    private List<Ticket> dispatchLocked() {
+        List<Ticket> admitted = new ArrayList<>();
+        boolean progress = true;
+        while (progress && active < properties.getMaxConcurrent() && !waiting.isEmpty()) {
+            progress = false;
+            for (String userId : new ArrayList<>(waiting.keySet())) {
+                if (active >= properties.getMaxConcurrent()) {
+                    break;
+                }
+                if (!canAdmit(userId)) {
+                    continue;
+                }
+                ArrayDeque<Ticket> userQueue = waiting.remove(userId);
+                Ticket ticket = userQueue.pollFirst();
+                queued--;
+                // 放行后移到队尾，下一个名额优先给其他用户
+                if (!userQueue.isEmpty()) {
+                    waiting.put(userId, userQueue);
+                }
+                admitLocked(ticket);
+                admitted.add(ticket);
+                progress = true;
+            }
+        }
+        return admitted;
+    }
+
+    private void expire(Ticket ticket) {
+        synchronized (lock) {
+            if (ticket.state != Ticket.WAITING) {
+                return;
+            }
+            removeLocked(ticket);
+            ticket.state = Ticket.RELEASED;
+        }
+        reject("timeout");
+        ticket.admitted.completeExceptionally(new BusinessException("排队超时，请稍后重试"));
+        notifyPositions();
+    }
+
+    private void removeLocked(Ticket ticket) {
+        ArrayDeque<Ticket> userQueue = waiting.get(ticket.userId);
+        if (userQueue != null && userQueue.remove(ticket)) {
+            queued--;
+            if (userQueue.isEmpty()) {
+                waiting.remove(ticket.userId);
+            }
+        }
+    }
+
+    /**
+     * 按轮转顺序计算排队位置，位置变化时通知
+     */
+    private void notifyPositions() {
+        List<Ticket> changed = new ArrayList<>();
+        synchronized (lock) {
+            List<Iterator<Ticket>> iterators = new ArrayList<>();
+            waiting.values().forEach(queue -> iterators.add(queue.iterator()));
+            int position = 0;
+            boolean remaining = true;
+            while (remaining) {
+                remaining = false;
+                for (Iterator<Ticket> iterator : iterators) {
+                    if (iterator.hasNext()) {
+                        Ticket ticket = iterator.next();
+                        position++;
+                        remaining = true;
+                        if (ticket.position != position) {
+                            ticket.position = position;
+                            changed.add(ticket);
+                        }
+                    }
+                }
+            }
+        }
+        for (Ticket ticket : changed) {
+            ticket.notifyPosition();
+        }
+    }
+
+    private static void reject(String reason) {
+        Counter.builder("chat.admission.rejected")
+                .description("被拒绝的对话数")
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry)
+                .increment();
+    }
+
+    /**
+     * 准入凭证，对话结束或放弃排队时必须release
+     */
+    public class Ticket {
+
+        static final int WAITING = 0;
+        static final int ADMITTED = 1;
+        static final int RELEASED = 2;
+
+        private final String userId;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final CompletableFuture<Void> admitted = new CompletableFuture<>();
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private int state = WAITING;
+
+        private volatile int position;
+
+        private volatile IntConsumer positionListener;
+
+        Ticket(String userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * 是否已放行
+         */
+        public boolean isAdmitted() {
+            return admitted.isDone() && !admitted.isCompletedExceptionally();
+        }
+
+        /**
+         * 放行时完成；排队超时或取消时异常完成
+         */
+        public CompletableFuture<Void> admission() {
+            return admitted;
+        }
+
+        /**
+         * 排队位置变化回调，注册时立即通知当前位置
+         */
+        public void onPosition(IntConsumer listener) {
+            this.positionListener = listener;
+            notifyPosition();
+        }
+
+        /**
+         * 释放名额或放弃排队，重复调用无副作用
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (!properties.isEnabled()) {
+                return;
+            }
+            ChatAdmissionController.this.release(this);
+        }
+
+        private void notifyPosition() {
+            IntConsumer listener = positionListener;
+            int current = position;
+            if (listener == null || current <= 0 || admitted.isDone()) {
+                return;
+            }
+            try {
+                listener.accept(current);
+            } catch (Exception e) {
+                logger.debug("排队位置通知失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.xiaoguai.agentx.infrastrcture.admission;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+import com.xiaoguai.agentx.infrastrcture.config.ChatDrainProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import com.xiaoguai.agentx.infrastrcture.transport.MessageTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 01:15
+ * @Description: 对话停机排空
+ * 跟踪进行中（含排队中）的对话连接。停机时最先停止：标记为不就绪并拒绝新对话，
+ * 等待进行中的对话在截止时间内自然结束；仍未结束的对话下发重连提示后取消，
+ * 取消走断开连接的流程，已生成的部分回复按截断保存
+ */
+public class ChatDrainController implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatDrainController.class);
+
+    private final ChatDrainProperties properties;
+
+    private final ApplicationEventPublisher publisher;
+
+    private final Set<TrackedTransport<?>> active = ConcurrentHashMap.newKeySet();
+
+    private final Object lock = new Object();
+
+    private volatile boolean running;
+
+    private volatile boolean draining;
+
+    public ChatDrainController(ChatDrainProperties properties, ApplicationEventPublisher publisher) {
+        this.properties = properties;
+        this.publisher = publisher;
+        Gauge.builder("chat.drain.active", active, Set::size)
+                .description("进行中的对话连接数")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 是否正在排空
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public int getActiveStreams() {
+        return active.size();
+    }
+
+    /**
+     * 跟踪一次对话的连接，排空时拒绝新对话
+     *
+     * @param transport 传输对象
+     * @return 对话结束时自动取消跟踪的传输包装
+     */
+    public <T> MessageTransport<T> track(MessageTransport<T> transport) {
+        if (draining) {
+            Counter.builder("chat.admission.rejected")
+                    .description("被拒绝的对话数")
+                    .tag("reason", "draining")
+                    .register(Metrics.globalRegistry)
+                    .increment();
+            throw new BusinessException("服务正在重启，请稍后重试");
+        }
+        TrackedTransport<T> tracked = new TrackedTransport<>(transport);
+        active.add(tracked);
+        return tracked;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * 停机时排空，最多阻塞timeout + abortGrace
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        draining = true;
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+        logger.info("开始排空对话, 进行中: {}", active.size());
+
+        long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+        awaitEmpty(deadline);
+
+        List<TrackedTransport<?>> remaining = new ArrayList<>(active);
+        if (!remaining.isEmpty()) {
+            logger.warn("排空超时，中断剩余对话: {}", remaining.size());
+            Counter.builder("chat.drain.aborted")
+                    .description("停机时被中断的对话数")
+                    .register(Metrics.globalRegistry)
+                    .increment(remaining.size());
+            String reconnectAfter = String.valueOf(properties.getReconnectAfter().toMillis());
+            remaining.forEach(tracked -> tracked.abort(reconnectAfter));
+            // 等待取消回调保存部分回复
+            sleepQuietly(properties.getAbortGrace().toMillis());
+        }
+        running = false;
+        logger.info("对话排空完成");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先停止，早于Web服务器的优雅停机
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    private void awaitEmpty(long deadline) {
+        synchronized (lock) {
+            long remaining;
+            while (!active.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 对话未能开始时取消跟踪
+     */
+    public void untrack(MessageTransport<?> transport) {
+        if (transport instanceof TrackedTransport<?> tracked) {
+            untrack(tracked);
+        }
+    }
+
+    private void untrack(TrackedTransport<?> tracked) {
+        if (active.remove(tracked) && draining) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 被跟踪的对话传输，结束、出错或客户端断开时取消跟踪
+     */
+    private class TrackedTransport<T> implements MessageTransport<T> {
+
+        private final MessageTransport<T> delegate;
+
+        private volatile T connection;
+
+        private final List<Consumer<String>> disconnectCallbacks = new CopyOnWriteArrayList<>();
+
+        TrackedTransport(MessageTransport<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T createConnection(long timeout) {
+            T created = delegate.createConnection(timeout);
+            this.connection = created;
+            return created;
+        }
+
+        @Override
+        public void sendMessage(T connection, AgentChatResponse response) {
+            delegate.sendMessage(connection, response);
+        }
+
+        @Override
+        public void sendEndMessage(T connection, AgentChatResponse response) {
+            try {
+                delegate.sendEndMessage(connection, response);
+            } finally {
+                untrack(this);
+            }
+        }
+
+        @Override
+        public void completeConnection(T connection) {
+            try {
+                delegate.completeConnection(connection);
+            } finally {
+                untrack(this);
+            }
+        }
+
+        @Override
+        public void handleError(T connection, Throwable ex) {
+            try {
+                delegate.handleError(connection, ex);
+            } finally {
+                untrack(this);
+            }
+        }
+
+        @Override
+        public void startReply(T connection, String sessionId, String replyId) {
+            delegate.startReply(connection, sessionId, replyId);
+        }
+
+        @Override
+        public void onDisconnect(T connection, Consumer<String> callback) {
+            this.connection = connection;
+            disconnectCallbacks.add(callback);
+            delegate.onDisconnect(connection, reason -> {
+                untrack(this);
+                callback.accept(reason);
+            });
+        }
+
+        /**
+         * 下发重连提示，按断开流程取消对话并关闭连接
+         */
+        void abort(String reconnectAfter) {
+            untrack(this);
+            T current = connection;
+            if (current == null) {
+                return;
+            }
+            try {
+                delegate.sendMessage(current, AgentChatResponse.buildMessage(reconnectAfter, MessageType.RECONNECT));
+            } catch (Exception e) {
+                logger.debug("重连提示发送失败: {}", e.getMessage());
+            }
+            for (Consumer<String> callback : disconnectCallbacks) {
+                try {
+                    callback.accept(StreamCancellation.REASON_SHUTDOWN);
+                } catch (Exception e) {
+                    logger.debug("对话取消失败: {}", e.getMessage());
+                }
+            }
+            try {
+                delegate.completeConnection(current);
+            } catch (Exception e) {
+                logger.debug("连接关闭失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.xiaoguai.agentx.infrastrcture.auth;
+
+
+import com.xiaoguai.agentx.infrastrcture.utils.JwtUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:40
+ * @Description: WebSocket握手鉴权
+ * 非浏览器客户端通过Authorization请求头携带登录令牌；浏览器先调用票据接口换取一次性票据，通过ticket参数携带，
+ * 登录令牌不放在地址中，避免出现在代理、访问日志与浏览器历史里
+ */
+@Component
+public class WebsocketAuthInterceptor implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebsocketAuthInterceptor.class);
+
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String TICKET_PARAM = "ticket";
+
+    private final WebsocketTicketService ticketService;
+
+    public WebsocketAuthInterceptor(WebsocketTicketService ticketService) {
+        this.ticketService = ticketService;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        try {
+            String userId = resolveUserId(request);
+            if (userId == null) {
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            attributes.put(USER_ID_ATTRIBUTE, userId);
+            return true;
+        } catch (Exception e) {
+            logger.error("WebSocket鉴权失败", e);
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private String resolveUserId(ServerHttpRequest request) {
+        String authorToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(authorToken) && authorToken.startsWith(BEARER_PREFIX)) {
+            String token = authorToken.substring(BEARER_PREFIX.length());
+            return JwtUtils.validateToken(token) ? JwtUtils.getUserIdFromToken(token) : null;
+        }
+        return ticketService.redeem(UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(TICKET_PARAM));
+    }
+}
@@ -0,0 +1,63 @@
+package com.xiaoguai.agentx.infrastrcture.auth;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.WebsocketTransportProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 16:10
+ * @Description: WebSocket握手票据
+ * 浏览器建立WebSocket时无法设置Authorization请求头，先用登录令牌换取一次性票据，握手时通过ticket参数携带；
+ * 票据有效期很短且只能使用一次，出现在访问日志或浏览器历史中也无法再次使用，长期有效的登录令牌不出现在地址中
+ */
+@Component
+public class WebsocketTicketService {
+
+    private final WebsocketTransportProperties properties;
+
+    /**
+     * key: 票据
+     */
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+
+    public WebsocketTicketService(WebsocketTransportProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 签发票据
+     *
+     * @param userId 用户id
+     * @return 票据
+     */
+    public String issue(String userId) {
+        long now = System.nanoTime();
+        tickets.values().removeIf(ticket -> ticket.expiresAt - now < 0);
+        String value = UUID.randomUUID().toString().replace("-", "");
+        tickets.put(value, new Ticket(userId, now + properties.getTicketTtl().toNanos()));
+        return value;
+    }
+
+    /**
+     * 使用票据，使用后失效
+     *
+     * @param value 票据
+     * @return 用户id，票据不存在或已过期时返回null
+     */
+    public String redeem(String value) {
+        Ticket ticket = value == null ? null : tickets.remove(value);
+        if (ticket == null || ticket.expiresAt - System.nanoTime() < 0) {
+            return null;
+        }
+        return ticket.userId;
+    }
+
+    private record Ticket(String userId, long expiresAt) {
+    }
+}
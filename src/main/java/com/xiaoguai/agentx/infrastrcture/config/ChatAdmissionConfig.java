@@ -0,0 +1,23 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.admission.ChatAdmissionController;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 21:40
+ * @Description: 对话准入配置
+ */
+@Configuration
+@EnableConfigurationProperties(ChatAdmissionProperties.class)
+public class ChatAdmissionConfig {
+
+    @Bean
+    public ChatAdmissionController chatAdmissionController(ChatAdmissionProperties properties) {
+        return new ChatAdmissionController(properties);
+    }
+}
@@ -0,0 +1,94 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 21:20
+ * @Description: 对话准入配置，限制单用户与单节点同时进行的对话数，超出时按用户轮转排队
+ */
+@ConfigurationProperties(prefix = "chat.admission")
+public class ChatAdmissionProperties {
+
+    /**
+     * 是否开启准入控制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单节点最大并发对话数
+     */
+    private int maxConcurrent = 200;
+
+    /**
+     * 单用户最大并发对话数
+     */
+    private int maxConcurrentPerUser = 3;
+
+    /**
+     * 单节点最大排队数，超出时直接拒绝
+     */
+    private int maxQueueSize = 1000;
+
+    /**
+     * 单用户最大排队数，超出时直接拒绝
+     */
+    private int maxQueuePerUser = 5;
+
+    /**
+     * 最长排队时间
+     */
+    private Duration maxWait = Duration.ofSeconds(60);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getMaxConcurrentPerUser() {
+        return maxConcurrentPerUser;
+    }
+
+    public void setMaxConcurrentPerUser(int maxConcurrentPerUser) {
+        this.maxConcurrentPerUser = maxConcurrentPerUser;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxQueuePerUser() {
+        return maxQueuePerUser;
+    }
+
+    public void setMaxQueuePerUser(int maxQueuePerUser) {
+        this.maxQueuePerUser = maxQueuePerUser;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+}
@@ -0,0 +1,36 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.admission.ChatDrainController;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 01:10
+ * @Description: 停机排空配置
+ */
+@Configuration
+@EnableConfigurationProperties(ChatDrainProperties.class)
+public class ChatDrainConfig {
+
+    @Bean
+    public ChatDrainController chatDrainController(ChatDrainProperties properties, ApplicationEventPublisher publisher) {
+        return new ChatDrainController(properties, publisher);
+    }
+
+    /**
+     * 就绪探针：排空期间返回OUT_OF_SERVICE，负载均衡不再转发新对话
+     */
+    @Bean
+    public HealthIndicator chatDrainHealthIndicator(ChatDrainController chatDrainController) {
+        return () -> (chatDrainController.isDraining() ? Health.outOfService() : Health.up())
+                .withDetail("activeStreams", chatDrainController.getActiveStreams())
+                .build();
+    }
+}
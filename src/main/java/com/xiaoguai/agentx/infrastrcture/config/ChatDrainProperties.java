@@ -0,0 +1,56 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 01:10
+ * @Description: 停机排空配置，停机时等待进行中的对话结束
+ * timeout需小于spring.lifecycle.timeout-per-shutdown-phase
+ */
+@ConfigurationProperties(prefix = "chat.drain")
+public class ChatDrainProperties {
+
+    /**
+     * 等待进行中对话结束的最长时间，超时后中断剩余对话
+     */
+    private Duration timeout = Duration.ofSeconds(45);
+
+    /**
+     * 中断对话后等待部分回复保存的时间
+     */
+    private Duration abortGrace = Duration.ofSeconds(3);
+
+    /**
+     * 建议客户端重连的等待时间，随重连提示下发
+     */
+    private Duration reconnectAfter = Duration.ofSeconds(3);
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public Duration getAbortGrace() {
+        return abortGrace;
+    }
+
+    public void setAbortGrace(Duration abortGrace) {
+        this.abortGrace = abortGrace;
+    }
+
+    public Duration getReconnectAfter() {
+        return reconnectAfter;
+    }
+
+    public void setReconnectAfter(Duration reconnectAfter) {
+        this.reconnectAfter = reconnectAfter;
+    }
+}
@@ -0,0 +1,16 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:20
+ * @Description: 会话记忆缓存配置
+ */
+@Configuration
+@EnableConfigurationProperties(ChatMemoryCacheProperties.class)
+public class ChatMemoryCacheConfig {
+}
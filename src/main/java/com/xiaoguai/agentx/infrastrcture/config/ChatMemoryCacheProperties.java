@@ -0,0 +1,53 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:20
+ * @Description: 会话记忆缓存配置，缓存最近活跃会话已转换的历史消息
+ */
+@ConfigurationProperties(prefix = "chat.memory.cache")
+public class ChatMemoryCacheProperties {
+
+    /**
+     * 是否启用，关闭时每轮对话重新转换历史消息
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的会话数
+     */
+    private int maxSessions = 1000;
+
+    /**
+     * 所有会话合计最多缓存的消息数
+     */
+    private int maxMessages = 100_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+}
@@ -0,0 +1,16 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:05
+ * @Description: 会话摘要配置
+ */
+@Configuration
+@EnableConfigurationProperties(ContextSummaryProperties.class)
+public class ContextSummaryConfig {
+}
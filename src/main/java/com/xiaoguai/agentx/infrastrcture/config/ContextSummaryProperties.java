@@ -0,0 +1,94 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:05
+ * @Description: 会话摘要配置
+ */
+@ConfigurationProperties(prefix = "chat.summary")
+public class ContextSummaryProperties {
+
+    /**
+     * 是否在对话结束后于后台生成摘要，关闭时在准备对话环境时同步生成
+     */
+    private boolean async = true;
+
+    /**
+     * 活跃消息数达到摘要阈值的该比例时开始后台摘要
+     */
+    private double triggerRatio = 0.8;
+
+    /**
+     * 摘要后保留最新的消息数占摘要阈值的比例，留出余量避免每轮都生成摘要
+     */
+    private double retainRatio = 0.5;
+
+    /**
+     * 注入提示词的摘要token上限
+     */
+    private int maxPromptTokens = 1536;
+
+    /**
+     * 一级摘要片段的token数超过该值时合并为二级摘要，合并结果的目标token数为maxPromptTokens - rollupTokens
+     */
+    private int rollupTokens = 1024;
+
+    /**
+     * 已完成的摘要在内存中的保留时间，供进行中的对话在保存时应用
+     */
+    private Duration retention = Duration.ofMinutes(10);
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public double getTriggerRatio() {
+        return triggerRatio;
+    }
+
+    public void setTriggerRatio(double triggerRatio) {
+        this.triggerRatio = triggerRatio;
+    }
+
+    public double getRetainRatio() {
+        return retainRatio;
+    }
+
+    public void setRetainRatio(double retainRatio) {
+        this.retainRatio = retainRatio;
+    }
+
+    public int getMaxPromptTokens() {
+        return maxPromptTokens;
+    }
+
+    public void setMaxPromptTokens(int maxPromptTokens) {
+        this.maxPromptTokens = maxPromptTokens;
+    }
+
+    public int getRollupTokens() {
+        return rollupTokens;
+    }
+
+    public void setRollupTokens(int rollupTokens) {
+        this.rollupTokens = rollupTokens;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+}
@@ -0,0 +1,21 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.hedge.HedgedStreamingChatModel;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:20
+ * @Description: 对冲请求配置，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties(LlmHedgeProperties.class)
+public class LlmHedgeConfig {
+
+    public LlmHedgeConfig(LlmHedgeProperties properties) {
+        HedgedStreamingChatModel.configure(properties);
+    }
+}
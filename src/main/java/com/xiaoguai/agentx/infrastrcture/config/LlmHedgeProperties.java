@@ -0,0 +1,94 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:20
+ * @Description: 对冲请求配置，主模型首token过慢时向备用模型发起同样的请求
+ */
+@ConfigurationProperties(prefix = "llm.hedge")
+public class LlmHedgeProperties {
+
+    /**
+     * 是否启用，关闭时配置了备用模型也只请求主模型
+     */
+    private boolean enabled = true;
+
+    /**
+     * 触发对冲的首token时间分位数，超过主模型近期该分位的首token时间时发起对冲
+     */
+    private double percentile = 0.95;
+
+    /**
+     * 参与计算分位数的最近样本数
+     */
+    private int window = 200;
+
+    /**
+     * 样本数不足该值时使用默认等待时间
+     */
+    private int minSamples = 20;
+
+    /**
+     * 样本不足时的等待时间
+     */
+    private Duration defaultDelay = Duration.ofSeconds(3);
+
+    /**
+     * 最短等待时间，避免对冲过于频繁
+     */
+    private Duration minDelay = Duration.ofMillis(500);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public Duration getDefaultDelay() {
+        return defaultDelay;
+    }
+
+    public void setDefaultDelay(Duration defaultDelay) {
+        this.defaultDelay = defaultDelay;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(Duration minDelay) {
+        this.minDelay = minDelay;
+    }
+}
@@ -0,0 +1,25 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.knowledge.embedding.KnowledgeEmbeddingExecutor;
+import com.xiaoguai.agentx.infrastrcture.llm.embedding.MessageEmbeddings;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 03:05
+ * @Description: 消息向量配置，向量缓存由MessageEmbeddings静态持有，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties(MessageEmbeddingProperties.class)
+public class MessageEmbeddingConfig {
+
+    public MessageEmbeddingConfig(MessageEmbeddingProperties properties, KnowledgeEmbeddingExecutor embeddingExecutor,
+                                  ExecutorService contextExecutorService) {
+        MessageEmbeddings.configure(properties, embeddingExecutor, contextExecutorService);
+    }
+}
@@ -0,0 +1,66 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 03:05
+ * @Description: 消息向量配置，用于相关性上下文策略
+ */
+@ConfigurationProperties(prefix = "chat.embedding")
+public class MessageEmbeddingProperties {
+
+    /**
+     * 是否计算消息向量，关闭时相关性策略按时间顺序选择历史消息
+     */
+    private boolean enabled = true;
+
+    /**
+     * 进程内缓存的消息向量数
+     */
+    private int cacheSize = 5000;
+
+    /**
+     * 参与相关性选择的历史消息上限，超出的最早消息移出上下文
+     */
+    private int maxCandidates = 500;
+
+    /**
+     * 请求路径上同步补算向量的消息数上限，其余在后台计算，本轮按不相关处理
+     */
+    private int syncEmbedLimit = 32;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    public int getSyncEmbedLimit() {
+        return syncEmbedLimit;
+    }
+
+    public void setSyncEmbedLimit(int syncEmbedLimit) {
+        this.syncEmbedLimit = syncEmbedLimit;
+    }
+}
@@ -0,0 +1,23 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.transport.ChatReplayRegistry;
+import com.xiaoguai.agentx.infrastrcture.transport.SseMessageTransport;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 14:08
+ * @Description: 消息传输配置，传输对象由MessageTransportFactory静态持有，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties({SseCoalesceProperties.class, SseReplayProperties.class, WebsocketTransportProperties.class})
+public class MessageTransportConfig {
+
+    public MessageTransportConfig(SseCoalesceProperties coalesceProperties, SseReplayProperties replayProperties) {
+        SseMessageTransport.configure(coalesceProperties);
+        ChatReplayRegistry.configure(replayProperties);
+    }
+}
@@ -0,0 +1,16 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 19:42
+ * @Description: 消息延迟写入配置
+ */
+@Configuration
+@EnableConfigurationProperties(MessageWriteBehindProperties.class)
+public class MessageWriteBehindConfig {
+}
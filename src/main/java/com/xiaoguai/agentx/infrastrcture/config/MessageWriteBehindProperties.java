@@ -0,0 +1,79 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 19:40
+ * @Description: 消息延迟写入配置，多个会话的消息与上下文合并为一次批量提交
+ */
+@ConfigurationProperties(prefix = "conversation.write-behind")
+public class MessageWriteBehindProperties {
+
+    /**
+     * 是否开启延迟写入，关闭时每次保存立即写库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 刷盘间隔（毫秒）
+     */
+    private long flushIntervalMillis = 50;
+
+    /**
+     * 待写入消息数达到该值时立即刷盘
+     */
+    private int maxBatchSize = 500;
+
+    /**
+     * 批量提交失败后的重试次数，用尽后逐条写入
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 内存中记录已提交窗口序号的会话数上限，超出后淘汰最久未使用的会话，淘汰的会话下次保存时查库
+     */
+    private int trackedSessions = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getTrackedSessions() {
+        return trackedSessions;
+    }
+
+    public void setTrackedSessions(int trackedSessions) {
+        this.trackedSessions = trackedSessions;
+    }
+}
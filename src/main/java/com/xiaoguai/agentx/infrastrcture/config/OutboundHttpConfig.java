@@ -0,0 +1,27 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.http.OutboundHttpPool;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 11:45
+ * @Description: 出站HTTP连接池配置
+ */
+@Configuration
+@EnableConfigurationProperties(OutboundHttpProperties.class)
+public class OutboundHttpConfig {
+
+    /**
+     * 初始化共享连接池并注册连接池指标
+     */
+    @Bean
+    public MeterBinder outboundHttpPoolMetrics(OutboundHttpProperties properties) {
+        return OutboundHttpPool.configure(properties);
+    }
+}
@@ -0,0 +1,110 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 11:02
+ * @Description: 出站HTTP配置，LLM、Embedding、MCP共用同一个连接池
+ * keep-alive、空闲连接池大小与DNS缓存是JVM级配置，在类首次加载时读取一次，不在这里配置，
+ * 通过启动参数设置：-Djdk.httpclient.keepalive.timeout、-Djdk.httpclient.connectionPoolSize、-Dsun.net.inetaddr.ttl
+ */
+@ConfigurationProperties(prefix = "outbound.http")
+public class OutboundHttpProperties {
+
+    /**
+     * 是否优先使用HTTP/2（TLS下通过ALPN协商，不支持时回退HTTP/1.1）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 建立连接超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 读取超时时间（等待响应头）
+     */
+    private Duration readTimeout = Duration.ofSeconds(120);
+
+    /**
+     * 单个host最大并发请求数，HTTP/1.1下等同于最大连接数，HTTP/2下为最大并发流
+     */
+    private int maxConnectionsPerHost = 200;
+
+    /**
+     * 等待连接许可的最长时间
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+
+    /**
+     * HttpClient自身的线程数，只处理非阻塞的连接与分发任务
+     */
+    private int clientThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 同时读取的流式响应数上限，每个打开的流占用一个读取线程，超过时新的流式请求直接失败
+     */
+    private int maxStreamReaders = 512;
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public Duration getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public void setAcquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public int getClientThreads() {
+        return clientThreads;
+    }
+
+    public void setClientThreads(int clientThreads) {
+        this.clientThreads = clientThreads;
+    }
+
+    public int getMaxStreamReaders() {
+        return maxStreamReaders;
+    }
+
+    public void setMaxStreamReaders(int maxStreamReaders) {
+        this.maxStreamReaders = maxStreamReaders;
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.cache.PromptCache;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:20
+ * @Description: 提示词缓存配置，由PromptCache静态持有，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties(PromptCacheProperties.class)
+public class PromptCacheConfig {
+
+    public PromptCacheConfig(PromptCacheProperties properties) {
+        PromptCache.configure(properties);
+    }
+}
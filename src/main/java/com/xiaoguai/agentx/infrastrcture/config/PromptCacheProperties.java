@@ -0,0 +1,55 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:20
+ * @Description: 服务商提示词缓存配置
+ */
+@ConfigurationProperties(prefix = "llm.prompt-cache")
+public class PromptCacheProperties {
+
+    /**
+     * 是否按前缀稳定的顺序组装提示词：系统提示词、工具定义、摘要、历史消息，最后是本轮消息
+     * 关闭时沿用摘要在系统提示词之前的旧顺序
+     */
+    private boolean prefixStable = true;
+
+    /**
+     * 是否在请求中携带缓存路由键，相同Agent的请求路由到同一缓存
+     * 部分OpenAI兼容服务商会拒绝未知参数，默认关闭
+     */
+    private boolean cacheKeyEnabled = false;
+
+    /**
+     * 缓存路由键的请求参数名
+     */
+    private String cacheKeyParameter = "prompt_cache_key";
+
+    public boolean isPrefixStable() {
+        return prefixStable;
+    }
+
+    public void setPrefixStable(boolean prefixStable) {
+        this.prefixStable = prefixStable;
+    }
+
+    public boolean isCacheKeyEnabled() {
+        return cacheKeyEnabled;
+    }
+
+    public void setCacheKeyEnabled(boolean cacheKeyEnabled) {
+        this.cacheKeyEnabled = cacheKeyEnabled;
+    }
+
+    public String getCacheKeyParameter() {
+        return cacheKeyParameter;
+    }
+
+    public void setCacheKeyParameter(String cacheKeyParameter) {
+        this.cacheKeyParameter = cacheKeyParameter;
+    }
+}
@@ -0,0 +1,21 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.ratelimit.ProviderRateLimiterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:30
+ * @Description: 服务商限流配置，限流器由ProviderRateLimiterRegistry静态持有，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties(ProviderRateLimitProperties.class)
+public class ProviderRateLimitConfig {
+
+    public ProviderRateLimitConfig(ProviderRateLimitProperties properties) {
+        ProviderRateLimiterRegistry.configure(properties);
+    }
+}
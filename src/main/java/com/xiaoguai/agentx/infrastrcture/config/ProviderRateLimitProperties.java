@@ -0,0 +1,146 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:05
+ * @Description: 服务商限流配置，按服务商限制每分钟请求数、每分钟token数与并发请求数
+ */
+@ConfigurationProperties(prefix = "llm.rate-limit")
+public class ProviderRateLimitProperties {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的服务商使用的默认限制
+     */
+    private Limit defaults = new Limit(600, 1_000_000, 100, Duration.ofSeconds(5));
+
+    /**
+     * 单独配置的服务商限制，key: 服务商id或服务商名称，未配置的项沿用默认值
+     */
+    private Map<String, Limit> providers = new HashMap<>();
+
+    /**
+     * 获取服务商生效的限制
+     *
+     * @param providerId   服务商id
+     * @param providerName 服务商名称
+     */
+    public Limit resolve(String providerId, String providerName) {
+        Limit limit = providerId == null ? null : providers.get(providerId);
+        if (limit == null && providerName != null) {
+            limit = providers.get(providerName);
+        }
+        if (limit == null) {
+            return defaults;
+        }
+        return new Limit(
+                limit.rpm != null ? limit.rpm : defaults.rpm,
+                limit.tpm != null ? limit.tpm : defaults.tpm,
+                limit.maxConcurrent != null ? limit.maxConcurrent : defaults.maxConcurrent,
+                limit.acquireTimeout != null ? limit.acquireTimeout : defaults.acquireTimeout);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Limit getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Limit defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Limit> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(Map<String, Limit> providers) {
+        this.providers = providers;
+    }
+
+    /**
+     * 单个服务商的限制，0表示不限制
+     */
+    public static class Limit {
+
+        /**
+         * 每分钟请求数
+         */
+        private Integer rpm;
+
+        /**
+         * 每分钟token数（输入+输出）
+         */
+        private Integer tpm;
+
+        /**
+         * 最大并发请求数
+         */
+        private Integer maxConcurrent;
+
+        /**
+         * 等待配额的最长时间，超出后拒绝请求
+         */
+        private Duration acquireTimeout;
+
+        public Limit() {
+        }
+
+        public Limit(Integer rpm, Integer tpm, Integer maxConcurrent, Duration acquireTimeout) {
+            this.rpm = rpm;
+            this.tpm = tpm;
+            this.maxConcurrent = maxConcurrent;
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        public Integer getRpm() {
+            return rpm;
+        }
+
+        public void setRpm(Integer rpm) {
+            this.rpm = rpm;
+        }
+
+        public Integer getTpm() {
+            return tpm;
+        }
+
+        public void setTpm(Integer tpm) {
+            this.tpm = tpm;
+        }
+
+        public Integer getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(Integer maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public Duration getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        public void setAcquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 14:05
+ * @Description: SSE token合帧配置，按时间窗口或字符数合并多个token为一帧发送
+ */
+@ConfigurationProperties(prefix = "transport.sse.coalesce")
+public class SseCoalesceProperties {
+
+    /**
+     * 是否开启合帧，关闭时每个token单独发送一帧
+     */
+    private boolean enabled = true;
+
+    /**
+     * 合帧时间窗口（毫秒），窗口内的token合并为一帧
+     */
+    private long windowMillis = 40;
+
+    /**
+     * 缓冲字符数上限，达到后立即发送
+     */
+    private int maxChars = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    public void setMaxChars(int maxChars) {
+        this.maxChars = maxChars;
+    }
+}
@@ -0,0 +1,94 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 20:10
+ * @Description: SSE断线续传配置，每条回复保留最近发送的帧，客户端可按Last-Event-ID重连续传
+ */
+@ConfigurationProperties(prefix = "transport.sse.replay")
+public class SseReplayProperties {
+
+    /**
+     * 是否开启断线续传
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单条回复最多保留的帧数
+     */
+    private int maxFrames = 4096;
+
+    /**
+     * 单条回复最多保留的字节数
+     */
+    private long maxBytes = 1024 * 1024;
+
+    /**
+     * 回复结束后缓冲区保留时间
+     */
+    private Duration gracePeriod = Duration.ofSeconds(60);
+
+    /**
+     * 缓冲区最长保留时间，回复未正常结束时兜底释放
+     */
+    private Duration maxLifetime = Duration.ofMinutes(10);
+
+    /**
+     * 向连接写出帧的线程数，慢连接只占用写线程，不阻塞生成回调
+     */
+    private int writerThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public void setGracePeriod(Duration gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    public Duration getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(Duration maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+}
@@ -4,6 +4,7 @@ package com.xiaoguai.agentx.infrastrcture.config;
 import com.alibaba.ttl.threadpool.TtlExecutors;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.ExecutorService;
@@ -19,6 +20,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 public class ThreadPoolConfig {
 
     @Bean
+    @Primary
     public ExecutorService contextExecutorService() {
         ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
         // 核心线程数：最重要的参数，即使没有任务需要执行也会一直存活。
@@ -45,4 +47,61 @@ public class ThreadPoolConfig {
         taskExecutor.initialize();
         return TtlExecutors.getTtlExecutorService(taskExecutor.getThreadPoolExecutor());
     }
+
+    /**
+     * 对话环境准备线程池：会话、Agent、工作区、模型、上下文等查询并行执行，
+     * 与通用线程池隔离，避免被长耗时任务占满而拖慢首个token
+     */
+    @Bean
+    public ExecutorService chatPrepareExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        // 每个请求最多同时发起3个查询，核心线程按数据库连接池规模设置
+        taskExecutor.setCorePoolSize(32);
+        taskExecutor.setAllowCoreThreadTimeOut(true);
+        taskExecutor.setMaxPoolSize(128);
+        // 队列较小，积压时尽快扩容线程；仍然满时由调用线程直接执行，退化为串行查询
+        taskExecutor.setQueueCapacity(256);
+        taskExecutor.setKeepAliveSeconds(60);
+        taskExecutor.setThreadNamePrefix("chatPrepare-");
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        taskExecutor.initialize();
+        return TtlExecutors.getTtlExecutorService(taskExecutor.getThreadPoolExecutor());
+    }
+
+    /**
+     * 工具调用线程池：同一步的多个工具调用并行执行，工具调用多为远程IO，
+     * 与通用线程池隔离，避免慢工具占满线程影响消息持久化
+     */
+    @Bean
+    public ExecutorService toolCallExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(16);
+        taskExecutor.setAllowCoreThreadTimeOut(true);
+        taskExecutor.setMaxPoolSize(256);
+        taskExecutor.setQueueCapacity(512);
+        taskExecutor.setKeepAliveSeconds(60);
+        taskExecutor.setThreadNamePrefix("toolCall-");
+        // 提交方是模型响应回调线程，饱和时直接拒绝，由调用方返回繁忙结果
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        taskExecutor.initialize();
+        return TtlExecutors.getTtlExecutorService(taskExecutor.getThreadPoolExecutor());
+    }
+
+    /**
+     * 会话摘要线程池：对话结束后在后台调用模型生成摘要，不占用请求路径。
+     * 同一会话同时只有一个摘要任务，饱和时丢弃，下一轮对话结束后重新调度
+     */
+    @Bean
+    public ExecutorService contextSummaryExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(4);
+        taskExecutor.setAllowCoreThreadTimeOut(true);
+        taskExecutor.setMaxPoolSize(16);
+        taskExecutor.setQueueCapacity(256);
+        taskExecutor.setKeepAliveSeconds(60);
+        taskExecutor.setThreadNamePrefix("contextSummary-");
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        taskExecutor.initialize();
+        return TtlExecutors.getTtlExecutorService(taskExecutor.getThreadPoolExecutor());
+    }
 }
@@ -0,0 +1,21 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:45
+ * @Description: 本地分词器配置，分词器由LocalTokenizer静态持有，这里只负责下发配置
+ */
+@Configuration
+@EnableConfigurationProperties(TokenizerProperties.class)
+public class TokenizerConfig {
+
+    public TokenizerConfig(TokenizerProperties properties) {
+        LocalTokenizer.configure(properties);
+    }
+}
@@ -0,0 +1,40 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:45
+ * @Description: 本地分词器配置
+ */
+@ConfigurationProperties(prefix = "llm.tokenizer")
+public class TokenizerProperties {
+
+    /**
+     * BPE词表：cl100k_base、o200k_base等，o200k_base对中文的切分更接近Qwen等国产模型
+     */
+    private String encoding = "o200k_base";
+
+    /**
+     * 按消息id缓存token数的条数
+     */
+    private int cacheSize = 50_000;
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+}
@@ -0,0 +1,16 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:45
+ * @Description: Agent工具调用配置
+ */
+@Configuration
+@EnableConfigurationProperties(ToolCallProperties.class)
+public class ToolCallConfig {
+}
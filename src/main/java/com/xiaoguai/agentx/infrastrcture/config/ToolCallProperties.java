@@ -0,0 +1,42 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:45
+ * @Description: Agent工具调用配置
+ */
+@ConfigurationProperties(prefix = "chat.tool")
+public class ToolCallProperties {
+
+    /**
+     * 模型一次返回多个工具调用时是否并行执行
+     */
+    private boolean parallel = true;
+
+    /**
+     * 并行执行时同一步所有工具调用的截止时间
+     */
+    private Duration stepTimeout = Duration.ofSeconds(60);
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public Duration getStepTimeout() {
+        return stepTimeout;
+    }
+
+    public void setStepTimeout(Duration stepTimeout) {
+        this.stepTimeout = stepTimeout;
+    }
+}
@@ -8,6 +8,7 @@ import com.xiaoguai.agentx.domain.llm.model.config.LlmModelConfig;
 import com.xiaoguai.agentx.domain.llm.model.config.ProviderConfig;
 import com.xiaoguai.agentx.domain.llm.model.enums.ModelType;
 import com.xiaoguai.agentx.domain.task.constants.TaskStatus;
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
 import com.xiaoguai.agentx.infrastrcture.converter.*;
 import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
 import jakarta.annotation.PostConstruct;
@@ -51,6 +52,7 @@ public class TypeHandlerConfig {
         typeHandlerRegistry.register(Role.class, new RoleConverter());
         typeHandlerRegistry.register(MessageType.class, new MessageTypeConverter());
         typeHandlerRegistry.register(TaskStatus.class, new TaskStatusConverter());
+        typeHandlerRegistry.register(SummaryTree.class, new SummaryTreeConverter());
 
         logger.info("手动注册类型处理器：ProviderConfigConverter");
 
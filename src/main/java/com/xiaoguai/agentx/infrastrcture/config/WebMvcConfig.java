@@ -28,6 +28,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/login", // 登录接口
                         "/register", // 注册接口
                         "/send-email-code", "/verify-email-code", "/get-captcha","/account-available", "/reset-password",
-                        "/send-reset-password-code");
+                        "/send-reset-password-code",
+                        WebsocketConfig.CHAT_WEBSOCKET_PATH); // WebSocket在握手时单独鉴权
     }
 }
@@ -0,0 +1,48 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import com.xiaoguai.agentx.infrastrcture.auth.WebsocketAuthInterceptor;
+import com.xiaoguai.agentx.interfaces.api.portal.agent.PortalAgentChatWebsocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:58
+ * @Description: WebSocket配置
+ */
+@Configuration
+@EnableWebSocket
+public class WebsocketConfig implements WebSocketConfigurer {
+
+    /**
+     * 聊天WebSocket地址
+     */
+    public static final String CHAT_WEBSOCKET_PATH = "/agent/session/ws";
+
+    private final PortalAgentChatWebsocketHandler chatWebsocketHandler;
+    private final WebsocketAuthInterceptor websocketAuthInterceptor;
+    private final WebsocketTransportProperties properties;
+
+    public WebsocketConfig(PortalAgentChatWebsocketHandler chatWebsocketHandler,
+                           WebsocketAuthInterceptor websocketAuthInterceptor,
+                           WebsocketTransportProperties properties) {
+        this.chatWebsocketHandler = chatWebsocketHandler;
+        this.websocketAuthInterceptor = websocketAuthInterceptor;
+        this.properties = properties;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        WebSocketHandlerRegistration registration = registry.addHandler(chatWebsocketHandler, CHAT_WEBSOCKET_PATH)
+                .addInterceptors(websocketAuthInterceptor);
+        // 未配置时使用默认的同源校验
+        if (properties.getAllowedOrigins().length > 0) {
+            registration.setAllowedOriginPatterns(properties.getAllowedOrigins());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.xiaoguai.agentx.infrastrcture.config;
+
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:32
+ * @Description: WebSocket聊天传输配置
+ */
+@ConfigurationProperties(prefix = "transport.websocket")
+public class WebsocketTransportProperties {
+
+    /**
+     * 发送缓冲区高水位（字节），超过后暂停上游token流
+     */
+    private long highWatermark = 256 * 1024;
+
+    /**
+     * 发送缓冲区低水位（字节），写出到此以下后恢复上游
+     */
+    private long lowWatermark = 64 * 1024;
+
+    /**
+     * 上游最长暂停时间，超过后放弃发送
+     */
+    private Duration maxPause = Duration.ofSeconds(30);
+
+    /**
+     * 允许的跨域来源，为空时只允许同源，跨域部署需要显式配置
+     */
+    private String[] allowedOrigins = {};
+
+    /**
+     * 握手票据有效期
+     */
+    private Duration ticketTtl = Duration.ofSeconds(30);
+
+    public long getHighWatermark() {
+        return highWatermark;
+    }
+
+    public void setHighWatermark(long highWatermark) {
+        this.highWatermark = highWatermark;
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public void setLowWatermark(long lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    public Duration getMaxPause() {
+        return maxPause;
+    }
+
+    public void setMaxPause(Duration maxPause) {
+        this.maxPause = maxPause;
+    }
+
+    public String[] getAllowedOrigins() {
+        return allowedOrigins;
+    }
+
+    public void setAllowedOrigins(String[] allowedOrigins) {
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    public Duration getTicketTtl() {
+        return ticketTtl;
+    }
+
+    public void setTicketTtl(Duration ticketTtl) {
+        this.ticketTtl = ticketTtl;
+    }
+}
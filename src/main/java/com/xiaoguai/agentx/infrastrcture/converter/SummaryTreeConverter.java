@@ -0,0 +1,19 @@
+package com.xiaoguai.agentx.infrastrcture.converter;
+
+
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
+import org.apache.ibatis.type.MappedTypes;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 02:40
+ * @Description: 分层摘要转换器
+ */
+@MappedTypes(SummaryTree.class)
+public class SummaryTreeConverter extends JsonToStringConverter<SummaryTree> {
+
+    public SummaryTreeConverter() {
+        super(SummaryTree.class);
+    }
+}
@@ -0,0 +1,225 @@
+package com.xiaoguai.agentx.infrastrcture.http;
+
+
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static dev.langchain4j.http.client.sse.ServerSentEventListenerUtils.ignoringExceptions;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 11:30
+ * @Description: 基于共享连接池的LangChain4j HttpClient
+ * 每个请求在发出前获取host许可，请求/流结束后归还；
+ * 流式请求登记到当前对话的取消令牌，取消时关闭响应流；流式响应体在有上限的读取线程池中读取
+ */
+public class OutboundHttpClient implements HttpClient {
+
+    /**
+     * 读取超时，为空时使用连接池配置
+     */
+    private final Duration readTimeout;
+
+    public OutboundHttpClient(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException {
+        OutboundHttpPool pool = OutboundHttpPool.getInstance();
+        java.net.http.HttpRequest jdkRequest = toJdkRequest(request, pool);
+        OutboundHttpPool.Permit permit = pool.acquire(jdkRequest.uri());
+        try {
+            HttpResponse<String> response = pool.getHttpClient().send(jdkRequest, HttpResponse.BodyHandlers.ofString());
+            if (!isSuccessful(response)) {
+                throw new HttpException(response.statusCode(), response.body());
+            }
+            return fromJdkResponse(response, response.body());
+        } catch (HttpTimeoutException e) {
+            throw new TimeoutException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        OutboundHttpPool pool = OutboundHttpPool.getInstance();
+        StreamCancellation cancellation = StreamCancellation.current();
+        java.net.http.HttpRequest jdkRequest;
+        OutboundHttpPool.Permit permit;
+        try {
+            if (cancellation != null) {
+                // 工具调用后的下一轮请求在取消后不再发出
+                cancellation.throwIfCancelled();
+            }
+            jdkRequest = toJdkRequest(request, pool);
+            permit = pool.acquire(jdkRequest.uri());
+        } catch (Exception e) {
+            ignoringExceptions(() -> listener.onError(e));
+            return;
+        }
+
+        pool.getHttpClient().sendAsync(jdkRequest, HttpResponse.BodyHandlers.ofInputStream())
+                .thenAccept(response -> {
+                    // 响应体是阻塞读取的，交给有上限的读取线程池，不占用HttpClient自身的线程
+                    try {
+                        pool.getStreamExecutor().execute(() -> {
+                            try {
+                                read(response, parser, listener, cancellation);
+                            } finally {
+                                permit.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        closeQuietly(response.body());
+                        permit.release();
+                        ignoringExceptions(() -> listener.onError(new BusinessException("出站流式连接过多，请稍后重试")));
+                    }
+                })
+                .exceptionally(throwable -> {
+                    permit.release();
+                    Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                    if (cause instanceof HttpTimeoutException) {
+                        ignoringExceptions(() -> listener.onError(new TimeoutException(cause)));
+                    } else {
+                        ignoringExceptions(() -> listener.onError(cause));
+                    }
+                    return null;
+                });
+    }
+
+    private static void read(HttpResponse<InputStream> response, ServerSentEventParser parser,
+                             ServerSentEventListener listener, StreamCancellation cancellation) {
+        if (!isSuccessful(response)) {
+            HttpException exception = new HttpException(response.statusCode(), readBody(response));
+            ignoringExceptions(() -> listener.onError(exception));
+            return;
+        }
+        SuccessfulHttpResponse successfulResponse = fromJdkResponse(response, null);
+        ignoringExceptions(() -> listener.onOpen(successfulResponse));
+        if (cancellation == null) {
+            parse(response.body(), parser, listener);
+        } else {
+            // 回调中发起的后续请求（工具调用后的下一轮）需要沿用同一个令牌
+            StreamCancellation.runWith(cancellation, () -> parseCancellable(response.body(), parser, listener, cancellation));
+        }
+    }
+
+    private static void parse(InputStream body, ServerSentEventParser parser, ServerSentEventListener listener) {
+        try (InputStream inputStream = body) {
+            parser.parse(inputStream, listener);
+            ignoringExceptions(listener::onClose);
+        } catch (IOException e) {
+            ignoringExceptions(() -> listener.onError(e));
+        }
+    }
+
+    /**
+     * 取消时关闭响应流并中断读取线程，读取阻塞在等待数据时也能及时退出
+     */
+    private static void parseCancellable(InputStream body, ServerSentEventParser parser,
+                                         ServerSentEventListener listener, StreamCancellation cancellation) {
+        Thread reader = Thread.currentThread();
+        StreamCancellation.Registration registration = cancellation.register(() -> {
+            closeQuietly(body);
+            reader.interrupt();
+        });
+        IOException failure = null;
+        try (InputStream inputStream = body) {
+            parser.parse(inputStream, listener);
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            registration.close();
+            // 清除取消时设置的中断标记，线程归还连接池
+            Thread.interrupted();
+        }
+        if (cancellation.isCancelled()) {
+            ignoringExceptions(() -> listener.onError(new CancellationException("对话已取消: " + cancellation.getReason())));
+        } else if (failure != null) {
+            IOException error = failure;
+            ignoringExceptions(() -> listener.onError(error));
+        } else {
+            ignoringExceptions(listener::onClose);
+        }
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+            // 取消时关闭失败无需处理
+        }
+    }
+
+    private java.net.http.HttpRequest toJdkRequest(HttpRequest request, OutboundHttpPool pool) {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder()
+                .uri(URI.create(request.url()));
+        request.headers().forEach((name, values) -> {
+            if (values != null) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+
+        java.net.http.HttpRequest.BodyPublisher bodyPublisher = request.body() != null
+                ? java.net.http.HttpRequest.BodyPublishers.ofString(request.body())
+                : java.net.http.HttpRequest.BodyPublishers.noBody();
+        builder.method(request.method().name(), bodyPublisher);
+
+        Duration timeout = readTimeout != null ? readTimeout : pool.getProperties().getReadTimeout();
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        return builder.build();
+    }
+
+    private static boolean isSuccessful(HttpResponse<?> response) {
+        int statusCode = response.statusCode();
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    private static SuccessfulHttpResponse fromJdkResponse(HttpResponse<?> response, String body) {
+        HttpHeaders headers = response.headers();
+        return SuccessfulHttpResponse.builder()
+                .statusCode(response.statusCode())
+                .headers(headers.map())
+                .body(body)
+                .build();
+    }
+
+    private static String readBody(HttpResponse<InputStream> response) {
+        try (InputStream inputStream = response.body();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining(System.lineSeparator()));
+        } catch (IOException e) {
+            return "Cannot read error response body: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.xiaoguai.agentx.infrastrcture.http;
+
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+
+import java.time.Duration;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 11:26
+ * @Description: 构建基于共享连接池的HttpClient
+ * 连接超时由连接池统一控制，这里的connectTimeout仅为满足LangChain4j构建器约定
+ */
+public class OutboundHttpClientBuilder implements HttpClientBuilder {
+
+    private Duration connectTimeout;
+
+    private Duration readTimeout;
+
+    @Override
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public OutboundHttpClientBuilder connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return readTimeout;
+    }
+
+    @Override
+    public OutboundHttpClientBuilder readTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return new OutboundHttpClient(readTimeout);
+    }
+}
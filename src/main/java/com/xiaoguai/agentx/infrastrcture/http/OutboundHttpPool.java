@@ -0,0 +1,240 @@
+package com.xiaoguai.agentx.infrastrcture.http;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.OutboundHttpProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 11:10
+ * @Description: 共享出站HTTP连接池
+ * 所有LLM、Embedding请求共用一个JDK HttpClient（HTTP/2多路复用 + keep-alive，保活时间见启动参数），
+ * 并按host限制并发数，暴露占用数与等待时间指标；
+ * 流式响应体阻塞读取，在单独的有上限的线程池中执行，打开的流数量不会让线程无限增长
+ */
+public class OutboundHttpPool implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundHttpPool.class);
+
+    private static volatile OutboundHttpPool instance;
+
+    private final OutboundHttpProperties properties;
+
+    private final HttpClient httpClient;
+
+    private final Map<String, HostPermits> hosts = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    private volatile Timer waitTimer;
+
+    /**
+     * 流式响应读取线程池，有上限，饱和时拒绝
+     */
+    private final ThreadPoolExecutor streamExecutor;
+
+    private OutboundHttpPool(OutboundHttpProperties properties) {
+        this.properties = properties;
+        // HttpClient自身的线程只做非阻塞任务，固定线程数即可
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getClientThreads(), threadFactory("outbound-http-"));
+        this.streamExecutor = new ThreadPoolExecutor(0, properties.getMaxStreamReaders(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory("outbound-stream-"), (task, pool) -> {
+            Metrics.counter("outbound.http.stream.rejected").increment();
+            throw new RejectedExecutionException("出站流式读取线程已满");
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 使用配置初始化连接池，应用启动时调用
+     */
+    public static synchronized OutboundHttpPool configure(OutboundHttpProperties properties) {
+        instance = new OutboundHttpPool(properties);
+        logger.info("出站HTTP连接池初始化完成, http2: {}, 单host最大并发: {}",
+                properties.isHttp2(), properties.getMaxConnectionsPerHost());
+        return instance;
+    }
+
+    /**
+     * 获取连接池，未配置时使用默认配置
+     */
+    public static OutboundHttpPool getInstance() {
+        OutboundHttpPool pool = instance;
+        if (pool == null) {
+            synchronized (OutboundHttpPool.class) {
+                if (instance == null) {
+                    instance = new OutboundHttpPool(new OutboundHttpProperties());
+                }
+                pool = instance;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 创建注入到LangChain4j模型构建器中的HttpClientBuilder
+     */
+    public static HttpClientBuilder httpClientBuilder() {
+        return new OutboundHttpClientBuilder();
+    }
+
+    /**
+     * 获取host的连接许可，超过等待时间则拒绝
+     *
+     * @param uri 请求地址
+     * @return 许可，使用完毕后必须release
+     */
+    public Permit acquire(URI uri) {
+        String host = hostKey(uri);
+        HostPermits permits = hosts.computeIfAbsent(host, this::createHostPermits);
+        long start = System.nanoTime();
+        permits.waiting.incrementAndGet();
+        try {
+            boolean acquired = permits.semaphore.tryAcquire(properties.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                throw new BusinessException("出站连接繁忙，请稍后重试: " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待出站连接被中断: " + host);
+        } finally {
+            permits.waiting.decrementAndGet();
+            Timer timer = waitTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        permits.active.incrementAndGet();
+        return new Permit(permits);
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * 流式响应读取线程池，饱和时抛出RejectedExecutionException
+     */
+    public ExecutorService getStreamExecutor() {
+        return streamExecutor;
+    }
+
+    public OutboundHttpProperties getProperties() {
+        return properties;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        this.waitTimer = Timer.builder("outbound.http.pool.wait")
+                .description("等待出站连接许可的时间")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("outbound.http.stream.active", streamExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在读取的流式响应数")
+                .register(registry);
+        hosts.values().forEach(permits -> registerGauges(registry, permits));
+    }
+
+    private HostPermits createHostPermits(String host) {
+        HostPermits permits = new HostPermits(host, properties.getMaxConnectionsPerHost());
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            registerGauges(registry, permits);
+        }
+        return permits;
+    }
+
+    private void registerGauges(MeterRegistry registry, HostPermits permits) {
+        Gauge.builder("outbound.http.pool.active", permits.active, AtomicInteger::get)
+                .description("正在使用的出站连接数")
+                .tag("host", permits.host)
+                .register(registry);
+        Gauge.builder("outbound.http.pool.pending", permits.waiting, AtomicInteger::get)
+                .description("等待出站连接许可的请求数")
+                .tag("host", permits.host)
+                .register(registry);
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * 单个host的许可
+     */
+    private static class HostPermits {
+
+        private final String host;
+
+        private final Semaphore semaphore;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        HostPermits(String host, int maxConnections) {
+            this.host = host;
+            this.semaphore = new Semaphore(maxConnections, true);
+        }
+    }
+
+    /**
+     * 连接许可，重复释放无副作用
+     */
+    public static class Permit {
+
+        private final HostPermits permits;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(HostPermits permits) {
+            this.permits = permits;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.active.decrementAndGet();
+                permits.semaphore.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.xiaoguai.agentx.infrastrcture.http;
+
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 20:50
+ * @Description: 单轮对话的取消令牌
+ * 对话线程通过runWith绑定令牌，期间发起的出站流式请求会登记到令牌上；
+ * 取消时中断正在读取的响应流，之后发起的请求与工具调用直接失败
+ */
+public class StreamCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamCancellation.class);
+
+    public static final String REASON_DISCONNECT = "disconnect";
+    public static final String REASON_TIMEOUT = "timeout";
+    public static final String REASON_ERROR = "error";
+    public static final String REASON_HEDGE_LOST = "hedge_lost";
+    public static final String REASON_SHUTDOWN = "shutdown";
+    public static final String REASON_OVERFLOW = "overflow";
+
+    private static final ThreadLocal<StreamCancellation> CURRENT = new ThreadLocal<>();
+
+    private static final String FINISHED = "";
+
+    /**
+     * 为空表示进行中，FINISHED表示已正常结束，其余为取消原因
+     */
+    private final AtomicReference<String> state = new AtomicReference<>();
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前线程绑定的令牌
+     */
+    public static StreamCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 绑定令牌执行任务，任务内发起的流式请求可被取消
+     */
+    public static void runWith(StreamCancellation cancellation, Runnable task) {
+        StreamCancellation previous = CURRENT.get();
+        CURRENT.set(cancellation);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 取消对话，已结束或已取消时忽略
+     *
+     * @param reason 取消原因
+     * @return 是否由本次调用取消
+     */
+    public boolean cancel(String reason) {
+        if (!abort(reason)) {
+            return false;
+        }
+        Counter.builder("chat.stream.cancelled")
+                .description("被取消的对话数")
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry)
+                .increment();
+        logger.info("对话已取消, 原因: {}", reason);
+        return true;
+    }
+
+    /**
+     * 由上级令牌传递的取消，上级已计数，这里不再重复记录
+     *
+     * @param reason 取消原因
+     * @return 是否由本次调用取消
+     */
+    public boolean propagate(String reason) {
+        return abort(reason);
+    }
+
+    private boolean abort(String reason) {
+        if (!state.compareAndSet(null, reason)) {
+            return false;
+        }
+        registrations.forEach(Registration::abort);
+        return true;
+    }
+
+    /**
+     * 对话正常结束，之后的取消不再生效
+     */
+    public void finish() {
+        state.compareAndSet(null, FINISHED);
+    }
+
+    public boolean isCancelled() {
+        String current = state.get();
+        return current != null && !FINISHED.equals(current);
+    }
+
+    /**
+     * 取消原因，未取消时为空
+     */
+    public String getReason() {
+        return isCancelled() ? state.get() : null;
+    }
+
+    /**
+     * 已取消时抛出CancellationException
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("对话已取消: " + state.get());
+        }
+    }
+
+    /**
+     * 登记取消动作，已取消时立即执行
+     *
+     * @param abort 取消动作，例如关闭响应流
+     * @return 登记，流结束后必须close
+     */
+    public Registration register(Runnable abort) {
+        Registration registration = new Registration(abort);
+        registrations.add(registration);
+        if (isCancelled()) {
+            registration.abort();
+        }
+        return registration;
+    }
+
+    /**
+     * 取消动作登记，close之后不会再执行
+     */
+    public class Registration implements AutoCloseable {
+
+        private final Runnable abort;
+
+        private boolean closed;
+
+        Registration(Runnable abort) {
+            this.abort = abort;
+        }
+
+        synchronized void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                abort.run();
+            } catch (Exception e) {
+                logger.debug("取消动作执行失败: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            registrations.remove(this);
+        }
+    }
+}
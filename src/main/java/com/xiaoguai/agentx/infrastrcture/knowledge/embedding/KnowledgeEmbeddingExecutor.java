@@ -3,6 +3,7 @@ package com.xiaoguai.agentx.infrastrcture.knowledge.embedding;
 
 import com.xiaoguai.agentx.infrastrcture.config.KnowledgeEmbeddingProperties;
 import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.OutboundHttpPool;
 import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
@@ -53,7 +54,8 @@ public class KnowledgeEmbeddingExecutor {
         }
         OpenAiEmbeddingModel.OpenAiEmbeddingModelBuilder builder = OpenAiEmbeddingModel.builder()
                 .apiKey(properties.getApiKey())
-                .modelName(properties.getModel());
+                .modelName(properties.getModel())
+                .httpClientBuilder(OutboundHttpPool.httpClientBuilder());
         if (properties.getBaseUrl() != null && !properties.getBaseUrl().isEmpty()) {
             builder.baseUrl(properties.getBaseUrl());
         }
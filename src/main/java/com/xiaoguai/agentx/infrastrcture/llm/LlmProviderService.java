@@ -1,10 +1,16 @@
 package com.xiaoguai.agentx.infrastrcture.llm;
 
 
+import com.xiaoguai.agentx.domain.llm.model.ProviderEntity;
 import com.xiaoguai.agentx.domain.llm.model.config.ProviderConfig;
 import com.xiaoguai.agentx.infrastrcture.llm.config.BaseProviderConfig;
 import com.xiaoguai.agentx.infrastrcture.llm.factory.LlmProviderFactory;
 import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
+import com.xiaoguai.agentx.infrastrcture.llm.ratelimit.ProviderLimiter;
+import com.xiaoguai.agentx.infrastrcture.llm.ratelimit.ProviderRateLimiterRegistry;
+import com.xiaoguai.agentx.infrastrcture.llm.ratelimit.RateLimitedStreamingChatModel;
+import com.xiaoguai.agentx.infrastrcture.llm.registry.LlmModelKey;
+import com.xiaoguai.agentx.infrastrcture.llm.registry.LlmModelRegistry;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 
@@ -18,30 +24,75 @@ public class LlmProviderService {
 
 
     /**
-     * 获取普通聊天模型
+     * 获取普通聊天模型，相同配置复用注册表中的模型
      * @param protocol 服务商协议
      * @param providerConfig 服务商配置
      */
     public static ChatModel getChatModel(ProviderProtocol protocol, ProviderConfig providerConfig) {
-        BaseProviderConfig config = new BaseProviderConfig();
-        config.setApiKey(providerConfig.getApiKey());
-        config.setBaseUrl(providerConfig.getBaseUrl());
-        config.setModel(providerConfig.getModel());
-
-        return LlmProviderFactory.createChatModel(protocol, config);
+        BaseProviderConfig config = toBaseConfig(providerConfig);
+        return LlmModelRegistry.getChatModel(toModelKey(protocol, config),
+                () -> LlmProviderFactory.createChatModel(protocol, config));
     }
 
     /**
-     * 获取流式输出模型
+     * 获取流式输出模型，相同配置复用注册表中的模型
      * @param protocol 服务商协议
      * @param providerConfig 服务商配置
      */
     public static StreamingChatModel getStreamModel(ProviderProtocol protocol, ProviderConfig providerConfig) {
+        BaseProviderConfig config = toBaseConfig(providerConfig);
+        return LlmModelRegistry.getStreamModel(toModelKey(protocol, config),
+                () -> LlmProviderFactory.createStreamChatModel(protocol, config));
+    }
+
+    /**
+     * 获取带服务商限流的流式输出模型，每次请求前按服务商的RPM/TPM与并发限制获取配额
+     * @param provider 服务商
+     */
+    public static StreamingChatModel getStreamModel(ProviderEntity provider) {
+        StreamingChatModel model = getStreamModel(provider.getProtocol(), provider.getConfig());
+        ProviderLimiter limiter = ProviderRateLimiterRegistry.get(provider.getId(), provider.getName());
+        return limiter == null ? model : new RateLimitedStreamingChatModel(model, limiter);
+    }
+
+    /**
+     * 获取服务商下指定模型的流式输出模型，带服务商限流
+     * @param provider 服务商
+     * @param modelId 模型id
+     */
+    public static StreamingChatModel getStreamModel(ProviderEntity provider, String modelId) {
+        ProviderConfig config = provider.getConfig();
+        ProviderConfig modelConfig = new ProviderConfig();
+        modelConfig.setApiKey(config.getApiKey());
+        modelConfig.setBaseUrl(config.getBaseUrl());
+        modelConfig.setProtocol(provider.getProtocol());
+        modelConfig.setModel(modelId);
+        StreamingChatModel model = getStreamModel(provider.getProtocol(), modelConfig);
+        ProviderLimiter limiter = ProviderRateLimiterRegistry.get(provider.getId(), provider.getName());
+        return limiter == null ? model : new RateLimitedStreamingChatModel(model, limiter);
+    }
+
+    /**
+     * 服务商配置变更，失效已缓存的模型
+     * @param protocol 服务商协议
+     * @param providerConfig 变更前的服务商配置
+     */
+    public static void invalidate(ProviderProtocol protocol, ProviderConfig providerConfig) {
+        if (protocol == null || providerConfig == null) {
+            return;
+        }
+        LlmModelRegistry.invalidate(protocol, providerConfig.getBaseUrl(), providerConfig.getApiKey());
+    }
+
+    private static BaseProviderConfig toBaseConfig(ProviderConfig providerConfig) {
         BaseProviderConfig config = new BaseProviderConfig();
         config.setApiKey(providerConfig.getApiKey());
         config.setBaseUrl(providerConfig.getBaseUrl());
         config.setModel(providerConfig.getModel());
+        return config;
+    }
 
-        return LlmProviderFactory.createStreamChatModel(protocol, config);
+    private static LlmModelKey toModelKey(ProviderProtocol protocol, BaseProviderConfig config) {
+        return new LlmModelKey(protocol, config.getBaseUrl(), config.getApiKey(), config.getModel());
     }
 }
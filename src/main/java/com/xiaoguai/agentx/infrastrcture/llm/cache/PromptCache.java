@@ -0,0 +1,86 @@
+package com.xiaoguai.agentx.infrastrcture.llm.cache;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.PromptCacheProperties;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.openai.OpenAiChatRequestParameters;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:25
+ * @Description: 服务商提示词缓存
+ * 服务商按请求前缀命中缓存，前缀中任何位置的变化都会使其后的内容失效。
+ * 这里固定工具定义的顺序，按配置携带缓存路由键，并读取服务商返回的缓存命中token数
+ */
+public class PromptCache {
+
+    private static volatile PromptCacheProperties properties = new PromptCacheProperties();
+
+    public static void configure(PromptCacheProperties properties) {
+        PromptCache.properties = properties;
+    }
+
+    /**
+     * 是否按前缀稳定的顺序组装提示词
+     */
+    public static boolean isPrefixStable() {
+        return properties.isPrefixStable();
+    }
+
+    /**
+     * 请求转换：工具定义按名称排序，启用时附加缓存路由键
+     * 工具由HashMap收集，顺序不固定，不排序时同样的工具也可能导致前缀不同
+     *
+     * @param cacheKey 缓存路由键，共享相同前缀的请求使用同一个键
+     */
+    public static UnaryOperator<ChatRequest> requestTransformer(String cacheKey) {
+        return request -> {
+            PromptCacheProperties current = properties;
+            if (!current.isPrefixStable() && !current.isCacheKeyEnabled()) {
+                return request;
+            }
+            ChatRequestParameters parameters = request.parameters();
+            OpenAiChatRequestParameters.Builder builder = OpenAiChatRequestParameters.builder().overrideWith(parameters);
+            List<ToolSpecification> tools = parameters.toolSpecifications();
+            if (current.isPrefixStable() && tools != null && tools.size() > 1) {
+                builder.toolSpecifications(tools.stream()
+                        .sorted(Comparator.comparing(ToolSpecification::name))
+                        .toList());
+            }
+            if (current.isCacheKeyEnabled() && cacheKey != null) {
+                Map<String, Object> customParameters = new HashMap<>();
+                if (parameters instanceof OpenAiChatRequestParameters openAiParameters
+                        && openAiParameters.customParameters() != null) {
+                    customParameters.putAll(openAiParameters.customParameters());
+                }
+                customParameters.put(current.getCacheKeyParameter(), cacheKey);
+                builder.customParameters(customParameters);
+            }
+            return ChatRequest.builder()
+                    .messages(request.messages())
+                    .parameters(builder.build())
+                    .build();
+        };
+    }
+
+    /**
+     * 服务商返回的缓存命中token数，服务商未返回时为null
+     */
+    public static Integer cachedTokens(TokenUsage tokenUsage) {
+        if (tokenUsage instanceof OpenAiTokenUsage openAiUsage && openAiUsage.inputTokensDetails() != null) {
+            return openAiUsage.inputTokensDetails().cachedTokens();
+        }
+        return null;
+    }
+}
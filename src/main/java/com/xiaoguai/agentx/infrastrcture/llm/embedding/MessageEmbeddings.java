@@ -0,0 +1,214 @@
+package com.xiaoguai.agentx.infrastrcture.llm.embedding;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.MessageEmbeddingProperties;
+import com.xiaoguai.agentx.infrastrcture.knowledge.embedding.KnowledgeEmbeddingExecutor;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 03:05
+ * @Description: 消息向量缓存
+ * 消息保存时在后台计算向量并归一化，按消息id缓存在进程内，相似度直接在进程内计算；
+ * 内容变化时重新计算。最近的查询向量按文本暂存，保存同一条用户消息时不再重复计算
+ */
+public class MessageEmbeddings {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageEmbeddings.class);
+
+    private static final int RECENT_QUERY_SIZE = 256;
+
+    private static volatile MessageEmbeddingProperties properties = new MessageEmbeddingProperties();
+
+    private static volatile KnowledgeEmbeddingExecutor embeddingExecutor;
+
+    private static volatile ExecutorService executor;
+
+    /**
+     * key: 消息id，按访问顺序淘汰
+     */
+    private static final Map<String, CachedEmbedding> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedEmbedding> eldest) {
+            return size() > properties.getCacheSize();
+        }
+    };
+
+    /**
+     * 最近的查询向量，key: 查询文本
+     */
+    private static final Map<String, float[]> RECENT_QUERIES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+            return size() > RECENT_QUERY_SIZE;
+        }
+    };
+
+    public static void configure(MessageEmbeddingProperties properties, KnowledgeEmbeddingExecutor embeddingExecutor,
+                                 ExecutorService executor) {
+        MessageEmbeddings.properties = properties;
+        MessageEmbeddings.embeddingExecutor = embeddingExecutor;
+        MessageEmbeddings.executor = executor;
+    }
+
+    public static boolean isEnabled() {
+        return properties.isEnabled() && embeddingExecutor != null;
+    }
+
+    public static int maxCandidates() {
+        return properties.getMaxCandidates();
+    }
+
+    /**
+     * 计算查询向量，未启用或计算失败时返回null
+     */
+    public static float[] embedQuery(String text) {
+        if (!isEnabled() || text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            float[] vector = embed(List.of(text)).get(0);
+            synchronized (RECENT_QUERIES) {
+                RECENT_QUERIES.put(text, vector);
+            }
+            return vector;
+        } catch (Exception e) {
+            logger.warn("查询向量计算失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取消息向量，缺失的消息最多同步计算syncEmbedLimit条，其余在后台计算
+     *
+     * @param contents key: 消息id，value: 消息内容，越靠前越优先同步计算
+     * @return key: 消息id，只包含已有向量的消息
+     */
+    public static Map<String, float[]> lookup(Map<String, String> contents) {
+        Map<String, float[]> found = new HashMap<>(contents.size() * 2);
+        if (!isEnabled()) {
+            return found;
+        }
+        Map<String, String> missing = new LinkedHashMap<>();
+        synchronized (CACHE) {
+            contents.forEach((id, content) -> {
+                CachedEmbedding cached = CACHE.get(id);
+                if (cached != null && cached.contentHash == hash(content)) {
+                    found.put(id, cached.vector);
+                } else {
+                    missing.put(id, content);
+                }
+            });
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        Map<String, String> now = new LinkedHashMap<>();
+        Map<String, String> later = new LinkedHashMap<>();
+        missing.forEach((id, content) -> (now.size() < properties.getSyncEmbedLimit() ? now : later).put(id, content));
+        try {
+            found.putAll(compute(now));
+        } catch (Exception e) {
+            logger.warn("消息向量计算失败: {}", e.getMessage());
+        }
+        embedAsync(later);
+        return found;
+    }
+
+    /**
+     * 在后台计算并缓存消息向量
+     *
+     * @param contents key: 消息id，value: 消息内容
+     */
+    public static void embedAsync(Map<String, String> contents) {
+        if (!isEnabled() || contents.isEmpty() || executor == null) {
+            return;
+        }
+        Map<String, String> pending = new LinkedHashMap<>(contents);
+        try {
+            executor.execute(() -> {
+                try {
+                    compute(pending);
+                } catch (Exception e) {
+                    logger.warn("消息向量计算失败, 条数: {}, {}", pending.size(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("消息向量计算任务被拒绝, 条数: {}", pending.size());
+        }
+    }
+
+    /**
+     * 余弦相似度，向量已归一化，维度不一致时返回0
+     */
+    public static double similarity(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    /**
+     * 计算并缓存向量，最近的查询向量直接复用
+     */
+    private static Map<String, float[]> compute(Map<String, String> contents) {
+        Map<String, float[]> vectors = new HashMap<>(contents.size() * 2);
+        List<String> ids = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        synchronized (RECENT_QUERIES) {
+            contents.forEach((id, content) -> {
+                float[] query = content == null ? null : RECENT_QUERIES.get(content);
+                if (query != null) {
+                    vectors.put(id, query);
+                } else if (content != null && !content.isBlank()) {
+                    ids.add(id);
+                    texts.add(content);
+                }
+            });
+        }
+        if (!texts.isEmpty()) {
+            List<float[]> embedded = embed(texts);
+            for (int i = 0; i < ids.size(); i++) {
+                vectors.put(ids.get(i), embedded.get(i));
+            }
+        }
+        synchronized (CACHE) {
+            vectors.forEach((id, vector) -> CACHE.put(id, new CachedEmbedding(hash(contents.get(id)), vector)));
+        }
+        return vectors;
+    }
+
+    private static List<float[]> embed(List<String> texts) {
+        List<Embedding> embeddings = embeddingExecutor.embedAll(texts.stream().map(TextSegment::from).toList());
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            Embedding normalized = Embedding.from(embedding.vector().clone());
+            normalized.normalize();
+            vectors.add(normalized.vector());
+        }
+        return vectors;
+    }
+
+    private static int hash(String content) {
+        return content == null ? 0 : content.hashCode();
+    }
+
+    private record CachedEmbedding(int contentHash, float[] vector) {
+    }
+}
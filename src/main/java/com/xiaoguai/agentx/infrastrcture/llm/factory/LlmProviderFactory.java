@@ -2,6 +2,7 @@ package com.xiaoguai.agentx.infrastrcture.llm.factory;
 
 
 import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.OutboundHttpPool;
 import com.xiaoguai.agentx.infrastrcture.llm.config.BaseProviderConfig;
 import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
 import dev.langchain4j.model.chat.ChatModel;
@@ -28,6 +29,7 @@ public class LlmProviderFactory {
                         .apiKey(config.getApiKey()) // APIKEY
                         .baseUrl(config.getBaseUrl())
                         .modelName(config.getModel())
+                        .httpClientBuilder(OutboundHttpPool.httpClientBuilder())
                         .build();
             }
             default -> {
@@ -50,6 +52,7 @@ public class LlmProviderFactory {
                         .baseUrl(config.getBaseUrl())
                         .modelName(config.getModel())
                         .apiKey(config.getApiKey())
+                        .httpClientBuilder(OutboundHttpPool.httpClientBuilder())
                         .build();
             }
             default -> {
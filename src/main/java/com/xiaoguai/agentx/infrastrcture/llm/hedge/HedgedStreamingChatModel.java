@@ -0,0 +1,385 @@
+package com.xiaoguai.agentx.infrastrcture.llm.hedge;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.LlmHedgeProperties;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:30
+ * @Description: 对冲请求模型
+ * 先请求主模型，主模型在近期首token时间的指定分位内没有输出时，向备用模型发起同样的请求；
+ * 先产生输出的一方胜出，另一方被取消，只有胜出方的输出交给上层处理与保存。
+ * 主模型在输出前失败时立即切换到备用模型
+ */
+public class HedgedStreamingChatModel implements StreamingChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedStreamingChatModel.class);
+
+    private static final int NONE = 0;
+    private static final int PRIMARY = 1;
+    private static final int SECONDARY = 2;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "llm-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * key: 服务商id/模型id
+     */
+    private static final Map<String, TtftTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    private static volatile LlmHedgeProperties properties = new LlmHedgeProperties();
+
+    private final StreamingChatModel primary;
+
+    private final String primaryKey;
+
+    private final StreamingChatModel secondary;
+
+    private final String secondaryKey;
+
+    private HedgedStreamingChatModel(StreamingChatModel primary, String primaryKey,
+                                     StreamingChatModel secondary, String secondaryKey) {
+        this.primary = primary;
+        this.primaryKey = primaryKey;
+        this.secondary = secondary;
+        this.secondaryKey = secondaryKey;
+    }
+
+    public static void configure(LlmHedgeProperties hedgeProperties) {
+        properties = hedgeProperties;
+        TRACKERS.clear();
+    }
+
+    /**
+     * 组合主模型与备用模型，未启用对冲或没有备用模型时返回主模型
+     *
+     * @param primaryKey   主模型标识，服务商id/模型id
+     * @param secondaryKey 备用模型标识，服务商id/模型id
+     */
+    public static StreamingChatModel of(StreamingChatModel primary, String primaryKey,
+                                        StreamingChatModel secondary, String secondaryKey) {
+        if (!properties.isEnabled() || secondary == null || primaryKey.equals(secondaryKey)) {
+            return primary;
+        }
+        return new HedgedStreamingChatModel(primary, primaryKey, secondary, secondaryKey);
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new Race(chatRequest, handler).start();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return primary.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary.supportedCapabilities();
+    }
+
+    private static TtftTracker tracker(String key) {
+        return TRACKERS.computeIfAbsent(key, k -> new TtftTracker(properties.getWindow()));
+    }
+
+    /**
+     * 对冲等待时间：主模型近期首token时间的分位数，样本不足时使用默认值
+     */
+    private long hedgeDelayNanos() {
+        LlmHedgeProperties current = properties;
+        long delay = tracker(primaryKey).percentile(current.getPercentile(), current.getMinSamples());
+        if (delay < 0) {
+            delay = current.getDefaultDelay().toNanos();
+        }
+        return Math.max(delay, current.getMinDelay().toNanos());
+    }
+
+    private void count(String name, String tagKey, String tagValue) {
+        Counter.builder(name)
+                .tag("model", primaryKey)
+                .tag(tagKey, tagValue)
+                .register(Metrics.globalRegistry)
+                .increment();
+    }
+
+    /**
+     * 一次请求的主备竞争
+     */
+    private class Race {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        /**
+         * 对话的取消令牌，回调在该令牌下执行，工具调用后的后续请求沿用
+         */
+        private final StreamCancellation parent = StreamCancellation.current();
+
+        private final AtomicInteger winner = new AtomicInteger(NONE);
+
+        private final AtomicBoolean hedged = new AtomicBoolean(false);
+
+        private final Leg primaryLeg;
+
+        private final Leg secondaryLeg;
+
+        private volatile ScheduledFuture<?> hedgeTimer;
+
+        Race(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+            this.primaryLeg = new Leg(this, PRIMARY, primary, primaryKey);
+            this.secondaryLeg = new Leg(this, SECONDARY, secondary, secondaryKey);
+        }
+
+        void start() {
+            primaryLeg.start();
+            if (winner.get() == NONE && !primaryLeg.failed) {
+                hedgeTimer = SCHEDULER.schedule(() -> hedge("latency"), hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 发起备用请求
+         *
+         * @param trigger latency: 首token超时；failover: 主模型失败
+         */
+        void hedge(String trigger) {
+            // 与claim在同一把锁下决定：要么胜出方已产生，不再对冲；要么胜出方能看到已对冲并取消备用请求
+            synchronized (this) {
+                if (winner.get() != NONE || isParentCancelled() || !hedged.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            count("llm.hedge.fired", "trigger", trigger);
+            logger.info("发起对冲请求, 原因: {}, 主模型: {}, 备用模型: {}", trigger, primaryKey, secondaryKey);
+            secondaryLeg.start();
+        }
+
+        /**
+         * 产生输出时争夺胜出，胜出后取消另一方
+         *
+         * @return 该方是否为胜出方
+         */
+        boolean claim(Leg leg) {
+            if (winner.get() == leg.id) {
+                return true;
+            }
+            boolean raced;
+            synchronized (this) {
+                if (!winner.compareAndSet(NONE, leg.id)) {
+                    return false;
+                }
+                raced = hedged.get();
+            }
+            ScheduledFuture<?> timer = hedgeTimer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (raced) {
+                count("llm.hedge.won", "leg", leg.id == PRIMARY ? "primary" : "secondary");
+                Leg loser = leg == primaryLeg ? secondaryLeg : primaryLeg;
+                // 落败的主模型按已等待时间计入样本，避免慢请求被取消后分位数偏低
+                if (loser == primaryLeg && !loser.firstOutput) {
+                    tracker(primaryKey).record(System.nanoTime() - loser.startNanos);
+                }
+                // 备用请求可能尚未发出，令牌先取消后发出的请求会直接失败；对冲落败不计入对话取消次数
+                loser.cancellation.propagate(StreamCancellation.REASON_HEDGE_LOST);
+            }
+            return true;
+        }
+
+        void onError(Leg leg, Throwable error) {
+            int current = winner.get();
+            if (current == leg.id) {
+                deliver(() -> handler.onError(error));
+                return;
+            }
+            if (current != NONE) {
+                // 落败方被取消产生的错误
+                return;
+            }
+            Leg other = leg == primaryLeg ? secondaryLeg : primaryLeg;
+            boolean deliverError;
+            synchronized (this) {
+                leg.failed = true;
+                deliverError = isParentCancelled() || other.failed || (leg == secondaryLeg && primaryLeg.finished);
+            }
+            if (deliverError) {
+                deliver(() -> handler.onError(error));
+            } else if (leg == primaryLeg && !hedged.get()) {
+                // 主模型在输出前失败，立即切换备用模型
+                ScheduledFuture<?> timer = hedgeTimer;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                hedge("failover");
+                if (!hedged.get()) {
+                    deliver(() -> handler.onError(error));
+                }
+            }
+        }
+
+        boolean isParentCancelled() {
+            return parent != null && parent.isCancelled();
+        }
+
+        /**
+         * 在对话令牌下回调上层
+         */
+        void deliver(Runnable callback) {
+            if (parent == null) {
+                callback.run();
+            } else {
+                StreamCancellation.runWith(parent, callback);
+            }
+        }
+    }
+
+    /**
+     * 主备请求中的一方
+     */
+    private static class Leg implements StreamingChatResponseHandler {
+
+        private final Race race;
+
+        private final int id;
+
+        private final StreamingChatModel model;
+
+        private final String key;
+
+        private final StreamCancellation cancellation = new StreamCancellation();
+
+        private StreamCancellation.Registration parentRegistration;
+
+        private volatile long startNanos;
+
+        private volatile boolean firstOutput;
+
+        private volatile boolean failed;
+
+        private volatile boolean finished;
+
+        Leg(Race race, int id, StreamingChatModel model, String key) {
+            this.race = race;
+            this.id = id;
+            this.model = model;
+            this.key = key;
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            StreamCancellation parent = race.parent;
+            if (parent != null) {
+                parentRegistration = parent.register(() -> cancellation.propagate(parent.getReason()));
+            }
+            try {
+                StreamCancellation.runWith(cancellation, () -> model.chat(race.chatRequest, this));
+            } catch (RuntimeException e) {
+                onError(e);
+            }
+        }
+
+        private boolean accept() {
+            if (!firstOutput) {
+                firstOutput = true;
+                tracker(key).record(System.nanoTime() - startNanos);
+            }
+            return race.claim(this);
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (accept()) {
+                race.deliver(() -> race.handler.onPartialResponse(partialResponse));
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            if (accept()) {
+                race.deliver(() -> race.handler.onPartialThinking(partialThinking));
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            if (accept()) {
+                race.deliver(() -> race.handler.onPartialToolCall(partialToolCall));
+            }
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            if (accept()) {
+                race.deliver(() -> race.handler.onCompleteToolCall(completeToolCall));
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            finish();
+            if (accept()) {
+                race.deliver(() -> race.handler.onCompleteResponse(completeResponse));
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            finish();
+            race.onError(this, error);
+        }
+
+        private void finish() {
+            finished = true;
+            cancellation.finish();
+            if (parentRegistration != null) {
+                parentRegistration.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.xiaoguai.agentx.infrastrcture.llm.hedge;
+
+
+import java.util.Arrays;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-19 00:25
+ * @Description: 单个模型最近若干次请求的首token时间，用于计算对冲等待时间
+ */
+class TtftTracker {
+
+    private final long[] samples;
+
+    private int size;
+
+    private int next;
+
+    TtftTracker(int window) {
+        this.samples = new long[Math.max(window, 1)];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param percentile 分位，0-1
+     * @param minSamples 最少样本数
+     * @return 分位数(纳秒)，样本不足时返回-1
+     */
+    synchronized long percentile(double percentile, int minSamples) {
+        if (size == 0 || size < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return sorted[Math.min(Math.max(index, 0), size - 1)];
+    }
+}
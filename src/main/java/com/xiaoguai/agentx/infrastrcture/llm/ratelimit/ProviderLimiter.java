@@ -0,0 +1,279 @@
+package com.xiaoguai.agentx.infrastrcture.llm.ratelimit;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.ProviderRateLimitProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:15
+ * @Description: 单个服务商的限流器
+ * 请求前按RPM/TPM预约配额，再获取并发许可（舱壁），避免一个慢服务商占满所有出站容量；
+ * 配额不足时由定时线程在到期后完成许可，不占用HTTP读取线程与对冲调度线程；
+ * 请求结束后按实际token用量修正TPM配额
+ */
+public class ProviderLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderLimiter.class);
+
+    /**
+     * 配额等待与超时定时器，只做调度，不执行模型调用
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "llm-throttle-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static final String REASON_RPM = "rpm";
+    public static final String REASON_TPM = "tpm";
+    public static final String REASON_BULKHEAD = "bulkhead";
+    public static final String REASON_UPSTREAM = "upstream";
+
+    private final String providerId;
+
+    private final TokenBucket requests;
+
+    private final TokenBucket tokens;
+
+    /**
+     * 舱壁：进行中的请求数与等待许可的请求，均由waiters加锁保护
+     */
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private int inflight;
+
+    private final int maxConcurrent;
+
+    private final long acquireTimeoutNanos;
+
+    private final Timer waitTimer;
+
+    ProviderLimiter(String providerId, ProviderRateLimitProperties.Limit limit) {
+        this.providerId = providerId;
+        this.requests = limit.getRpm() > 0 ? new TokenBucket(limit.getRpm()) : null;
+        this.tokens = limit.getTpm() > 0 ? new TokenBucket(limit.getTpm()) : null;
+        this.maxConcurrent = limit.getMaxConcurrent();
+        this.acquireTimeoutNanos = limit.getAcquireTimeout().toNanos();
+        this.waitTimer = Timer.builder("llm.provider.throttle.wait")
+                .description("等待服务商配额的时间")
+                .tag("provider", providerId)
+                .register(Metrics.globalRegistry);
+        if (maxConcurrent > 0) {
+            Gauge.builder("llm.provider.inflight", this, limiter -> limiter.inflight())
+                    .description("服务商进行中的请求数")
+                    .tag("provider", providerId)
+                    .register(Metrics.globalRegistry);
+        }
+    }
+
+    /**
+     * 获取请求配额，配额不足时不阻塞调用线程，在调度线程上等待到期后再完成
+     *
+     * @param estimatedTokens 预估token数
+     * @param cancellation    本轮对话的取消令牌，取消后放弃等待并退还配额，可为空
+     * @return 请求许可，请求结束后必须release；等待超时以BusinessException失败，取消以CancellationException失败
+     */
+    public CompletableFuture<Permit> acquire(long estimatedTokens, StreamCancellation cancellation) {
+        long start = System.nanoTime();
+        long requestWait = requests == null ? 0 : requests.reserve(1, acquireTimeoutNanos);
+        if (requestWait < 0) {
+            return CompletableFuture.failedFuture(throttled(REASON_RPM));
+        }
+        long tokenWait = tokens == null ? 0 : tokens.reserve(estimatedTokens, acquireTimeoutNanos);
+        if (tokenWait < 0) {
+            refund(1, 0);
+            return CompletableFuture.failedFuture(throttled(REASON_TPM));
+        }
+
+        Waiter waiter = new Waiter(new Permit(estimatedTokens), start + acquireTimeoutNanos);
+        StreamCancellation.Registration registration = cancellation == null ? null
+                : cancellation.register(() -> waiter.future.completeExceptionally(
+                new CancellationException("对话已取消: " + cancellation.getReason())));
+        waiter.future.whenComplete((permit, error) -> {
+            if (registration != null) {
+                registration.close();
+            }
+            if (error != null) {
+                abandon(waiter);
+            }
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+
+        long wait = Math.max(requestWait, tokenWait);
+        if (wait > 0) {
+            waiter.timer = TIMER.schedule(() -> enterBulkhead(waiter), wait, TimeUnit.NANOSECONDS);
+        } else {
+            enterBulkhead(waiter);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * RPM/TPM等待结束后进入舱壁，没有空闲许可时排队，由先结束的请求移交许可
+     */
+    private void enterBulkhead(Waiter waiter) {
+        if (waiter.future.isDone()) {
+            return;
+        }
+        if (maxConcurrent > 0) {
+            synchronized (waiters) {
+                if (inflight >= maxConcurrent || !waiters.isEmpty()) {
+                    waiters.addLast(waiter);
+                    long remaining = Math.max(waiter.deadline - System.nanoTime(), 0);
+                    waiter.timer = TIMER.schedule(() -> {
+                        if (!waiter.future.isDone()) {
+                            logger.debug("服务商 {} 并发许可等待超时", providerId);
+                            waiter.future.completeExceptionally(throttled(REASON_BULKHEAD));
+                        }
+                    }, remaining, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                inflight++;
+            }
+        }
+        grant(waiter);
+    }
+
+    private void grant(Waiter waiter) {
+        if (!waiter.future.complete(waiter.permit)) {
+            // 等待者已取消或超时，许可交给下一个
+            releaseSlot();
+        }
+    }
+
+    private void releaseSlot() {
+        if (maxConcurrent <= 0) {
+            return;
+        }
+        Waiter next;
+        synchronized (waiters) {
+            do {
+                next = waiters.pollFirst();
+            } while (next != null && next.future.isDone());
+            if (next == null) {
+                inflight--;
+                return;
+            }
+        }
+        if (next.timer != null) {
+            next.timer.cancel(false);
+        }
+        grant(next);
+    }
+
+    /**
+     * 等待被取消或超时，许可未交给调用方，退还预约的配额
+     */
+    private void abandon(Waiter waiter) {
+        if (waiter.timer != null) {
+            waiter.timer.cancel(false);
+        }
+        synchronized (waiters) {
+            waiters.remove(waiter);
+        }
+        refund(1, waiter.permit.estimatedTokens);
+    }
+
+    /**
+     * 记录服务商返回的限流（429）
+     */
+    public void recordUpstreamThrottle() {
+        record(REASON_UPSTREAM);
+    }
+
+    private int inflight() {
+        synchronized (waiters) {
+            return inflight;
+        }
+    }
+
+    private void refund(long requestCount, long tokenCount) {
+        if (requests != null && requestCount > 0) {
+            requests.adjust(requestCount);
+        }
+        if (tokens != null && tokenCount > 0) {
+            tokens.adjust(tokenCount);
+        }
+    }
+
+    private BusinessException throttled(String reason) {
+        record(reason);
+        return new BusinessException("模型服务繁忙，请稍后重试");
+    }
+
+    private void record(String reason) {
+        Counter.builder("llm.provider.throttled")
+                .description("服务商限流次数")
+                .tag("provider", providerId)
+                .tag("reason", reason)
+                .register(Metrics.globalRegistry)
+                .increment();
+    }
+
+    /**
+     * 等待配额的请求
+     */
+    private class Waiter {
+
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        private final Permit permit;
+
+        private final long deadline;
+
+        private volatile ScheduledFuture<?> timer;
+
+        Waiter(Permit permit, long deadline) {
+            this.permit = permit;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * 请求许可，重复释放无副作用
+     */
+    public class Permit {
+
+        private final long estimatedTokens;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(long estimatedTokens) {
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * 释放并发许可，按实际用量修正TPM配额
+         *
+         * @param actualTokens 实际token数，未知时传null
+         */
+        public void release(Integer actualTokens) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            releaseSlot();
+            if (tokens != null && actualTokens != null) {
+                tokens.adjust(estimatedTokens - actualTokens);
+            }
+        }
+    }
+}
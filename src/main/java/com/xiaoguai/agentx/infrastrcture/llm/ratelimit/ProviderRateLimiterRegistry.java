@@ -0,0 +1,41 @@
+package com.xiaoguai.agentx.infrastrcture.llm.ratelimit;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.ProviderRateLimitProperties;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:20
+ * @Description: 服务商限流器注册表，每个服务商共用一个限流器
+ */
+public class ProviderRateLimiterRegistry {
+
+    private static final Map<String, ProviderLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static volatile ProviderRateLimitProperties properties = new ProviderRateLimitProperties();
+
+    public static void configure(ProviderRateLimitProperties rateLimitProperties) {
+        properties = rateLimitProperties;
+        LIMITERS.clear();
+    }
+
+    /**
+     * 获取服务商的限流器
+     *
+     * @param providerId   服务商id
+     * @param providerName 服务商名称
+     * @return 限流器，未启用限流时返回null
+     */
+    public static ProviderLimiter get(String providerId, String providerName) {
+        ProviderRateLimitProperties current = properties;
+        if (!current.isEnabled() || providerId == null) {
+            return null;
+        }
+        return LIMITERS.computeIfAbsent(providerId,
+                id -> new ProviderLimiter(id, current.resolve(id, providerName)));
+    }
+}
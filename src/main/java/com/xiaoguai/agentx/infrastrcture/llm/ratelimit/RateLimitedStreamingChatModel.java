@@ -0,0 +1,214 @@
+package com.xiaoguai.agentx.infrastrcture.llm.ratelimit;
+
+
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:25
+ * @Description: 带服务商限流的流式模型
+ * 每次向服务商发起请求前获取配额（工具调用后的后续请求同样计入），
+ * 配额不足时不阻塞调用线程，到期后在调度线程上发起请求；超时或取消通过onError返回，不会抛出到对话线程
+ */
+public class RateLimitedStreamingChatModel implements StreamingChatModel {
+
+    /**
+     * 等待配额后发起请求的线程，建立连接可能短暂阻塞，不能占用限流定时线程
+     */
+    private static final ExecutorService DISPATCHER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "llm-throttle-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 消息的预估token数，消息对象不再被记忆引用后自动回收
+     */
+    private static final Map<ChatMessage, Integer> MESSAGE_TOKENS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final StreamingChatModel delegate;
+
+    private final ProviderLimiter limiter;
+
+    public RateLimitedStreamingChatModel(StreamingChatModel delegate, ProviderLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        StreamCancellation cancellation = StreamCancellation.current();
+        CompletableFuture<ProviderLimiter.Permit> acquired;
+        try {
+            acquired = limiter.acquire(estimateTokens(chatRequest), cancellation);
+        } catch (RuntimeException e) {
+            handler.onError(e);
+            return;
+        }
+
+        BiConsumer<ProviderLimiter.Permit, Throwable> proceed = (permit, error) -> {
+            if (error != null) {
+                handler.onError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            if (cancellation == null) {
+                start(chatRequest, handler, permit);
+            } else {
+                // 调度线程上发起的请求需要沿用本轮对话的令牌，才能在取消时中断响应流
+                StreamCancellation.runWith(cancellation, () -> start(chatRequest, handler, permit));
+            }
+        };
+        if (acquired.isDone()) {
+            // 配额充足时直接在调用线程发起请求
+            acquired.whenComplete(proceed);
+        } else {
+            acquired.whenCompleteAsync(proceed, DISPATCHER);
+        }
+    }
+
+    private void start(ChatRequest chatRequest, StreamingChatResponseHandler handler, ProviderLimiter.Permit permit) {
+        try {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onPartialThinking(PartialThinking partialThinking) {
+                    handler.onPartialThinking(partialThinking);
+                }
+
+                @Override
+                public void onPartialToolCall(PartialToolCall partialToolCall) {
+                    handler.onPartialToolCall(partialToolCall);
+                }
+
+                @Override
+                public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+                    handler.onCompleteToolCall(completeToolCall);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    TokenUsage usage = completeResponse.tokenUsage();
+                    permit.release(usage == null ? null : usage.totalTokenCount());
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    permit.release(null);
+                    if (isUpstreamThrottle(error)) {
+                        limiter.recordUpstreamThrottle();
+                    }
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            permit.release(null);
+            handler.onError(e);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 用本地分词器估算请求token数，加上最大输出token数；请求结束后按实际用量修正
+     * 同一轮的后续请求与会话记忆缓存复用同一批消息对象，只有新增的消息需要分词
+     */
+    static long estimateTokens(ChatRequest chatRequest) {
+        long tokens = 0;
+        for (ChatMessage message : chatRequest.messages()) {
+            tokens += messageTokens(message);
+        }
+        Integer maxOutputTokens = chatRequest.maxOutputTokens();
+        return maxOutputTokens == null ? tokens : tokens + maxOutputTokens;
+    }
+
+    private static int messageTokens(ChatMessage message) {
+        Integer cached = MESSAGE_TOKENS.get(message);
+        if (cached != null) {
+            return cached;
+        }
+        int tokens = LocalTokenizer.countMessageTokens(null, textOf(message));
+        MESSAGE_TOKENS.put(message, tokens);
+        return tokens;
+    }
+
+    private static String textOf(ChatMessage message) {
+        if (message instanceof UserMessage userMessage) {
+            return userMessage.hasSingleText() ? userMessage.singleText() : null;
+        } else if (message instanceof SystemMessage systemMessage) {
+            return systemMessage.text();
+        } else if (message instanceof AiMessage aiMessage) {
+            return aiMessage.text();
+        } else if (message instanceof ToolExecutionResultMessage toolMessage) {
+            return toolMessage.text();
+        }
+        return null;
+    }
+
+    private static boolean isUpstreamThrottle(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof RateLimitException
+                    || current instanceof HttpException httpException && httpException.statusCode() == 429) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package com.xiaoguai.agentx.infrastrcture.llm.ratelimit;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:10
+ * @Description: 令牌桶，按分钟配额匀速补充
+ * 采用预约方式：配额不足时先扣减再返回需要等待的时间，余额可以为负，
+ * 之后的请求排在前面的预约之后，不会饿死大请求
+ */
+class TokenBucket {
+
+    private final long capacity;
+
+    /**
+     * 每纳秒补充的令牌数
+     */
+    private final double refillPerNano;
+
+    private double available;
+
+    private long lastRefill;
+
+    /**
+     * @param perMinute 每分钟配额，同时也是桶容量
+     */
+    TokenBucket(long perMinute) {
+        this.capacity = perMinute;
+        this.refillPerNano = (double) perMinute / TimeUnit.MINUTES.toNanos(1);
+        this.available = perMinute;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 预约令牌
+     *
+     * @param permits      令牌数，超过容量时按容量计算
+     * @param timeoutNanos 最长可等待时间
+     * @return 需要等待的纳秒数；超出可等待时间时返回-1且不扣减
+     */
+    synchronized long reserve(long permits, long timeoutNanos) {
+        refill();
+        long required = Math.min(permits, capacity);
+        double deficit = required - available;
+        long waitNanos = deficit <= 0 ? 0 : (long) Math.ceil(deficit / refillPerNano);
+        if (waitNanos > timeoutNanos) {
+            return -1;
+        }
+        available -= required;
+        return waitNanos;
+    }
+
+    /**
+     * 修正已扣减的令牌，正数归还，负数补扣
+     */
+    synchronized void adjust(long permits) {
+        refill();
+        available = Math.min(capacity, available + permits);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
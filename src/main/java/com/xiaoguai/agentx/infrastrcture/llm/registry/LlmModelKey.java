@@ -0,0 +1,92 @@
+package com.xiaoguai.agentx.infrastrcture.llm.registry;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
+
+import java.util.Objects;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 10:12
+ * @Description: 模型注册表的缓存键：协议 + baseUrl + apiKey + 模型
+ */
+public class LlmModelKey {
+
+    /**
+     * 服务商协议
+     */
+    private final ProviderProtocol protocol;
+
+    /**
+     * 基础url
+     */
+    private final String baseUrl;
+
+    /**
+     * apiKey
+     */
+    private final String apiKey;
+
+    /**
+     * 模型Id
+     */
+    private final String model;
+
+    public LlmModelKey(ProviderProtocol protocol, String baseUrl, String apiKey, String model) {
+        this.protocol = protocol;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+    }
+
+    /**
+     * 是否属于同一个服务商连接（不区分模型）
+     */
+    public boolean sameProvider(String baseUrl, String apiKey) {
+        return Objects.equals(this.baseUrl, baseUrl) && Objects.equals(this.apiKey, apiKey);
+    }
+
+    public ProviderProtocol getProtocol() {
+        return protocol;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LlmModelKey that)) {
+            return false;
+        }
+        return protocol == that.protocol
+                && Objects.equals(baseUrl, that.baseUrl)
+                && Objects.equals(apiKey, that.apiKey)
+                && Objects.equals(model, that.model);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(protocol, baseUrl, apiKey, model);
+    }
+
+    /**
+     * 日志输出时隐藏apiKey
+     */
+    @Override
+    public String toString() {
+        return protocol + "|" + baseUrl + "|" + model;
+    }
+}
@@ -0,0 +1,127 @@
+package com.xiaoguai.agentx.infrastrcture.llm.registry;
+
+
+import com.xiaoguai.agentx.infrastrcture.llm.protocol.enums.ProviderProtocol;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 10:20
+ * @Description: 模型注册表，复用长连接的ChatModel/StreamingChatModel，避免每轮对话都新建HTTP客户端
+ */
+public class LlmModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmModelRegistry.class);
+
+    /**
+     * 空闲过期时间：30min
+     */
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * 清理任务间隔(分钟)
+     */
+    private static final int CLEANUP_INTERVAL_MINUTES = 5;
+
+    private static final Map<LlmModelKey, ModelHolder<ChatModel>> CHAT_MODELS = new ConcurrentHashMap<>();
+
+    private static final Map<LlmModelKey, ModelHolder<StreamingChatModel>> STREAM_MODELS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "llm-model-registry-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SCHEDULER.scheduleAtFixedRate(LlmModelRegistry::evictIdleModels, CLEANUP_INTERVAL_MINUTES,
+                CLEANUP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 获取普通聊天模型，不存在则创建
+     */
+    public static ChatModel getChatModel(LlmModelKey key, Supplier<ChatModel> creator) {
+        return CHAT_MODELS.computeIfAbsent(key, k -> new ModelHolder<>(creator.get())).touch();
+    }
+
+    /**
+     * 获取流式聊天模型，不存在则创建
+     */
+    public static StreamingChatModel getStreamModel(LlmModelKey key, Supplier<StreamingChatModel> creator) {
+        return STREAM_MODELS.computeIfAbsent(key, k -> new ModelHolder<>(creator.get())).touch();
+    }
+
+    /**
+     * 服务商配置变更后失效对应的模型
+     * 正在进行中的流不受影响，只是后续请求会重新创建模型
+     *
+     * @param protocol 服务商协议
+     * @param baseUrl  基础url
+     * @param apiKey   apiKey
+     */
+    public static void invalidate(ProviderProtocol protocol, String baseUrl, String apiKey) {
+        int removed = removeIf(CHAT_MODELS, protocol, baseUrl, apiKey)
+                + removeIf(STREAM_MODELS, protocol, baseUrl, apiKey);
+        if (removed > 0) {
+            logger.info("服务商配置变更，失效模型数量: {}, baseUrl: {}", removed, baseUrl);
+        }
+    }
+
+    /**
+     * 当前缓存的模型数量
+     */
+    public static int size() {
+        return CHAT_MODELS.size() + STREAM_MODELS.size();
+    }
+
+    private static <M> int removeIf(Map<LlmModelKey, ModelHolder<M>> models, ProviderProtocol protocol,
+                                    String baseUrl, String apiKey) {
+        int before = models.size();
+        models.keySet().removeIf(key -> key.getProtocol() == protocol && key.sameProvider(baseUrl, apiKey));
+        return before - models.size();
+    }
+
+    /**
+     * 清理空闲模型
+     */
+    private static void evictIdleModels() {
+        try {
+            long deadline = System.currentTimeMillis() - IDLE_TIMEOUT_MILLIS;
+            CHAT_MODELS.values().removeIf(holder -> holder.lastAccess < deadline);
+            STREAM_MODELS.values().removeIf(holder -> holder.lastAccess < deadline);
+        } catch (Exception e) {
+            logger.error("清理空闲模型失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 模型及最近访问时间
+     */
+    private static class ModelHolder<M> {
+
+        private final M model;
+
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        ModelHolder(M model) {
+            this.model = model;
+        }
+
+        M touch() {
+            lastAccess = System.currentTimeMillis();
+            return model;
+        }
+    }
+}
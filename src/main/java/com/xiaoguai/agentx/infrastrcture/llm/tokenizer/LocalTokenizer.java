@@ -0,0 +1,106 @@
+package com.xiaoguai.agentx.infrastrcture.llm.tokenizer;
+
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.xiaoguai.agentx.infrastrcture.config.TokenizerProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:50
+ * @Description: 本地BPE分词器
+ * 使用jtokkit内置的词表在进程内计算token数，不依赖服务商返回的用量；
+ * 消息的token数按消息id缓存，内容变化时重新计算
+ */
+public class LocalTokenizer {
+
+    /**
+     * 每条消息的格式开销（角色、分隔符）
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private static final EncodingRegistry REGISTRY = Encodings.newLazyEncodingRegistry();
+
+    private static volatile Encoding encoding = REGISTRY.getEncoding(EncodingType.O200K_BASE);
+
+    private static volatile int cacheSize = 50_000;
+
+    /**
+     * key: 消息id，按访问顺序淘汰
+     */
+    private static final Map<String, CachedCount> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    public static void configure(TokenizerProperties properties) {
+        EncodingType type = EncodingType.fromName(properties.getEncoding())
+                .orElseThrow(() -> new BusinessException("不支持的分词词表: " + properties.getEncoding()));
+        encoding = REGISTRY.getEncoding(type);
+        cacheSize = properties.getCacheSize();
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * 计算文本的token数
+     */
+    public static int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return encoding.countTokensOrdinary(text);
+    }
+
+    /**
+     * 截断文本，保留前maxTokens个token
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        if (maxTokens <= 0) {
+            return "";
+        }
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        return result.isTruncated() ? encoding.decode(result.getTokens()) : text;
+    }
+
+    /**
+     * 计算一条消息的token数（含格式开销），按消息id缓存
+     *
+     * @param messageId 消息id，为空时不缓存
+     * @param content   消息内容
+     */
+    public static int countMessageTokens(String messageId, String content) {
+        if (messageId == null) {
+            return countTokens(content) + MESSAGE_OVERHEAD;
+        }
+        int contentHash = content == null ? 0 : content.hashCode();
+        synchronized (CACHE) {
+            CachedCount cached = CACHE.get(messageId);
+            if (cached != null && cached.contentHash == contentHash) {
+                return cached.tokens;
+            }
+        }
+        int tokens = countTokens(content) + MESSAGE_OVERHEAD;
+        synchronized (CACHE) {
+            CACHE.put(messageId, new CachedCount(contentHash, tokens));
+        }
+        return tokens;
+    }
+
+    private record CachedCount(int contentHash, int tokens) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.xiaoguai.agentx.infrastrcture.trace;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:55
+ * @Description: 会话调试追踪注册表
+ * 按需为会话开启追踪，开启期间每轮对话的追踪保存在内存中，
+ * 每个会话保留最近若干轮，超出会话数上限时淘汰最久未写入的会话
+ */
+public class ChatTraceRegistry {
+
+    /**
+     * 开启后的有效时间：30min
+     */
+    private static final long TRACE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * 每个会话保留的轮数
+     */
+    private static final int MAX_TURNS_PER_SESSION = 20;
+
+    /**
+     * 保留追踪的会话数
+     */
+    private static final int MAX_SESSIONS = 100;
+
+    /**
+     * key: 会话id, value: 追踪截止时间戳(ms)
+     */
+    private static final Map<String, Long> ENABLED = new ConcurrentHashMap<>();
+
+    private static final Map<String, Deque<ChatTurnTrace>> TRACES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Deque<ChatTurnTrace>> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    };
+
+    /**
+     * 开启或关闭会话追踪，关闭时清除已保存的追踪
+     */
+    public static void setEnabled(String sessionId, boolean enabled) {
+        if (enabled) {
+            ENABLED.put(sessionId, System.currentTimeMillis() + TRACE_TTL_MILLIS);
+            return;
+        }
+        ENABLED.remove(sessionId);
+        synchronized (TRACES) {
+            TRACES.remove(sessionId);
+        }
+    }
+
+    public static boolean isEnabled(String sessionId) {
+        Long until = ENABLED.get(sessionId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            ENABLED.remove(sessionId, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取会话最近的追踪，按时间倒序
+     */
+    public static List<ChatTurnTrace> getTraces(String sessionId) {
+        synchronized (TRACES) {
+            Deque<ChatTurnTrace> traces = TRACES.get(sessionId);
+            return traces == null ? List.of() : new ArrayList<>(traces);
+        }
+    }
+
+    static void add(ChatTurnTrace trace) {
+        synchronized (TRACES) {
+            Deque<ChatTurnTrace> traces = TRACES.computeIfAbsent(trace.getSessionId(), key -> new ArrayDeque<>());
+            traces.addFirst(trace);
+            while (traces.size() > MAX_TURNS_PER_SESSION) {
+                traces.removeLast();
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.xiaoguai.agentx.infrastrcture.trace;
+
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 23:00
+ * @Description: 单轮对话的流式延迟记录
+ * 记录请求前准备耗时、首token时间、token间隔、总生成时间、输出速度与工具调用耗时，
+ * 按服务商、模型、Agent类型打标签；会话开启调试追踪时同时写入追踪
+ */
+public class ChatTurnRecorder {
+
+    private final Tags tags;
+
+    private final ChatTurnTrace trace;
+
+    private final long startNanos;
+
+    private final Timer tokenGapTimer;
+
+    private volatile long requestNanos;
+
+    private volatile long firstTokenNanos;
+
+    /**
+     * 上一个token的时间，为0表示下一个token不计入间隔（首token或工具调用之后）
+     */
+    private volatile long lastTokenNanos;
+
+    /**
+     * @param sessionId  会话id
+     * @param provider   服务商
+     * @param model      模型
+     * @param agentType  Agent类型
+     * @param startNanos 对话开始时间（环境准备前），System.nanoTime()
+     */
+    public ChatTurnRecorder(String sessionId, String provider, String model, String agentType, long startNanos) {
+        this.tags = Tags.of("provider", valueOf(provider), "model", valueOf(model), "agent_type", valueOf(agentType));
+        this.startNanos = startNanos;
+        this.tokenGapTimer = Timer.builder("chat.stream.token.gap")
+                .description("相邻token的间隔")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+        if (sessionId != null && ChatTraceRegistry.isEnabled(sessionId)) {
+            long startedAt = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            this.trace = new ChatTurnTrace(sessionId, provider, model, agentType, startedAt);
+            ChatTraceRegistry.add(trace);
+        } else {
+            this.trace = null;
+        }
+    }
+
+    /**
+     * 即将向模型发起请求，记录此前的数据库与准备耗时
+     */
+    public void requestStarted() {
+        long now = System.nanoTime();
+        requestNanos = now;
+        timer("chat.stream.prepare", "发起模型请求前的准备耗时").record(now - startNanos, TimeUnit.NANOSECONDS);
+        event("request", now, null);
+    }
+
+    /**
+     * 收到一段输出
+     */
+    public void onToken() {
+        long now = System.nanoTime();
+        long last = lastTokenNanos;
+        lastTokenNanos = now;
+        if (firstTokenNanos == 0) {
+            firstTokenNanos = now;
+            timer("chat.stream.ttft", "首token时间").record(now - requestNanos, TimeUnit.NANOSECONDS);
+            event("first_token", now, null);
+            if (trace != null) {
+                trace.recordToken(0);
+            }
+            return;
+        }
+        long gap = last == 0 ? 0 : now - last;
+        if (last != 0) {
+            tokenGapTimer.record(gap, TimeUnit.NANOSECONDS);
+        }
+        if (trace != null) {
+            trace.recordToken(TimeUnit.NANOSECONDS.toMillis(gap));
+        }
+    }
+
+    /**
+     * 工具调用结束，工具执行期间的等待不计入token间隔
+     *
+     * @param toolName 工具名称
+     * @param nanos    执行耗时
+     * @param success  是否成功
+     */
+    public void toolExecuted(String toolName, long nanos, boolean success) {
+        lastTokenNanos = 0;
+        Timer.builder("chat.tool.duration")
+                .description("工具调用耗时")
+                .tags(tags)
+                .tag("tool", valueOf(toolName))
+                .tag("success", String.valueOf(success))
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        event("tool", System.nanoTime(), toolName + " " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms" + (success ? "" : " failed"));
+    }
+
+    /**
+     * 服务商返回的提示词用量，记录缓存命中的token数与命中比例
+     *
+     * @param inputTokens  提示词token数，包含工具调用后的多次请求
+     * @param cachedTokens 命中缓存的token数，服务商未返回时为null
+     */
+    public void promptUsage(Integer inputTokens, Integer cachedTokens) {
+        if (cachedTokens == null || inputTokens == null || inputTokens <= 0) {
+            return;
+        }
+        DistributionSummary.builder("chat.prompt.cached.tokens")
+                .description("命中服务商缓存的提示词token数")
+                .baseUnit("tokens")
+                .tags(tags)
+                .register(Metrics.globalRegistry)
+                .record(cachedTokens);
+        DistributionSummary.builder("chat.prompt.cache.hit.ratio")
+                .description("提示词token中命中服务商缓存的比例")
+                .tags(tags)
+                .publishPercentiles(0.5, 0.9)
+                .register(Metrics.globalRegistry)
+                .record((double) cachedTokens / inputTokens);
+        event("prompt_cache", System.nanoTime(), cachedTokens + "/" + inputTokens + " tokens");
+    }
+
+    /**
+     * 生成完成
+     *
+     * @param outputTokens 输出token数，未知时为null
+     */
+    public void completed(Integer outputTokens) {
+        long now = System.nanoTime();
+        if (requestNanos != 0) {
+            timer("chat.stream.generation", "模型生成总耗时").record(now - requestNanos, TimeUnit.NANOSECONDS);
+        }
+        long first = firstTokenNanos;
+        if (outputTokens != null && outputTokens > 0 && first != 0 && now > first) {
+            double seconds = (now - first) / 1e9;
+            DistributionSummary.builder("chat.stream.tokens.per.second")
+                    .description("首token之后的输出速度")
+                    .baseUnit("tokens/s")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry)
+                    .record(outputTokens / seconds);
+        }
+        event("complete", now, outputTokens == null ? null : outputTokens + " tokens");
+        if (trace != null) {
+            trace.finish("completed", outputTokens);
+        }
+    }
+
+    /**
+     * 生成失败或被取消
+     *
+     * @param status 结束状态，例如error、disconnect
+     */
+    public void failed(String status) {
+        event(status, System.nanoTime(), null);
+        if (trace != null) {
+            trace.finish(status, null);
+        }
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
+    private void event(String name, long nanos, String detail) {
+        if (trace != null) {
+            trace.addEvent(name, TimeUnit.NANOSECONDS.toMillis(nanos - startNanos), detail);
+        }
+    }
+
+    private static String valueOf(String value) {
+        return value == null ? "unknown" : value;
+    }
+}
@@ -0,0 +1,109 @@
+package com.xiaoguai.agentx.infrastrcture.trace;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 22:50
+ * @Description: 单轮对话的调试追踪，记录各阶段相对开始时间的耗时
+ */
+public class ChatTurnTrace {
+
+    private final String sessionId;
+
+    private final String provider;
+
+    private final String model;
+
+    private final String agentType;
+
+    /**
+     * 开始时间戳(ms)
+     */
+    private final long startedAt;
+
+    private final List<Event> events = new ArrayList<>();
+
+    private int tokenChunks;
+
+    private Integer outputTokens;
+
+    private long maxTokenGapMillis;
+
+    private String status = "running";
+
+    public ChatTurnTrace(String sessionId, String provider, String model, String agentType, long startedAt) {
+        this.sessionId = sessionId;
+        this.provider = provider;
+        this.model = model;
+        this.agentType = agentType;
+        this.startedAt = startedAt;
+    }
+
+    synchronized void addEvent(String name, long offsetMillis, String detail) {
+        events.add(new Event(name, offsetMillis, detail));
+    }
+
+    synchronized void recordToken(long gapMillis) {
+        tokenChunks++;
+        maxTokenGapMillis = Math.max(maxTokenGapMillis, gapMillis);
+    }
+
+    synchronized void finish(String status, Integer outputTokens) {
+        this.status = status;
+        this.outputTokens = outputTokens;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getAgentType() {
+        return agentType;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public synchronized List<Event> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized int getTokenChunks() {
+        return tokenChunks;
+    }
+
+    public synchronized Integer getOutputTokens() {
+        return outputTokens;
+    }
+
+    public synchronized long getMaxTokenGapMillis() {
+        return maxTokenGapMillis;
+    }
+
+    public synchronized String getStatus() {
+        return status;
+    }
+
+    /**
+     * 追踪事件
+     *
+     * @param name         事件名称
+     * @param offsetMillis 相对开始时间(ms)
+     * @param detail       附加信息
+     */
+    public record Event(String name, long offsetMillis, String detail) {
+    }
+}
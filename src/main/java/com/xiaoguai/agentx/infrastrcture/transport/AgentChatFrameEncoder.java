@@ -0,0 +1,199 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 15:02
+ * @Description: AgentChatResponse的SSE帧编码器
+ * 直接把 data:{json}\n\n 写入可复用的字节缓冲区，固定片段预先编码，
+ * 每帧只产生一次按长度复制的byte[]；输出与Jackson序列化结果逐字节一致：
+ * 字段顺序相同，控制字符与代理字符按大写十六进制转义。
+ * 非线程安全，每个连接持有一个实例
+ */
+public class AgentChatFrameEncoder {
+
+    private static final byte[] CONTENT = ascii("data:{\"content\":");
+    private static final byte[] DONE = ascii(",\"done\":");
+    private static final byte[] MESSAGE_TYPE = ascii(",\"messageType\":");
+    private static final byte[] TASK_ID = ascii(",\"taskId\":");
+    private static final byte[] PAYLOAD_AND_TASKS = ascii(",\"payLoad\":null,\"tasks\":null");
+    private static final byte[] TIMESTAMP = ascii(",\"timestamp\":");
+    private static final byte[] THINKING = ascii(",\"thinking\":");
+    private static final byte[] FRAME_END = ascii("}\n\n");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    /**
+     * 已加引号的枚举名，按ordinal索引
+     */
+    private static final byte[][] MESSAGE_TYPES = Arrays.stream(MessageType.values())
+            .map(type -> ascii("\"" + type.name() + "\""))
+            .toArray(byte[][]::new);
+
+    private byte[] buffer;
+
+    private int length;
+
+    public AgentChatFrameEncoder() {
+        this(256);
+    }
+
+    public AgentChatFrameEncoder(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * 是否可以预编码，带数据载荷或子任务列表的消息交给默认序列化
+     */
+    public static boolean supports(AgentChatResponse response) {
+        return response.getPayLoad() == null && response.getTasks() == null;
+    }
+
+    /**
+     * 编码完整消息
+     */
+    public byte[] encode(AgentChatResponse response) {
+        Long timestamp = response.getTimestamp();
+        return encode(response.getContent(), response.isDone(), response.isThinking(),
+                response.getMessageType(), response.getTaskId(), timestamp);
+    }
+
+    /**
+     * 编码普通文本消息，无需先构建AgentChatResponse
+     */
+    public byte[] encodeText(CharSequence content, long timestamp) {
+        return encode(content, false, false, MessageType.TEXT, null, timestamp);
+    }
+
+    private byte[] encode(CharSequence content, boolean done, boolean thinking,
+                          MessageType messageType, String taskId, Long timestamp) {
+        length = 0;
+        write(CONTENT);
+        writeString(content);
+        write(DONE);
+        write(done ? TRUE : FALSE);
+        write(MESSAGE_TYPE);
+        write(messageType == null ? NULL : MESSAGE_TYPES[messageType.ordinal()]);
+        write(TASK_ID);
+        writeString(taskId);
+        write(PAYLOAD_AND_TASKS);
+        write(TIMESTAMP);
+        if (timestamp == null) {
+            write(NULL);
+        } else {
+            writeLong(timestamp);
+        }
+        write(THINKING);
+        write(thinking ? TRUE : FALSE);
+        write(FRAME_END);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void writeString(CharSequence value) {
+        if (value == null) {
+            write(NULL);
+            return;
+        }
+        // 最坏情况每个字符6字节（\\uXXXX），一次性扩容避免逐字符检查
+        ensureCapacity(value.length() * 6 + 2);
+        byte[] buf = buffer;
+        int pos = length;
+        buf[pos++] = '"';
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[pos++] = (byte) c;
+                } else {
+                    pos = writeEscaped(buf, pos, c);
+                }
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 与Jackson一致，代理字符（包括成对的）逐个转义为\\uXXXX
+                pos = writeUnicodeEscape(buf, pos, c);
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buf[pos++] = '"';
+        length = pos;
+    }
+
+    private static int writeEscaped(byte[] buf, int pos, char c) {
+        char escaped = switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case '\t' -> 't';
+            case '\b' -> 'b';
+            case '\f' -> 'f';
+            default -> 0;
+        };
+        if (escaped == 0) {
+            return writeUnicodeEscape(buf, pos, c);
+        }
+        buf[pos++] = '\\';
+        buf[pos++] = (byte) escaped;
+        return pos;
+    }
+
+    private static int writeUnicodeEscape(byte[] buf, int pos, char c) {
+        buf[pos++] = '\\';
+        buf[pos++] = 'u';
+        buf[pos++] = HEX[(c >> 12) & 0xF];
+        buf[pos++] = HEX[(c >> 8) & 0xF];
+        buf[pos++] = HEX[(c >> 4) & 0xF];
+        buf[pos++] = HEX[c & 0xF];
+        return pos;
+    }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            write(ascii(Long.toString(value)));
+            return;
+        }
+        ensureCapacity(20);
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        long v = value;
+        do {
+            buffer[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        length += digits;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = length + extra;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,329 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 20:15
+ * @Description: 单条回复的续传缓冲区
+ * 回复的每一帧带上递增的SSE id后写入环形缓冲区，再转发给当前订阅的连接；
+ * 连接断开时生成继续进行，客户端重连后从Last-Event-ID之后补发并接管后续帧。
+ * 锁内只追加帧与移动写出进度，网络写出由写出线程在锁外按顺序完成，慢连接与补发不阻塞生成回调
+ */
+public class ChatReplayBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatReplayBuffer.class);
+
+    /**
+     * 无法估算大小的帧按该值计算
+     */
+    private static final int DEFAULT_ITEM_BYTES = 256;
+
+    private final int maxFrames;
+
+    private final long maxBytes;
+
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+    private long bytes;
+
+    private long lastSeq;
+
+    /**
+     * 当前接收帧的连接，断开后为空
+     */
+    private ChatSseEmitter subscriber;
+
+    /**
+     * 当前连接已交给写出线程的最后一帧id
+     */
+    private long deliveredSeq;
+
+    /**
+     * 是否已有写出任务在处理本缓冲区，保证同一时刻只有一个线程写出
+     */
+    private boolean draining;
+
+    private boolean completed;
+
+    private final List<Runnable> completionHooks = new CopyOnWriteArrayList<>();
+
+    /**
+     * 连接断开且各自宽限期内未重连时执行
+     */
+    private final List<AbandonHook> abandonHooks = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每次断开递增，用于判断宽限期内是否重连过
+     */
+    private long detachCount;
+
+    public ChatReplayBuffer(ChatSseEmitter origin, int maxFrames, long maxBytes) {
+        this.subscriber = origin;
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 记录一帧，由写出线程转发给当前连接
+     */
+    void publish(Set<DataWithMediaType> items) {
+        Set<DataWithMediaType> data = new LinkedHashSet<>(items.size() + 1);
+        long size = sizeOf(items);
+        synchronized (this) {
+            long seq = ++lastSeq;
+            data.add(new DataWithMediaType("id:" + seq + "\n", MediaType.TEXT_PLAIN));
+            data.addAll(items);
+            Frame frame = new Frame(seq, data, size);
+            frames.addLast(frame);
+            bytes += frame.bytes;
+            while (frames.size() > maxFrames || (bytes > maxBytes && frames.size() > 1)) {
+                bytes -= frames.removeFirst().bytes;
+            }
+            if (!startDrain()) {
+                return;
+            }
+        }
+        ChatReplayRegistry.dispatch(this::drain);
+    }
+
+    /**
+     * 新连接接管回复，先补发lastEventId之后的帧
+     *
+     * @param emitter     新连接
+     * @param lastEventId 客户端收到的最后一帧id，为空时从头补发
+     * @return 需要的帧已被淘汰时返回false
+     */
+    public boolean attach(ChatSseEmitter emitter, Long lastEventId) {
+        long after = lastEventId == null ? 0 : lastEventId;
+        ChatSseEmitter previous;
+        boolean dispatch;
+        synchronized (this) {
+            long firstSeq = frames.isEmpty() ? lastSeq + 1 : frames.peekFirst().seq;
+            if (after + 1 < firstSeq) {
+                return false;
+            }
+            previous = subscriber;
+            subscriber = emitter;
+            deliveredSeq = Math.min(after, lastSeq);
+            // 补发与回复已结束时的关闭都交给写出线程
+            dispatch = startDrain();
+        }
+        if (previous != null && previous != emitter) {
+            // 同一回复只保留一个连接
+            previous.completeQuietly();
+        }
+        if (dispatch) {
+            ChatReplayRegistry.dispatch(this::drain);
+        }
+        return true;
+    }
+
+    /**
+     * 连接断开，后续帧只写入缓冲区
+     */
+    public synchronized void detach(ChatSseEmitter emitter) {
+        if (subscriber == emitter) {
+            subscriber = null;
+            scheduleAbandonCheck();
+        }
+    }
+
+    /**
+     * 添加放弃回调：连接断开后超过delayMillis仍未重连且回复未结束时执行
+     */
+    public synchronized void onAbandon(long delayMillis, Runnable hook) {
+        AbandonHook abandonHook = new AbandonHook(delayMillis, hook);
+        abandonHooks.add(abandonHook);
+        if (subscriber == null && !completed) {
+            scheduleAbandonCheck(abandonHook, detachCount);
+        }
+    }
+
+    /**
+     * 回复结束，结束当前连接
+     */
+    public void complete() {
+        ChatSseEmitter target = null;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            // 写出中的连接由写出线程写完剩余帧后结束
+            if (subscriber != null && !draining) {
+                target = subscriber;
+                subscriber = null;
+            }
+        }
+        if (target != null) {
+            target.completeQuietly();
+        }
+        completionHooks.forEach(Runnable::run);
+    }
+
+    /**
+     * 添加回复结束回调，已结束时立即执行
+     */
+    public void onComplete(Runnable hook) {
+        synchronized (this) {
+            if (!completed) {
+                completionHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    public synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * 当前连接存在且没有写出任务时占用写出权，调用方需持有锁
+     *
+     * @return 需要提交写出任务时返回true
+     */
+    private boolean startDrain() {
+        if (subscriber == null || draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * 写出任务：锁内取出当前连接未写出的帧，锁外按顺序写出，直到追上最新帧
+     */
+    private void drain() {
+        while (true) {
+            ChatSseEmitter target;
+            List<Frame> batch;
+            synchronized (this) {
+                target = subscriber;
+                if (target == null) {
+                    draining = false;
+                    return;
+                }
+                long firstSeq = frames.isEmpty() ? lastSeq + 1 : frames.peekFirst().seq;
+                if (deliveredSeq + 1 < firstSeq) {
+                    // 连接写出落后于淘汰，缺失的帧无法补齐，结束连接由客户端按Last-Event-ID重连
+                    logger.debug("续传连接写出落后，结束连接, 已写出: {}, 最早保留: {}", deliveredSeq, firstSeq);
+                    subscriber = null;
+                    draining = false;
+                    scheduleAbandonCheck();
+                    batch = null;
+                } else if (deliveredSeq >= lastSeq) {
+                    draining = false;
+                    if (!completed) {
+                        return;
+                    }
+                    subscriber = null;
+                    batch = null;
+                } else {
+                    batch = pendingFrames();
+                    deliveredSeq = lastSeq;
+                }
+            }
+            if (batch == null) {
+                target.completeQuietly();
+                return;
+            }
+            for (Frame frame : batch) {
+                if (!write(target, frame)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * deliveredSeq之后的帧，调用方需持有锁
+     */
+    private List<Frame> pendingFrames() {
+        List<Frame> batch = new ArrayList<>((int) Math.min(lastSeq - deliveredSeq, frames.size()));
+        Iterator<Frame> iterator = frames.descendingIterator();
+        while (iterator.hasNext()) {
+            Frame frame = iterator.next();
+            if (frame.seq <= deliveredSeq) {
+                break;
+            }
+            batch.add(frame);
+        }
+        Collections.reverse(batch);
+        return batch;
+    }
+
+    private boolean write(ChatSseEmitter target, Frame frame) {
+        try {
+            target.write(frame.data);
+            return true;
+        } catch (Exception e) {
+            // 客户端断开不影响生成，等待重连
+            logger.debug("续传帧发送失败，等待客户端重连, id: {}, {}", frame.seq, e.getMessage());
+            synchronized (this) {
+                if (subscriber == target) {
+                    subscriber = null;
+                    scheduleAbandonCheck();
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 连接断开，为每个放弃回调按各自宽限期安排检查，调用方需持有锁
+     */
+    private void scheduleAbandonCheck() {
+        long count = ++detachCount;
+        for (AbandonHook hook : abandonHooks) {
+            scheduleAbandonCheck(hook, count);
+        }
+    }
+
+    private void scheduleAbandonCheck(AbandonHook hook, long count) {
+        ChatReplayRegistry.schedule(() -> {
+            synchronized (this) {
+                if (completed || subscriber != null || detachCount != count) {
+                    return;
+                }
+            }
+            hook.action.run();
+        }, hook.delayMillis);
+    }
+
+    private static long sizeOf(Set<DataWithMediaType> items) {
+        long size = 0;
+        for (DataWithMediaType item : items) {
+            Object data = item.getData();
+            if (data instanceof byte[] array) {
+                size += array.length;
+            } else if (data instanceof CharSequence text) {
+                size += text.length() * 2L;
+            } else {
+                size += DEFAULT_ITEM_BYTES;
+            }
+        }
+        return size;
+    }
+
+    private record AbandonHook(long delayMillis, Runnable action) {
+    }
+
+    private record Frame(long seq, Set<DataWithMediaType> data, long bytes) {
+    }
+}
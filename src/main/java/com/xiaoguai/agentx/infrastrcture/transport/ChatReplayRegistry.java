@@ -0,0 +1,133 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.infrastrcture.config.SseReplayProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 20:25
+ * @Description: 续传缓冲区注册表，按会话与助理消息id保存正在生成或刚结束的回复，
+ * 同一会话的多条回复互不覆盖，回复结束后保留一段宽限期再释放
+ */
+public final class ChatReplayRegistry {
+
+    private static volatile SseReplayProperties properties = new SseReplayProperties();
+
+    private static final Map<String, ChatReplayBuffer> BUFFERS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService RELEASER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-replay-release");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 帧写出线程池，缓冲区在锁外由该线程池按顺序写出，生成回调只负责入队
+     */
+    private static final ThreadPoolExecutor WRITER = newWriter(properties.getWriterThreads());
+
+    static {
+        Gauge.builder("chat.sse.replay.buffers", BUFFERS, Map::size)
+                .description("保留中的续传缓冲区数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("chat.sse.replay.writer.queued", WRITER, executor -> executor.getQueue().size())
+                .description("等待写出线程的续传写出任务数")
+                .register(Metrics.globalRegistry);
+    }
+
+    private ChatReplayRegistry() {
+    }
+
+    /**
+     * 下发续传配置，应用启动时调用
+     */
+    public static void configure(SseReplayProperties replayProperties) {
+        properties = replayProperties;
+        int threads = Math.max(1, replayProperties.getWriterThreads());
+        if (threads >= WRITER.getMaximumPoolSize()) {
+            WRITER.setMaximumPoolSize(threads);
+            WRITER.setCorePoolSize(threads);
+        } else {
+            WRITER.setCorePoolSize(threads);
+            WRITER.setMaximumPoolSize(threads);
+        }
+    }
+
+    public static SseReplayProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 登记回复的缓冲区
+     *
+     * @param sessionId 会话id
+     * @param replyId   助理消息id
+     */
+    public static void register(String sessionId, String replyId, ChatReplayBuffer buffer) {
+        SseReplayProperties current = properties;
+        String key = key(sessionId, replyId);
+        BUFFERS.put(key, buffer);
+        buffer.onComplete(() -> release(key, buffer, current.getGracePeriod().toMillis()));
+        release(key, buffer, current.getMaxLifetime().toMillis());
+    }
+
+    /**
+     * 获取回复的缓冲区
+     *
+     * @param sessionId 会话id
+     * @param replyId   助理消息id
+     */
+    public static ChatReplayBuffer find(String sessionId, String replyId) {
+        return BUFFERS.get(key(sessionId, replyId));
+    }
+
+    /**
+     * 延迟执行任务
+     */
+    static void schedule(Runnable task, long delayMillis) {
+        RELEASER.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在写出线程池中执行缓冲区的写出任务
+     */
+    static void dispatch(Runnable task) {
+        WRITER.execute(task);
+    }
+
+    private static ThreadPoolExecutor newWriter(int threads) {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "sse-replay-writer-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static String key(String sessionId, String replyId) {
+        return sessionId + ":" + replyId;
+    }
+
+    private static void release(String key, ChatReplayBuffer buffer, long delayMillis) {
+        RELEASER.schedule(() -> {
+            if (BUFFERS.remove(key, buffer)) {
+                buffer.complete();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
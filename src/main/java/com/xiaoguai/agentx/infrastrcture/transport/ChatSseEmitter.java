@@ -0,0 +1,125 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 15:20
+ * @Description: 聊天SseEmitter，AgentChatResponse通过预编码器直接写出完整SSE帧，
+ * 跳过SseEventBuilder拼装与Jackson反射序列化。
+ * 开启续传后所有帧先进入续传缓冲区，再由缓冲区转发给当前连接
+ */
+public class ChatSseEmitter extends SseEmitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSseEmitter.class);
+
+    private final AgentChatFrameEncoder encoder = new AgentChatFrameEncoder();
+
+    private volatile ChatReplayBuffer replayBuffer;
+
+    public ChatSseEmitter(long timeout) {
+        super(timeout);
+    }
+
+    /**
+     * 开启断线续传，需在发送第一帧前调用
+     */
+    public void enableReplay(int maxFrames, long maxBytes) {
+        this.replayBuffer = new ChatReplayBuffer(this, maxFrames, maxBytes);
+    }
+
+    /**
+     * 续传缓冲区，未开启续传时为空
+     */
+    public ChatReplayBuffer getReplayBuffer() {
+        return replayBuffer;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+        send(builder.build());
+    }
+
+    @Override
+    public void send(Set<DataWithMediaType> items) throws IOException {
+        ChatReplayBuffer buffer = replayBuffer;
+        if (buffer == null) {
+            super.send(items);
+        } else {
+            buffer.publish(items);
+        }
+    }
+
+    /**
+     * 结束回复，开启续传时由缓冲区结束当前连接
+     */
+    @Override
+    public void complete() {
+        ChatReplayBuffer buffer = replayBuffer;
+        if (buffer == null) {
+            super.complete();
+        } else {
+            buffer.complete();
+        }
+    }
+
+    /**
+     * 发送聊天消息，无法预编码的消息回退到默认序列化
+     */
+    public void sendChat(AgentChatResponse response) throws IOException {
+        if (!AgentChatFrameEncoder.supports(response)) {
+            super.send(response);
+            return;
+        }
+        byte[] frame;
+        synchronized (encoder) {
+            frame = encoder.encode(response);
+        }
+        sendEncoded(frame);
+    }
+
+    /**
+     * 发送普通文本消息
+     */
+    protected void sendText(CharSequence content) throws IOException {
+        byte[] frame;
+        synchronized (encoder) {
+            frame = encoder.encodeText(content, System.currentTimeMillis());
+        }
+        sendEncoded(frame);
+    }
+
+    /**
+     * 已编码的帧包含data前缀与结束空行，按原始字节写出
+     */
+    private void sendEncoded(byte[] frame) throws IOException {
+        send(Set.of(new DataWithMediaType(frame, MediaType.TEXT_EVENT_STREAM)));
+    }
+
+    /**
+     * 直接写出到本连接，由续传缓冲区调用
+     */
+    void write(Set<DataWithMediaType> items) throws IOException {
+        super.send(items);
+    }
+
+    /**
+     * 结束本连接，连接已断开时忽略
+     */
+    void completeQuietly() {
+        try {
+            super.complete();
+        } catch (Exception e) {
+            logger.debug("SSE连接结束失败: {}", e.getMessage());
+        }
+    }
+}
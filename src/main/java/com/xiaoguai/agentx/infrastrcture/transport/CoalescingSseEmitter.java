@@ -0,0 +1,185 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 14:12
+ * @Description: 合帧SseEmitter
+ * 文本token先写入缓冲区，达到字符上限或时间窗口到期时合并为一帧发送；
+ * 其他消息发送前会先刷出缓冲区，保证帧顺序与token顺序一致
+ */
+public class CoalescingSseEmitter extends ChatSseEmitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingSseEmitter.class);
+
+    private static final ScheduledExecutorService FLUSHER = createFlusher();
+
+    private static final Counter FRAME_COUNTER = Counter.builder("chat.sse.frames")
+            .description("SSE发送帧数")
+            .register(Metrics.globalRegistry);
+
+    private static final Counter TOKEN_COUNTER = Counter.builder("chat.sse.tokens")
+            .description("SSE接收的token片段数")
+            .register(Metrics.globalRegistry);
+
+    private static final DistributionSummary FRAME_RATE = DistributionSummary.builder("chat.sse.frames.per.second")
+            .description("单个连接的实际发送帧率")
+            .register(Metrics.globalRegistry);
+
+    private final long windowMillis;
+
+    private final int maxChars;
+
+    private final Object lock = new Object();
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    private final long createdAt = System.nanoTime();
+
+    private ScheduledFuture<?> pendingFlush;
+
+    private boolean closed;
+
+    private long frames;
+
+    private long tokens;
+
+    public CoalescingSseEmitter(long timeout, long windowMillis, int maxChars) {
+        super(timeout);
+        this.windowMillis = windowMillis;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 追加文本token，必要时立即发送
+     */
+    public void append(String token) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            tokens++;
+            TOKEN_COUNTER.increment();
+            buffer.append(token);
+            if (buffer.length() >= maxChars || windowMillis <= 0) {
+                flushLocked();
+                return;
+            }
+            if (pendingFlush == null) {
+                pendingFlush = FLUSHER.schedule(this::scheduledFlush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 先刷出缓冲区，再发送一帧完整消息
+     */
+    public void sendFrame(Object data) throws IOException {
+        synchronized (lock) {
+            flushLocked();
+            sendLocked(data);
+        }
+    }
+
+    /**
+     * 刷出缓冲区中的token
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            flushLocked();
+        }
+    }
+
+    /**
+     * 回复结束时释放合帧缓冲区；开启续传时客户端断开不会触发连接完成回调，需要在这里释放
+     */
+    @Override
+    public void complete() {
+        super.complete();
+        close();
+    }
+
+    /**
+     * 连接结束后调用，丢弃未发送内容并上报帧率
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelPendingFlush();
+            buffer.setLength(0);
+        }
+        double seconds = (System.nanoTime() - createdAt) / 1_000_000_000.0;
+        double framesPerSecond = seconds > 0 ? frames / seconds : frames;
+        FRAME_RATE.record(framesPerSecond);
+        logger.debug("SSE连接结束, token数: {}, 帧数: {}, 帧率: {}/s", tokens, frames, String.format("%.1f", framesPerSecond));
+    }
+
+    private void scheduledFlush() {
+        synchronized (lock) {
+            pendingFlush = null;
+            try {
+                flushLocked();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("SSE合帧发送失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        cancelPendingFlush();
+        if (closed || buffer.isEmpty()) {
+            return;
+        }
+        sendText(buffer);
+        buffer.setLength(0);
+        countFrame();
+    }
+
+    private void sendLocked(Object data) throws IOException {
+        if (data instanceof AgentChatResponse response) {
+            super.sendChat(response);
+        } else {
+            super.send(data);
+        }
+        countFrame();
+    }
+
+    private void countFrame() {
+        frames++;
+        FRAME_COUNTER.increment();
+    }
+
+    private void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+    }
+
+    private static ScheduledExecutorService createFlusher() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+            Thread thread = new Thread(r, "sse-coalesce-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 17:30
+ * @Description: 响应式聊天连接，LLM回调写入sink，订阅方按需消费，不为打开的流占用线程。
+ * sink使用有界队列，订阅方消费过慢导致队列写满时中止本轮对话，不在内存中无限积压
+ */
+public class FluxChatConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(FluxChatConnection.class);
+
+    /**
+     * 等待订阅方消费的最大消息数
+     */
+    private static final int MAX_BUFFERED = 1024;
+
+    private static final Counter OVERFLOW = Counter.builder("chat.flux.overflow")
+            .description("订阅方消费过慢被中止的响应式连接数")
+            .register(Metrics.globalRegistry);
+
+    private final Sinks.Many<AgentChatResponse> sink = Sinks.many().unicast()
+            .onBackpressureBuffer(Queues.<AgentChatResponse>get(MAX_BUFFERED).get());
+
+    private final List<Consumer<String>> cancelCallbacks = new CopyOnWriteArrayList<>();
+
+    private boolean overflowed;
+
+    /**
+     * 写入消息，订阅已取消时丢弃；队列已满时以错误结束消息流并取消本轮对话
+     */
+    public synchronized void emit(AgentChatResponse response) {
+        if (overflowed) {
+            return;
+        }
+        if (sink.tryEmitNext(response) != Sinks.EmitResult.FAIL_OVERFLOW) {
+            return;
+        }
+        overflowed = true;
+        OVERFLOW.increment();
+        logger.warn("响应式连接消费过慢，待发送消息超过{}条，中止本轮对话", MAX_BUFFERED);
+        sink.tryEmitError(new BusinessException("客户端接收过慢，回复已中止"));
+        cancelCallbacks.forEach(callback -> callback.accept(StreamCancellation.REASON_OVERFLOW));
+    }
+
+    /**
+     * 结束消息流
+     */
+    public synchronized void complete() {
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * 添加订阅方取消（客户端断开）或消费过慢时的回调，所有回调依次执行，参数为取消原因
+     */
+    public void onCancel(Consumer<String> callback) {
+        cancelCallbacks.add(callback);
+    }
+
+    public Flux<AgentChatResponse> asFlux() {
+        return sink.asFlux().doOnCancel(() ->
+                cancelCallbacks.forEach(callback -> callback.accept(StreamCancellation.REASON_DISCONNECT)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+
+import java.util.function.Consumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 17:34
+ * @Description: 响应式消息传输，连接以Flux形式交给WebFlux编码输出
+ */
+public class FluxMessageTransport implements MessageTransport<FluxChatConnection> {
+
+    /**
+     * 超时由异步请求超时统一控制
+     */
+    @Override
+    public FluxChatConnection createConnection(long timeout) {
+        return new FluxChatConnection();
+    }
+
+    @Override
+    public void sendMessage(FluxChatConnection connection, AgentChatResponse response) {
+        connection.emit(response);
+    }
+
+    @Override
+    public void sendEndMessage(FluxChatConnection connection, AgentChatResponse response) {
+        connection.emit(response);
+        connection.complete();
+    }
+
+    @Override
+    public void completeConnection(FluxChatConnection connection) {
+        connection.complete();
+    }
+
+    @Override
+    public void onDisconnect(FluxChatConnection connection, Consumer<String> callback) {
+        connection.onCancel(callback);
+    }
+
+    @Override
+    public void handleError(FluxChatConnection connection, Throwable ex) {
+        AgentChatResponse response = new AgentChatResponse();
+        response.setContent(ex.getMessage());
+        response.setDone(true);
+        response.setThinking(false);
+        connection.emit(response);
+        connection.complete();
+    }
+}
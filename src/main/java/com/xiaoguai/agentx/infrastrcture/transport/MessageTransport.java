@@ -2,6 +2,9 @@ package com.xiaoguai.agentx.infrastrcture.transport;
 
 
 import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+
+import java.util.function.Consumer;
 
 /**
  * @Author: the-way
@@ -38,4 +41,34 @@ public interface MessageTransport<T>{
      * @param ex 异常
      */
     void handleError(T connection, Throwable ex);
+
+    /**
+     * 注册客户端断开回调，用于取消仍在生成的回复
+     * @param connection 连接对象
+     * @param callback 回调，参数为断开原因
+     */
+    default void onDisconnect(T connection, Consumer<String> callback) {
+    }
+
+    /**
+     * 回复开始，在发送回复内容前调用
+     * @param connection 连接对象
+     * @param sessionId 会话id
+     * @param replyId 助理消息id
+     */
+    default void startReply(T connection, String sessionId, String replyId) {
+    }
+
+    /**
+     * 是否为普通文本token，工具调用、任务、结束等消息需要完整发送
+     */
+    static boolean isPlainText(AgentChatResponse response) {
+        return response.getMessageType() == MessageType.TEXT
+                && !response.isDone()
+                && !response.isThinking()
+                && response.getContent() != null
+                && response.getTaskId() == null
+                && response.getPayLoad() == null
+                && response.getTasks() == null;
+    }
 }
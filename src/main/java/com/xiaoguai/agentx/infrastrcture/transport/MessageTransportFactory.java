@@ -12,16 +12,17 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MessageTransportFactory {
 
     /**
-     * 传输类型：{SSE,WEBSOCKET}
+     * 传输类型：{SSE,WEBSOCKET,FLUX}
      */
     public static final String TRANSPORT_TYPE_SSE = "sse";
     public static final String TRANSPORT_TYPE_WEBSOCKET = "websocket";
+    public static final String TRANSPORT_TYPE_FLUX = "flux";
 
     private static final ConcurrentHashMap<String, MessageTransport<?>> transports = new ConcurrentHashMap<>();
 
     static {
         transports.put(TRANSPORT_TYPE_SSE, new SseMessageTransport());
-        transports.put(TRANSPORT_TYPE_WEBSOCKET, new WebsocketMessageTransport());
+        transports.put(TRANSPORT_TYPE_FLUX, new FluxMessageTransport());
     }
 
     /**
@@ -33,4 +34,14 @@ public class MessageTransportFactory {
     public static <T> MessageTransport<T> getTransport(String transportType) {
         return (MessageTransport<T>) transports.get(transportType);
     }
+
+    /**
+     * 创建WebSocket传输对象，绑定到客户端通道上的指定消息流
+     * @param channel 客户端通道
+     * @param streamId 消息流id，由客户端指定
+     * @return 传输对象
+     */
+    public static MessageTransport<WebsocketStream> createWebsocketTransport(WebsocketChannel channel, int streamId) {
+        return new WebsocketMessageTransport(channel, streamId);
+    }
 }
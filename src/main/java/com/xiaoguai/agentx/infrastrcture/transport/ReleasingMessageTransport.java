@@ -0,0 +1,88 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+
+import java.util.function.Consumer;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 21:45
+ * @Description: 对话结束时执行释放动作的传输包装，用于归还准入名额
+ * 可以绑定排队期间已建立的连接，放行后在同一连接上继续对话
+ */
+public class ReleasingMessageTransport<T> implements MessageTransport<T> {
+
+    private final MessageTransport<T> delegate;
+
+    /**
+     * 已建立的连接，为空时新建
+     */
+    private final T connection;
+
+    private final Runnable release;
+
+    public ReleasingMessageTransport(MessageTransport<T> delegate, T connection, Runnable release) {
+        this.delegate = delegate;
+        this.connection = connection;
+        this.release = release;
+    }
+
+    @Override
+    public T createConnection(long timeout) {
+        return connection != null ? connection : delegate.createConnection(timeout);
+    }
+
+    @Override
+    public void sendMessage(T connection, AgentChatResponse response) {
+        delegate.sendMessage(connection, response);
+    }
+
+    @Override
+    public void sendEndMessage(T connection, AgentChatResponse response) {
+        try {
+            delegate.sendEndMessage(connection, response);
+        } finally {
+            release.run();
+        }
+    }
+
+    @Override
+    public void completeConnection(T connection) {
+        try {
+            delegate.completeConnection(connection);
+        } finally {
+            release.run();
+        }
+    }
+
+    @Override
+    public void handleError(T connection, Throwable ex) {
+        try {
+            delegate.handleError(connection, ex);
+        } finally {
+            release.run();
+        }
+    }
+
+    @Override
+    public void startReply(T connection, String sessionId, String replyId) {
+        delegate.startReply(connection, sessionId, replyId);
+    }
+
+    @Override
+    public void onDisconnect(T connection, Consumer<String> callback) {
+        delegate.onDisconnect(connection, reason -> {
+            release.run();
+            callback.accept(reason);
+        });
+    }
+
+    /**
+     * 对话未能开始时释放
+     */
+    public void release() {
+        release.run();
+    }
+}
@@ -3,11 +3,16 @@ package com.xiaoguai.agentx.infrastrcture.transport;
 
 import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
 import com.xiaoguai.agentx.application.conversation.dto.StreamChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+import com.xiaoguai.agentx.infrastrcture.config.SseCoalesceProperties;
+import com.xiaoguai.agentx.infrastrcture.config.SseReplayProperties;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * @Author: the-way
@@ -23,10 +28,29 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
 
     private static final String SYSTEM_ERROR_MESSAGE = "\n\n [系统错误: ";
 
+    /**
+     * 合帧配置，未配置时使用默认值
+     */
+    private static volatile SseCoalesceProperties coalesceProperties = new SseCoalesceProperties();
+
+    /**
+     * 下发合帧配置，应用启动时调用
+     */
+    public static void configure(SseCoalesceProperties properties) {
+        coalesceProperties = properties;
+    }
+
 
     @Override
     public SseEmitter createConnection(long timeout) {
-        SseEmitter emitter = new SseEmitter(timeout);
+        SseCoalesceProperties properties = coalesceProperties;
+        ChatSseEmitter emitter = properties.isEnabled()
+                ? new CoalescingSseEmitter(timeout, properties.getWindowMillis(), properties.getMaxChars())
+                : new ChatSseEmitter(timeout);
+        SseReplayProperties replayProperties = ChatReplayRegistry.getProperties();
+        if (replayProperties.isEnabled()) {
+            emitter.enableReplay(replayProperties.getMaxFrames(), replayProperties.getMaxBytes());
+        }
 
         // 设置超时回调
         emitter.onTimeout(() -> {
@@ -34,7 +58,7 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
                 StreamChatResponse response = new StreamChatResponse();
                 response.setDone(true);
                 response.setContent(TIMEOUT_MESSAGE);
-                emitter.send(response);
+                send(emitter, response);
             } catch (IOException e) {
                 logger.error("系统超时响应失败: {}", e.getMessage());
             }
@@ -42,23 +66,38 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
 
         // 设置错误回调
         emitter.onError((ex) -> {
+            ChatReplayBuffer replayBuffer = emitter.getReplayBuffer();
+            if (replayBuffer != null) {
+                // 客户端断开时回复继续生成，等待重连续传
+                replayBuffer.detach(emitter);
+                return;
+            }
             try {
                 StreamChatResponse response = new StreamChatResponse();
                 response.setDone(true);
                 response.setContent(SYSTEM_ERROR_MESSAGE + ex.getMessage() + "]");
-                emitter.send(response);
+                send(emitter, response);
             } catch (IOException e) {
                 logger.error("系统错误响应失败: {}", e.getMessage());
             }
         });
 
+        // 连接结束释放合帧缓冲区，开启续传时在回复结束时释放
+        if (emitter instanceof CoalescingSseEmitter coalescingEmitter && emitter.getReplayBuffer() == null) {
+            emitter.onCompletion(coalescingEmitter::close);
+        }
+
         return emitter;
     }
 
     @Override
     public void sendMessage(SseEmitter connection, AgentChatResponse response) {
         try {
-            connection.send(response);
+            if (connection instanceof CoalescingSseEmitter coalescingEmitter && MessageTransport.isPlainText(response)) {
+                coalescingEmitter.append(response.getContent());
+            } else {
+                send(connection, response);
+            }
         } catch (IOException e) {
             logger.error("消息发送失败: {}", e.getMessage());
         }
@@ -67,7 +106,7 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
     @Override
     public void sendEndMessage(SseEmitter connection, AgentChatResponse response) {
         try {
-            connection.send(response);
+            send(connection, response);
         } catch (Exception e) {
             logger.error("消息发送失败: {}", e.getMessage());
         } finally {
@@ -77,9 +116,40 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
 
     @Override
     public void completeConnection(SseEmitter connection) {
+        if (connection instanceof CoalescingSseEmitter coalescingEmitter) {
+            try {
+                coalescingEmitter.flush();
+            } catch (Exception e) {
+                logger.error("消息发送失败: {}", e.getMessage());
+            }
+        }
         connection.complete();
     }
 
+    /**
+     * 开启续传时按助理消息id登记续传缓冲区，并在第一帧下发该id
+     */
+    @Override
+    public void startReply(SseEmitter connection, String sessionId, String replyId) {
+        if (connection instanceof ChatSseEmitter chatEmitter && chatEmitter.getReplayBuffer() != null) {
+            ChatReplayRegistry.register(sessionId, replyId, chatEmitter.getReplayBuffer());
+            sendMessage(connection, AgentChatResponse.buildMessage(replyId, MessageType.REPLY_START));
+        }
+    }
+
+    @Override
+    public void onDisconnect(SseEmitter connection, Consumer<String> callback) {
+        connection.onTimeout(() -> callback.accept(StreamCancellation.REASON_TIMEOUT));
+        if (connection instanceof ChatSseEmitter chatEmitter && chatEmitter.getReplayBuffer() != null) {
+            // 开启续传时客户端断开后等待重连，宽限期内未重连才取消
+            chatEmitter.getReplayBuffer().onAbandon(ChatReplayRegistry.getProperties().getGracePeriod().toMillis(),
+                    () -> callback.accept(StreamCancellation.REASON_DISCONNECT));
+            return;
+        }
+        connection.onError(ex -> callback.accept(StreamCancellation.REASON_ERROR));
+        connection.onCompletion(() -> callback.accept(StreamCancellation.REASON_DISCONNECT));
+    }
+
     @Override
     public void handleError(SseEmitter connection, Throwable ex) {
         try {
@@ -87,10 +157,23 @@ public class SseMessageTransport implements MessageTransport<SseEmitter>{
             response.setContent(ex.getMessage());
             response.setDone(true);
             response.setThinking(false);
-            connection.send(response);
+            send(connection, response);
             connection.complete();
         } catch (IOException e) {
             logger.error("错误响应失败: {}", e.getMessage());
         }
     }
+
+    /**
+     * 发送完整的一帧，合帧模式下先刷出已缓冲的token
+     */
+    private void send(SseEmitter connection, Object data) throws IOException {
+        if (connection instanceof CoalescingSseEmitter coalescingEmitter) {
+            coalescingEmitter.sendFrame(data);
+        } else if (connection instanceof ChatSseEmitter chatEmitter && data instanceof AgentChatResponse response) {
+            chatEmitter.sendChat(response);
+        } else {
+            connection.send(data);
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:05
+ * @Description: 客户端WebSocket通道，一个socket承载多个会话、多轮对话的消息流
+ * 发送队列按字节数设置高低水位：超过高水位时发送方阻塞，直到写出到低水位以下，
+ * 发送方即LLM回调线程，阻塞后不再读取上游响应，从而暂停上游token流。
+ * 队列由当前入队线程负责写出，同一时刻只有一个线程调用session.sendMessage
+ */
+public class WebsocketChannel {
+
+    private static final Counter PAUSE_COUNTER = Counter.builder("chat.websocket.backpressure.pauses")
+            .description("WebSocket发送缓冲区已满导致上游暂停的次数")
+            .register(Metrics.globalRegistry);
+
+    private final WebSocketSession session;
+
+    private final long highWatermark;
+
+    private final long lowWatermark;
+
+    private final long maxPauseNanos;
+
+    private final Object lock = new Object();
+
+    private final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+
+    private long queuedBytes;
+
+    private boolean writing;
+
+    private boolean closed;
+
+    /**
+     * 通道关闭回调，key: streamId
+     */
+    private final Map<Integer, Runnable> closeListeners = new ConcurrentHashMap<>();
+
+    public WebsocketChannel(WebSocketSession session, long highWatermark, long lowWatermark, Duration maxPause) {
+        this.session = session;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = Math.min(lowWatermark, highWatermark);
+        this.maxPauseNanos = maxPause.toNanos();
+    }
+
+    /**
+     * 发送消息，缓冲区已满时阻塞
+     */
+    public void send(WebSocketMessage<?> message) throws IOException {
+        synchronized (lock) {
+            awaitCapacity();
+            queue.addLast(message);
+            queuedBytes += message.getPayloadLength();
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        drain();
+    }
+
+    /**
+     * 关闭通道，唤醒所有等待的发送方
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            writing = false;
+            queue.clear();
+            queuedBytes = 0;
+            lock.notifyAll();
+        }
+        List<Runnable> listeners = new ArrayList<>(closeListeners.values());
+        closeListeners.clear();
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * 注册通道关闭回调，已关闭时立即执行
+     */
+    public void addCloseListener(int streamId, Runnable listener) {
+        closeListeners.put(streamId, listener);
+        if (!isOpen() && closeListeners.remove(streamId, listener)) {
+            listener.run();
+        }
+    }
+
+    public void removeCloseListener(int streamId) {
+        closeListeners.remove(streamId);
+    }
+
+    public boolean isOpen() {
+        synchronized (lock) {
+            return !closed && session.isOpen();
+        }
+    }
+
+    public String getId() {
+        return session.getId();
+    }
+
+    private void awaitCapacity() throws IOException {
+        if (closed) {
+            throw new IOException("WebSocket连接已关闭");
+        }
+        if (queuedBytes < highWatermark) {
+            return;
+        }
+        PAUSE_COUNTER.increment();
+        long deadline = System.nanoTime() + maxPauseNanos;
+        while (queuedBytes > lowWatermark && !closed) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new IOException("客户端接收过慢，发送超时");
+            }
+            try {
+                lock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待WebSocket发送被中断");
+            }
+        }
+        if (closed) {
+            throw new IOException("WebSocket连接已关闭");
+        }
+    }
+
+    private void drain() throws IOException {
+        while (true) {
+            WebSocketMessage<?> message;
+            synchronized (lock) {
+                message = queue.pollFirst();
+                if (message == null || closed) {
+                    writing = false;
+                    return;
+                }
+            }
+            try {
+                session.sendMessage(message);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+            synchronized (lock) {
+                if (!closed) {
+                    queuedBytes -= message.getPayloadLength();
+                    if (queuedBytes <= lowWatermark) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
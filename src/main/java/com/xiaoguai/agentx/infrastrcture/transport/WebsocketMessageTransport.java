@@ -2,36 +2,83 @@ package com.xiaoguai.agentx.infrastrcture.transport;
 
 
 import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import com.xiaoguai.agentx.infrastrcture.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * @Author: the-way
  * @Verson: v1.0
  * @Date: 2025-08-18 10:18
- * @Description: TODO Websocket消息传输
+ * @Description: Websocket消息传输，每轮对话绑定客户端通道上的一个streamId
  */
-public class WebsocketMessageTransport implements MessageTransport {
-    @Override
-    public Object createConnection(long timeout) {
-        return null;
-    }
+public class WebsocketMessageTransport implements MessageTransport<WebsocketStream> {
 
-    @Override
-    public void sendMessage(Object connection, AgentChatResponse response) {
+    private static final Logger logger = LoggerFactory.getLogger(WebsocketMessageTransport.class);
+
+    private final WebsocketChannel channel;
+
+    private final int streamId;
 
+    public WebsocketMessageTransport(WebsocketChannel channel, int streamId) {
+        this.channel = channel;
+        this.streamId = streamId;
     }
 
+    /**
+     * socket由客户端长期持有，单轮对话不单独设置超时
+     */
     @Override
-    public void sendEndMessage(Object connection, AgentChatResponse response) {
+    public WebsocketStream createConnection(long timeout) {
+        return new WebsocketStream(channel, streamId);
+    }
 
+    @Override
+    public void sendMessage(WebsocketStream connection, AgentChatResponse response) {
+        try {
+            if (MessageTransport.isPlainText(response)) {
+                connection.send(WebsocketStream.FRAME_TOKEN, response.getContent());
+            } else {
+                connection.send(WebsocketStream.FRAME_MESSAGE, JsonUtils.toJsonString(response));
+            }
+        } catch (IOException e) {
+            logger.error("消息发送失败: {}", e.getMessage());
+        }
     }
 
     @Override
-    public void completeConnection(Object connection) {
+    public void sendEndMessage(WebsocketStream connection, AgentChatResponse response) {
+        try {
+            connection.send(WebsocketStream.FRAME_END, JsonUtils.toJsonString(response));
+        } catch (IOException e) {
+            logger.error("消息发送失败: {}", e.getMessage());
+        }
+    }
 
+    @Override
+    public void completeConnection(WebsocketStream connection) {
+        try {
+            connection.send(WebsocketStream.FRAME_END, null);
+        } catch (IOException e) {
+            logger.error("消息发送失败: {}", e.getMessage());
+        }
     }
 
     @Override
-    public void handleError(Object connection, Throwable ex) {
+    public void onDisconnect(WebsocketStream connection, Consumer<String> callback) {
+        connection.onClose(() -> callback.accept(StreamCancellation.REASON_DISCONNECT));
+    }
 
+    @Override
+    public void handleError(WebsocketStream connection, Throwable ex) {
+        try {
+            connection.send(WebsocketStream.FRAME_ERROR, ex.getMessage());
+        } catch (IOException e) {
+            logger.error("错误响应失败: {}", e.getMessage());
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+
+import org.springframework.web.socket.BinaryMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:20
+ * @Description: WebSocket通道上的一轮对话消息流
+ * 二进制帧格式：[1字节帧类型][4字节streamId，大端][UTF-8负载]
+ * TOKEN帧负载为token原文，MESSAGE/END帧负载为AgentChatResponse的JSON，ERROR帧负载为错误信息
+ */
+public class WebsocketStream {
+
+    public static final byte FRAME_TOKEN = 1;
+    public static final byte FRAME_MESSAGE = 2;
+    public static final byte FRAME_END = 3;
+    public static final byte FRAME_ERROR = 4;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private final WebsocketChannel channel;
+
+    private final int streamId;
+
+    public WebsocketStream(WebsocketChannel channel, int streamId) {
+        this.channel = channel;
+        this.streamId = streamId;
+    }
+
+    /**
+     * 发送一帧
+     *
+     * @param type    帧类型
+     * @param payload 负载，可为空
+     */
+    public void send(byte type, String payload) throws IOException {
+        byte[] bytes = payload == null ? new byte[0] : payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + bytes.length);
+        buffer.put(type).putInt(streamId).put(bytes).flip();
+        if (type == FRAME_END || type == FRAME_ERROR) {
+            // 本轮对话结束，之后的断开与本轮无关
+            channel.removeCloseListener(streamId);
+        }
+        channel.send(new BinaryMessage(buffer));
+    }
+
+    /**
+     * 通道关闭时回调，本轮对话结束后自动移除
+     */
+    public void onClose(Runnable callback) {
+        channel.addCloseListener(streamId, callback);
+    }
+
+    public WebsocketChannel getChannel() {
+        return channel;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+}
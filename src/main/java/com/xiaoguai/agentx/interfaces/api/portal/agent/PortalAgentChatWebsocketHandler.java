@@ -0,0 +1,111 @@
+package com.xiaoguai.agentx.interfaces.api.portal.agent;
+
+
+import com.xiaoguai.agentx.application.conversation.ConversationAppService;
+import com.xiaoguai.agentx.application.conversation.dto.WebsocketChatRequest;
+import com.xiaoguai.agentx.infrastrcture.auth.UserContext;
+import com.xiaoguai.agentx.infrastrcture.auth.WebsocketAuthInterceptor;
+import com.xiaoguai.agentx.infrastrcture.config.WebsocketTransportProperties;
+import com.xiaoguai.agentx.infrastrcture.transport.MessageTransportFactory;
+import com.xiaoguai.agentx.infrastrcture.transport.WebsocketChannel;
+import com.xiaoguai.agentx.infrastrcture.transport.WebsocketStream;
+import com.xiaoguai.agentx.infrastrcture.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @Author: the-way
+ * @Verson: v1.0
+ * @Date: 2026-10-18 16:50
+ * @Description: Agent聊天WebSocket入口
+ * 客户端发送JSON文本帧 {"streamId":1,"sessionId":"..","message":"..","enableThink":false,"enableSearch":false}，
+ * 服务端以二进制帧返回，帧格式见WebsocketStream
+ */
+@Component
+public class PortalAgentChatWebsocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortalAgentChatWebsocketHandler.class);
+
+    private static final String CHANNEL_ATTRIBUTE = "chatChannel";
+
+    private final ConversationAppService conversationAppService;
+    private final ExecutorService contextExecutorService;
+    private final WebsocketTransportProperties properties;
+
+    public PortalAgentChatWebsocketHandler(ConversationAppService conversationAppService,
+                                           ExecutorService contextExecutorService,
+                                           WebsocketTransportProperties properties) {
+        this.conversationAppService = conversationAppService;
+        this.contextExecutorService = contextExecutorService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        WebsocketChannel channel = new WebsocketChannel(session, properties.getHighWatermark(),
+                properties.getLowWatermark(), properties.getMaxPause());
+        session.getAttributes().put(CHANNEL_ATTRIBUTE, channel);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        WebsocketChannel channel = (WebsocketChannel) session.getAttributes().get(CHANNEL_ATTRIBUTE);
+        String userId = (String) session.getAttributes().get(WebsocketAuthInterceptor.USER_ID_ATTRIBUTE);
+
+        WebsocketChatRequest request = JsonUtils.parseObject(message.getPayload(), WebsocketChatRequest.class);
+        if (request == null || request.getStreamId() == null) {
+            new WebsocketStream(channel, 0).send(WebsocketStream.FRAME_ERROR, "请求格式错误");
+            return;
+        }
+        WebsocketStream stream = new WebsocketStream(channel, request.getStreamId());
+        if (!StringUtils.hasText(request.getSessionId()) || !StringUtils.hasText(request.getMessage())) {
+            stream.send(WebsocketStream.FRAME_ERROR, "会话Id和消息不能为空");
+            return;
+        }
+
+        // 准备对话环境涉及数据库访问，放到线程池执行，避免阻塞同一socket上的后续消息
+        contextExecutorService.execute(() -> {
+            UserContext.setUserId(userId);
+            try {
+                conversationAppService.chat(request, userId,
+                        MessageTransportFactory.createWebsocketTransport(channel, request.getStreamId()));
+            } catch (Exception e) {
+                logger.error("WebSocket聊天处理失败: {}", e.getMessage());
+                try {
+                    stream.send(WebsocketStream.FRAME_ERROR, e.getMessage());
+                } catch (IOException ex) {
+                    logger.error("错误响应失败: {}", ex.getMessage());
+                }
+            } finally {
+                UserContext.clear();
+            }
+        });
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.warn("WebSocket传输异常, session: {}, {}", session.getId(), exception.getMessage());
+        closeChannel(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        closeChannel(session);
+    }
+
+    private void closeChannel(WebSocketSession session) {
+        Object channel = session.getAttributes().get(CHANNEL_ATTRIBUTE);
+        if (channel instanceof WebsocketChannel websocketChannel) {
+            websocketChannel.close();
+        }
+    }
+}
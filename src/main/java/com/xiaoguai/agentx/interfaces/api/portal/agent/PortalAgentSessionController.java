@@ -2,17 +2,24 @@ package com.xiaoguai.agentx.interfaces.api.portal.agent;
 
 
 import com.xiaoguai.agentx.application.agent.service.AgentSessionAppService;
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
 import com.xiaoguai.agentx.application.conversation.dto.StreamChatRequest;
 import com.xiaoguai.agentx.application.conversation.ConversationAppService;
 import com.xiaoguai.agentx.application.conversation.dto.MessageDTO;
 import com.xiaoguai.agentx.application.conversation.dto.SessionDTO;
 import com.xiaoguai.agentx.infrastrcture.auth.UserContext;
+import com.xiaoguai.agentx.infrastrcture.auth.WebsocketTicketService;
+import com.xiaoguai.agentx.infrastrcture.trace.ChatTurnTrace;
 import com.xiaoguai.agentx.interfaces.api.common.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import reactor.core.publisher.Flux;
+
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -30,10 +37,22 @@ public class PortalAgentSessionController {
     private final AgentSessionAppService agentSessionAppService;
     private final ConversationAppService conversationAppService;
     private final ExecutorService contextExecutorService;
-    public PortalAgentSessionController(AgentSessionAppService agentSessionAppService, ConversationAppService conversationAppService, ExecutorService contextExecutorService) {
+    private final WebsocketTicketService websocketTicketService;
+    public PortalAgentSessionController(AgentSessionAppService agentSessionAppService, ConversationAppService conversationAppService,
+                                        ExecutorService contextExecutorService, WebsocketTicketService websocketTicketService) {
         this.agentSessionAppService = agentSessionAppService;
         this.conversationAppService = conversationAppService;
         this.contextExecutorService = contextExecutorService;
+        this.websocketTicketService = websocketTicketService;
+    }
+
+    /**
+     * 获取WebSocket握手票据，一次性使用，连接时通过ticket参数携带
+     */
+    @PostMapping("/ws-ticket")
+    public Result<String> issueWebsocketTicket() {
+        String userId = UserContext.getUserId();
+        return Result.success(websocketTicketService.issue(userId));
     }
 
 
@@ -46,6 +65,25 @@ public class PortalAgentSessionController {
         return Result.success(conversationAppService.getSessionMessages(sessionId, userId));
     }
 
+    /**
+     * 开启或关闭会话调试追踪
+     */
+    @PutMapping("/{sessionId}/trace")
+    public Result<Void> setSessionTrace(@PathVariable String sessionId, @RequestParam boolean enabled) {
+        String userId = UserContext.getUserId();
+        conversationAppService.setSessionTrace(sessionId, userId, enabled);
+        return Result.success();
+    }
+
+    /**
+     * 获取会话调试追踪
+     */
+    @GetMapping("/{sessionId}/trace")
+    public Result<List<ChatTurnTrace>> getSessionTraces(@PathVariable String sessionId) {
+        String userId = UserContext.getUserId();
+        return Result.success(conversationAppService.getSessionTraces(sessionId, userId));
+    }
+
     /**
      * 获取Agent会话列表
      */
@@ -93,4 +131,24 @@ public class PortalAgentSessionController {
         String userId = UserContext.getUserId();
         return conversationAppService.chatStream(request, userId);
     }
+
+    /**
+     * 断线续传，按回复第一帧下发的助理消息id，从Last-Event-ID之后继续接收回复
+     */
+    @GetMapping("/chat/resume")
+    public SseEmitter resumeMessage(@RequestParam String sessionId, @RequestParam String replyId,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        String userId = UserContext.getUserId();
+        return conversationAppService.resumeStream(sessionId, userId, replyId, lastEventId);
+    }
+
+    /**
+     * 发送消息（响应式）
+     */
+    @PostMapping(value = "/chat/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AgentChatResponse>> sendMessageFlux(@RequestBody StreamChatRequest request) {
+        String userId = UserContext.getUserId();
+        return conversationAppService.chatFlux(request, userId)
+                .map(response -> ServerSentEvent.builder(response).build());
+    }
 }
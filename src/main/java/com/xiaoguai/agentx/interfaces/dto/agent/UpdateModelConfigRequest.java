@@ -20,6 +20,11 @@ public class UpdateModelConfigRequest {
     @NotBlank(message = "模型ID不能为空")
     private String modelId;
 
+    /**
+     * 备用模型ID，可选
+     */
+    private String hedgeModelId;
+
     /**
      * 温度参数，范围0-2
      */
@@ -58,6 +63,11 @@ public class UpdateModelConfigRequest {
      */
     private Integer summaryThreshold;
 
+    /**
+     * 始终保留的最新消息数，适用于相关性策略
+     */
+    private Integer recentMessages;
+
     public String getModelId() {
         return modelId;
     }
@@ -121,4 +131,20 @@ public class UpdateModelConfigRequest {
     public void setSummaryThreshold(Integer summaryThreshold) {
         this.summaryThreshold = summaryThreshold;
     }
+
+    public String getHedgeModelId() {
+        return hedgeModelId;
+    }
+
+    public void setHedgeModelId(String hedgeModelId) {
+        this.hedgeModelId = hedgeModelId;
+    }
+
+    public Integer getRecentMessages() {
+        return recentMessages;
+    }
+
+    public void setRecentMessages(Integer recentMessages) {
+        this.recentMessages = recentMessages;
+    }
 }
@@ -0,0 +1,75 @@
+package com.xiaoguai.agentx.domain.conversation.model;
+
+import com.xiaoguai.agentx.domain.token.model.ContextWindow;
+import com.xiaoguai.agentx.domain.token.model.SummaryTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上下文在最新上下文上重放本轮修改：并发对话追加的消息保留，序号不重复
+ */
+class ContextEntityTest {
+
+    private static ContextEntity context(String... messageIds) {
+        ContextEntity context = new ContextEntity();
+        context.setId("c");
+        context.setSessionId("s");
+        List<ContextWindowEntity> rows = new ArrayList<>();
+        for (int i = 0; i < messageIds.length; i++) {
+            rows.add(ContextWindowEntity.of("s", new ContextWindow.Entry(i, messageIds[i], 10)));
+        }
+        context.restoreWindow(rows);
+        return context;
+    }
+
+    @Test
+    void concurrentTurnsGetDistinctSeqs() {
+        ContextEntity turnA = context("m0", "m1");
+        ContextEntity turnB = context("m0", "m1");
+        ContextWindow.Entry a = turnA.appendMessage("a", 10);
+
+        turnB.rebase(turnA);
+        ContextWindow.Entry b = turnB.appendMessage("b", 10);
+
+        assertEquals(2, a.getSeq());
+        assertEquals(3, b.getSeq());
+        assertEquals(List.of("m0", "m1", "a", "b"), turnB.getActiveMessages());
+        assertFalse(turnB.rowChanged());
+    }
+
+    @Test
+    void keepsTurnEviction() {
+        ContextEntity latest = context("m0", "m1", "m2");
+        latest.appendMessage("x", 10);
+        ContextEntity turn = context("m0", "m1", "m2");
+        turn.evictOldest(2);
+
+        turn.rebase(latest);
+
+        assertEquals(2L, turn.getWindowStart());
+        assertEquals(List.of("m2", "x"), turn.getActiveMessages());
+        assertEquals(4, turn.nextSeq());
+        assertTrue(turn.rowChanged());
+    }
+
+    @Test
+    void takesLatestSummaryWhenTurnDidNotChangeRow() {
+        ContextEntity latest = context("m0", "m1", "m2");
+        latest.applySummary(SummaryTree.of("摘要"), 100, List.of("m0"));
+        latest.clearRowChanged();
+        ContextEntity turn = context("m0", "m1", "m2");
+
+        turn.rebase(latest);
+
+        assertEquals("摘要", turn.getSummary());
+        assertEquals(1L, turn.getWindowStart());
+        assertEquals(List.of("m1", "m2"), turn.getActiveMessages());
+        assertFalse(turn.rowChanged());
+    }
+}
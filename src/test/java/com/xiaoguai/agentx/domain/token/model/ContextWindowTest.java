@@ -0,0 +1,103 @@
+package com.xiaoguai.agentx.domain.token.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上下文窗口：累计token数、从头部移出的条数与序号
+ */
+class ContextWindowTest {
+
+    private static ContextWindow window(int... tokens) {
+        ContextWindow window = new ContextWindow();
+        for (int i = 0; i < tokens.length; i++) {
+            window.append("m" + i, tokens[i]);
+        }
+        return window;
+    }
+
+    @Test
+    void tracksRunningTotal() {
+        ContextWindow window = window(10, 20, 30);
+        assertEquals(60, window.totalTokens());
+        window.pollFirst();
+        assertEquals(50, window.totalTokens());
+        assertEquals(List.of("m1", "m2"), window.messageIds());
+    }
+
+    @Test
+    void evictionsToFitCountsOnlyWhatIsNeeded() {
+        ContextWindow window = window(10, 20, 30, 40);
+        assertEquals(0, window.evictionsToFit(101));
+        // 总数等于上限时也需要移出
+        assertEquals(1, window.evictionsToFit(100));
+        assertEquals(1, window.evictionsToFit(91));
+        assertEquals(2, window.evictionsToFit(90));
+        assertEquals(3, window.evictionsToFit(41));
+        assertEquals(4, window.evictionsToFit(40));
+        assertEquals(4, window.evictionsToFit(0));
+    }
+
+    @Test
+    void evictionsToFitIncludesSummaryTokens() {
+        ContextWindow window = window(10, 20, 30);
+        window.setSummaryTokens(50);
+        assertEquals(110, window.budgetTokens());
+        assertEquals(0, window.evictionsToFit(111));
+        assertEquals(2, window.evictionsToFit(90));
+        // 摘要本身超限时移出全部消息
+        assertEquals(3, window.evictionsToFit(50));
+    }
+
+    @Test
+    void evictionsToFitOnEmptyWindow() {
+        assertEquals(0, new ContextWindow().evictionsToFit(0));
+    }
+
+    @Test
+    void assignsIncreasingSequenceAcrossEvictions() {
+        ContextWindow window = window(1, 1);
+        assertEquals(0, window.startSeq());
+        window.pollFirst();
+        window.pollFirst();
+        assertNull(window.pollFirst());
+        // 清空后起始序号为下一条消息的序号
+        assertEquals(2, window.startSeq());
+        assertEquals(2, window.append("m2", 1).getSeq());
+    }
+
+    @Test
+    void restoreContinuesAfterLastSequence() {
+        ContextWindow window = ContextWindow.restore(
+                List.of(new ContextWindow.Entry(5, "a", 3), new ContextWindow.Entry(6, "b", 4)), 5);
+        assertEquals(7, window.totalTokens());
+        assertEquals(5, window.startSeq());
+        assertEquals(7, window.append("c", 1).getSeq());
+        assertEquals(9, ContextWindow.restore(List.of(), 9).append("d", 1).getSeq());
+    }
+
+    @Test
+    void matchesComparesIdsInOrder() {
+        ContextWindow window = window(1, 1);
+        assertTrue(window.matches(List.of("m0", "m1")));
+        assertFalse(window.matches(List.of("m1", "m0")));
+        assertFalse(window.matches(List.of("m0")));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        ContextWindow window = window(10, 20);
+        ContextWindow copy = window.copy();
+        copy.pollFirst();
+        copy.append("x", 5);
+        assertEquals(30, window.totalTokens());
+        assertEquals(List.of("m0", "m1"), window.messageIds());
+        assertEquals(2, window.append("m2", 1).getSeq());
+    }
+}
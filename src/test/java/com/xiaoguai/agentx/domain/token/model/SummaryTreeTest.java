@@ -0,0 +1,107 @@
+package com.xiaoguai.agentx.domain.token.model;
+
+import com.xiaoguai.agentx.infrastrcture.llm.tokenizer.LocalTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层摘要：注入提示词的摘要不超过token上限，二级摘要优先，其余从最新的一级片段填充
+ */
+class SummaryTreeTest {
+
+    private static final String SEPARATOR = "\n\n";
+
+    @Test
+    void renderWithoutLimitJoinsEverything() {
+        SummaryTree tree = SummaryTree.of("rollup");
+        tree.addChunk("first");
+        tree.addChunk("second");
+        assertEquals("rollup\n\nfirst\n\nsecond", tree.render(0));
+    }
+
+    @Test
+    void renderKeepsNewestChunksWithinBudget() {
+        SummaryTree tree = new SummaryTree();
+        tree.addChunk("alpha beta gamma");
+        tree.addChunk("delta epsilon");
+        tree.addChunk("zeta eta");
+
+        int budget = LocalTokenizer.countTokens("delta epsilon") + LocalTokenizer.countTokens(SEPARATOR)
+                + LocalTokenizer.countTokens("zeta eta");
+        String rendered = tree.render(budget);
+        assertEquals("delta epsilon\n\nzeta eta", rendered);
+        assertTrue(LocalTokenizer.countTokens(rendered) <= budget);
+    }
+
+    @Test
+    void renderPrefersRollupOverChunks() {
+        SummaryTree tree = SummaryTree.of("the rollup summary");
+        tree.addChunk("older chunk");
+        tree.addChunk("newest");
+
+        int rollupTokens = LocalTokenizer.countTokens("the rollup summary");
+        int budget = rollupTokens + LocalTokenizer.countTokens(SEPARATOR) + LocalTokenizer.countTokens("newest");
+        assertEquals("the rollup summary\n\nnewest", tree.render(budget));
+        assertEquals("the rollup summary", tree.render(rollupTokens));
+    }
+
+    @Test
+    void renderTruncatesOversizedRollup() {
+        String rollup = "one two three four five six seven eight nine ten";
+        SummaryTree tree = SummaryTree.of(rollup);
+        tree.addChunk("chunk");
+
+        String rendered = tree.render(3);
+        assertTrue(LocalTokenizer.countTokens(rendered) <= 3);
+        assertTrue(rollup.startsWith(rendered));
+        assertFalse(rendered.contains("chunk"));
+    }
+
+    @Test
+    void renderStopsAtFirstChunkThatDoesNotFit() {
+        SummaryTree tree = new SummaryTree();
+        tree.addChunk("tiny");
+        tree.addChunk("a considerably longer chunk of summary text");
+        tree.addChunk("last");
+
+        // 较早的片段即使放得下也不跳过中间的片段，保持时间连续
+        int budget = LocalTokenizer.countTokens("last") + LocalTokenizer.countTokens(SEPARATOR)
+                + LocalTokenizer.countTokens("tiny");
+        assertEquals("last", tree.render(budget));
+    }
+
+    @Test
+    void rollupReplacesChunks() {
+        SummaryTree tree = SummaryTree.of("old");
+        tree.addChunk("a");
+        tree.addChunk("b");
+        assertEquals(List.of("old", "a", "b"), tree.rollupInput());
+
+        tree.rollup("merged");
+        assertEquals(List.of("merged"), tree.rollupInput());
+        assertEquals(0, tree.chunkTokens());
+    }
+
+    @Test
+    void legacyTextAndBlankInputs() {
+        assertFalse(SummaryTree.of(null).hasContent());
+        assertFalse(SummaryTree.of("null").hasContent());
+        SummaryTree tree = SummaryTree.of(" ");
+        tree.addChunk("");
+        assertFalse(tree.hasContent());
+        assertEquals("", tree.render(100));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        SummaryTree tree = SummaryTree.of("r");
+        SummaryTree copy = tree.copy();
+        copy.addChunk("c");
+        assertEquals(List.of("r"), tree.rollupInput());
+    }
+}
@@ -0,0 +1,169 @@
+package com.xiaoguai.agentx.infrastrcture.admission;
+
+import com.xiaoguai.agentx.infrastrcture.config.ChatAdmissionProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对话准入：按用户轮转放行、单用户排队上限、排队超时与重复释放
+ */
+class ChatAdmissionControllerTest {
+
+    private static ChatAdmissionProperties properties(int maxConcurrent, int maxConcurrentPerUser, int maxQueuePerUser) {
+        ChatAdmissionProperties properties = new ChatAdmissionProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.setMaxConcurrentPerUser(maxConcurrentPerUser);
+        properties.setMaxQueuePerUser(maxQueuePerUser);
+        properties.setMaxQueueSize(100);
+        properties.setMaxWait(Duration.ofMinutes(1));
+        return properties;
+    }
+
+    @Test
+    void admitsImmediatelyWhenBelowLimits() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(2, 2, 5));
+        assertTrue(controller.enter("a").isAdmitted());
+        assertTrue(controller.enter("b").isAdmitted());
+        assertFalse(controller.enter("c").isAdmitted());
+    }
+
+    @Test
+    void dispatchesRoundRobinAcrossUsers() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(1, 10, 10));
+        ChatAdmissionController.Ticket running = controller.enter("a");
+        ChatAdmissionController.Ticket a2 = controller.enter("a");
+        ChatAdmissionController.Ticket a3 = controller.enter("a");
+        ChatAdmissionController.Ticket b1 = controller.enter("b");
+        ChatAdmissionController.Ticket c1 = controller.enter("c");
+
+        List<ChatAdmissionController.Ticket> order = new ArrayList<>();
+        List<ChatAdmissionController.Ticket> pending = new ArrayList<>(List.of(a2, a3, b1, c1));
+        ChatAdmissionController.Ticket current = running;
+        while (!pending.isEmpty()) {
+            current.release();
+            ChatAdmissionController.Ticket next = pending.stream()
+                    .filter(ChatAdmissionController.Ticket::isAdmitted)
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(1, pending.stream().filter(ChatAdmissionController.Ticket::isAdmitted).count());
+            pending.remove(next);
+            order.add(next);
+            current = next;
+        }
+        // a放行一个后移到队尾，b、c先于a的第二个请求
+        assertEquals(List.of(a2, b1, c1, a3), order);
+    }
+
+    @Test
+    void perUserLimitDoesNotBlockOtherUsers() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(10, 1, 5));
+        assertTrue(controller.enter("a").isAdmitted());
+        ChatAdmissionController.Ticket queued = controller.enter("a");
+        assertFalse(queued.isAdmitted());
+        assertTrue(controller.enter("b").isAdmitted());
+    }
+
+    @Test
+    void rejectsWhenUserQueueIsFull() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(1, 1, 2));
+        controller.enter("a");
+        controller.enter("a");
+        controller.enter("a");
+        assertThrows(BusinessException.class, () -> controller.enter("a"));
+        // 其他用户不受单用户排队上限影响
+        assertFalse(controller.enter("b").isAdmitted());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        ChatAdmissionProperties properties = properties(1, 1, 5);
+        properties.setMaxQueueSize(2);
+        ChatAdmissionController controller = new ChatAdmissionController(properties);
+        controller.enter("a");
+        controller.enter("b");
+        controller.enter("c");
+        assertThrows(BusinessException.class, () -> controller.enter("d"));
+    }
+
+    @Test
+    void expiresTicketAfterMaxWait() throws Exception {
+        ChatAdmissionProperties properties = properties(1, 1, 5);
+        properties.setMaxWait(Duration.ofMillis(50));
+        ChatAdmissionController controller = new ChatAdmissionController(properties);
+        ChatAdmissionController.Ticket running = controller.enter("a");
+        ChatAdmissionController.Ticket waiting = controller.enter("b");
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> waiting.admission().get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BusinessException.class, e.getCause());
+
+        // 超时的请求已移出队列，名额释放后不会被放行
+        running.release();
+        assertFalse(waiting.isAdmitted());
+        assertTrue(controller.enter("c").isAdmitted());
+    }
+
+    @Test
+    void releasingWaitingTicketCancelsIt() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(1, 1, 5));
+        ChatAdmissionController.Ticket running = controller.enter("a");
+        ChatAdmissionController.Ticket waiting = controller.enter("b");
+        ChatAdmissionController.Ticket next = controller.enter("c");
+
+        waiting.release();
+        assertThrows(CancellationException.class, () -> waiting.admission().get());
+
+        running.release();
+        assertTrue(next.isAdmitted());
+    }
+
+    @Test
+    void releaseIsIdempotent() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(1, 1, 5));
+        ChatAdmissionController.Ticket first = controller.enter("a");
+        ChatAdmissionController.Ticket second = controller.enter("b");
+
+        first.release();
+        first.release();
+        assertTrue(second.isAdmitted());
+        // 重复释放不会多出名额
+        assertFalse(controller.enter("c").isAdmitted());
+    }
+
+    @Test
+    void notifiesQueuePositions() {
+        ChatAdmissionController controller = new ChatAdmissionController(properties(1, 1, 5));
+        ChatAdmissionController.Ticket running = controller.enter("a");
+        ChatAdmissionController.Ticket b = controller.enter("b");
+        ChatAdmissionController.Ticket c = controller.enter("c");
+        List<Integer> positions = new ArrayList<>();
+        c.onPosition(positions::add);
+
+        running.release();
+        assertTrue(b.isAdmitted());
+        assertEquals(List.of(2, 1), positions);
+    }
+
+    @Test
+    void disabledAdmitsEverything() {
+        ChatAdmissionProperties properties = properties(0, 0, 0);
+        properties.setEnabled(false);
+        ChatAdmissionController controller = new ChatAdmissionController(properties);
+        ChatAdmissionController.Ticket ticket = controller.enter("a");
+        assertTrue(ticket.isAdmitted());
+        ticket.release();
+    }
+}
@@ -0,0 +1,84 @@
+package com.xiaoguai.agentx.infrastrcture.llm.ratelimit;
+
+import com.xiaoguai.agentx.infrastrcture.config.ProviderRateLimitProperties;
+import com.xiaoguai.agentx.infrastrcture.exception.BusinessException;
+import com.xiaoguai.agentx.infrastrcture.http.StreamCancellation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 服务商限流：配额不足时不阻塞调用线程、舱壁按顺序移交许可、取消与超时退还配额
+ */
+class ProviderLimiterTest {
+
+    private static ProviderLimiter limiter(Integer rpm, Integer maxConcurrent, Duration acquireTimeout) {
+        return new ProviderLimiter("test", new ProviderRateLimitProperties.Limit(rpm, 0, maxConcurrent, acquireTimeout));
+    }
+
+    @Test
+    void grantsImmediatelyWhenQuotaAvailable() {
+        ProviderLimiter limiter = limiter(0, 2, Duration.ofSeconds(1));
+        assertTrue(limiter.acquire(10, null).isDone());
+        assertTrue(limiter.acquire(10, null).isDone());
+    }
+
+    @Test
+    void queuedRequestTakesOverReleasedSlot() throws Exception {
+        ProviderLimiter limiter = limiter(0, 1, Duration.ofMinutes(1));
+        ProviderLimiter.Permit first = limiter.acquire(10, null).get();
+        CompletableFuture<ProviderLimiter.Permit> second = limiter.acquire(10, null);
+        assertFalse(second.isDone());
+
+        first.release(null);
+        assertTrue(second.isDone());
+        second.get().release(null);
+        assertTrue(limiter.acquire(10, null).isDone());
+    }
+
+    @Test
+    void cancelledWaiterIsSkipped() throws Exception {
+        ProviderLimiter limiter = limiter(0, 1, Duration.ofMinutes(1));
+        ProviderLimiter.Permit first = limiter.acquire(10, null).get();
+        StreamCancellation cancellation = new StreamCancellation();
+        CompletableFuture<ProviderLimiter.Permit> cancelled = limiter.acquire(10, cancellation);
+        CompletableFuture<ProviderLimiter.Permit> third = limiter.acquire(10, null);
+
+        cancellation.cancel(StreamCancellation.REASON_DISCONNECT);
+        assertThrows(CancellationException.class, cancelled::join);
+
+        first.release(null);
+        assertTrue(third.isDone());
+    }
+
+    @Test
+    void bulkheadWaitTimesOut() {
+        ProviderLimiter limiter = limiter(0, 1, Duration.ofMillis(50));
+        assertTrue(limiter.acquire(10, null).isDone());
+        CompletableFuture<ProviderLimiter.Permit> second = limiter.acquire(10, null);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BusinessException.class, error.getCause());
+    }
+
+    @Test
+    void rateWaitDoesNotBlockCaller() {
+        ProviderLimiter limiter = limiter(1, 0, Duration.ofMinutes(5));
+        assertTrue(limiter.acquire(10, null).isDone());
+
+        StreamCancellation cancellation = new StreamCancellation();
+        CompletableFuture<ProviderLimiter.Permit> waiting = limiter.acquire(10, cancellation);
+        assertFalse(waiting.isDone());
+
+        cancellation.cancel(StreamCancellation.REASON_TIMEOUT);
+        assertThrows(CancellationException.class, waiting::join);
+    }
+}
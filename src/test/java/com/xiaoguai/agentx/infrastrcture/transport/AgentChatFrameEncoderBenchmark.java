@@ -0,0 +1,103 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个token编码为SSE帧的开销对比：
+ * jackson 为原有路径（构建AgentChatResponse -> SseEventBuilder -> Jackson/String转换器写出），
+ * encoder 为预编码路径。
+ * 运行：在IDE中执行main，或 mvn test-compile 后用test classpath启动，
+ * 关注 gc.alloc.rate.norm（每次操作分配字节数）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentChatFrameEncoderBenchmark {
+
+    @Param({"你好", "Hello, world", "第一行\n\"引用\" 与 emoji 😀"})
+    private String token;
+
+    private ObjectMapper objectMapper;
+
+    private AgentChatFrameEncoder encoder;
+
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        encoder = new AgentChatFrameEncoder();
+        output = new ByteArrayOutputStream(1024);
+    }
+
+    @Benchmark
+    public void jackson(Blackhole blackhole) throws IOException {
+        output.reset();
+        AgentChatResponse response = AgentChatResponse.buildMessage(token, MessageType.TEXT);
+        Set<ResponseBodyEmitter.DataWithMediaType> items = SseEmitter.event().data(response).build();
+        for (ResponseBodyEmitter.DataWithMediaType item : items) {
+            Object data = item.getData();
+            if (data instanceof String text) {
+                output.write(text.getBytes(StandardCharsets.UTF_8));
+            } else {
+                objectMapper.writeValue(output, data);
+            }
+        }
+        blackhole.consume(output.size());
+    }
+
+    @Benchmark
+    public void encoder(Blackhole blackhole) {
+        output.reset();
+        byte[] frame = encoder.encodeText(token, System.currentTimeMillis());
+        output.write(frame, 0, frame.length);
+        blackhole.consume(output.size());
+    }
+
+    @Benchmark
+    public void encoderWithResponse(Blackhole blackhole) {
+        output.reset();
+        byte[] frame = encoder.encode(AgentChatResponse.buildMessage(token, MessageType.TEXT));
+        output.write(frame, 0, frame.length);
+        blackhole.consume(output.size());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AgentChatFrameEncoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
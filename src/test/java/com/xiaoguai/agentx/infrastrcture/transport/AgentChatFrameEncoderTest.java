@@ -0,0 +1,89 @@
+package com.xiaoguai.agentx.infrastrcture.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaoguai.agentx.application.conversation.dto.AgentChatResponse;
+import com.xiaoguai.agentx.domain.conversation.constants.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 预编码的SSE帧与Jackson序列化结果逐字节一致
+ */
+class AgentChatFrameEncoderTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final AgentChatFrameEncoder encoder = new AgentChatFrameEncoder(8);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "Hello, world",
+            "你好，世界",
+            "say \"hi\"",
+            "C:\\path\\to\\file",
+            "line1\nline2\r\n\ttab",
+            "\b\f\u0000\u0001\u001f\u007f",
+            "emoji 😀 and 𝄞",
+            "lone \uD83D and \uDE00",
+            "混合 \"引用\" \\ 😀\n"
+    })
+    void encodeMatchesJackson(String content) throws Exception {
+        AgentChatResponse response = AgentChatResponse.buildMessage(content, MessageType.TEXT);
+        assertFrame(response);
+    }
+
+    @Test
+    void encodeNullFields() throws Exception {
+        AgentChatResponse response = new AgentChatResponse();
+        response.setContent(null);
+        response.setMessageType(null);
+        response.setTaskId(null);
+        response.setTimestamp(null);
+        assertFrame(response);
+    }
+
+    @Test
+    void encodeAllFields() throws Exception {
+        AgentChatResponse response = AgentChatResponse.buildThinkResponse("思考中", MessageType.TEXT);
+        response.setDone(true);
+        response.setTaskId("task-\"1\"");
+        response.setTimestamp(0L);
+        assertFrame(response);
+        for (MessageType type : MessageType.values()) {
+            response.setMessageType(type);
+            assertFrame(response);
+        }
+    }
+
+    @Test
+    void encodeTextMatchesEncode() {
+        AgentChatResponse response = AgentChatResponse.buildMessage("片段 😀", MessageType.TEXT);
+        byte[] expected = encoder.encode(response);
+        assertArrayEquals(expected, encoder.encodeText("片段 😀", response.getTimestamp()));
+    }
+
+    @Test
+    void bufferGrowsForLongContent() throws Exception {
+        String content = "长文本\"😀\"\n".repeat(2000);
+        assertFrame(AgentChatResponse.buildMessage(content, MessageType.TEXT));
+    }
+
+    private void assertFrame(AgentChatResponse response) throws Exception {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write("data:".getBytes(StandardCharsets.US_ASCII));
+        expected.write(objectMapper.writeValueAsBytes(response));
+        expected.write("\n\n".getBytes(StandardCharsets.US_ASCII));
+        byte[] actual = encoder.encode(response);
+        assertEquals(expected.toString(StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+}